@@ -0,0 +1,284 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+import rendimiento.Escenario;
+
+/**
+ * Clase EscenarioBiblioteca
+ * Implementacion de rendimiento.Escenario sobre la biblioteca real.
+ * Esta en el paquete por defecto para poder usar las clases de la aplicacion
+ * (y su acceso interno, para armar rapido catalogos e historiales grandes).
+ *
+ * La biblioteca usa un reloj fijo, no tiene diario y su salida por consola
+ * se descarta mientras dura la prueba. Los datos y las consultas se generan
+ * con una semilla fija, asi cada corrida mide el mismo escenario.
+ */
+public class EscenarioBiblioteca implements Escenario {
+
+    // Usuarios sin historial reservados para los prestamos medidos
+    private static final int USUARIOS_PRUEBA = 4096;
+
+    // Autores distintos en el catalogo generado
+    private static final int AUTORES = 5000;
+
+    // Palabras distintas con las que se arman los titulos
+    private static final int PALABRAS = 50000;
+
+    private static final String[] SILABAS = {
+            "ba", "be", "bi", "bo", "ca", "ce", "co", "cu", "da", "de", "di", "do",
+            "fa", "fe", "ga", "go", "la", "le", "li", "lo", "ma", "me", "mi", "mo",
+            "na", "ne", "no", "pa", "pe", "po", "ra", "re", "ri", "ro", "sa", "se",
+            "so", "ta", "te", "to", "tu", "va", "ve", "vi", "mar", "sol", "tan", "ver"
+    };
+
+    // Vocabulario de los titulos: palabras inventadas de dos a cuatro silabas
+    private static final String[] VOCABULARIO = generarVocabulario();
+
+    // Consultas de texto precalculadas
+    private static final int CONSULTAS = 256;
+
+    // Sugerencias pedidas por cada prefijo de autocompletado
+    private static final int SUGERENCIAS = 10;
+
+    private static final String[] CATEGORIAS = {
+            "Novela", "Cuento", "Poesia", "Ensayo", "Historia", "Ciencia",
+            "Filosofia", "Arte", "Biografia", "Infantil", "Tecnologia", "Derecho"
+    };
+
+    // Fecha fija de la prueba
+    private static final LocalDate HOY = LocalDate.of(2024, 6, 3);
+
+    private final SplittableRandom azar = new SplittableRandom(20240603L);
+
+    private Biblioteca biblioteca;
+    private int libros;
+    private int usuarios;
+    private String[] consultas;
+    private String[] prefijos;
+    private String[] consultasConErrores;
+
+    // Siguiente ISBN libre y siguiente usuario de prueba a usar
+    private long siguienteIsbn;
+    private int siguienteUsuarioPrueba;
+
+    private PrintStream salidaOriginal;
+
+    @Override
+    public void preparar(int libros, int usuarios, int prestamos) {
+
+        this.libros = libros;
+        this.usuarios = usuarios;
+
+        salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Clock reloj = Clock.fixed(HOY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+        biblioteca = new Biblioteca(new RelojBiblioteca(reloj));
+
+        for (int i = 0; i < libros; i++) {
+            biblioteca.incorporarLibro(nuevoLibro(i));
+        }
+        siguienteIsbn = libros;
+
+        for (int i = 0; i < usuarios; i++) {
+            biblioteca.incorporarUsuario(new Usuario("U" + i, "Usuario " + i,
+                    "u" + i + "@biblioteca.co", "300" + i, "Calle " + i));
+        }
+        for (int i = 0; i < USUARIOS_PRUEBA; i++) {
+            biblioteca.incorporarUsuario(new Usuario("P" + i, "Prueba " + i,
+                    "p" + i + "@biblioteca.co", "310" + i, "Carrera " + i));
+        }
+
+        prepararHistorial(prestamos);
+
+        consultas = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            consultas[i] = "autor " + azar.nextInt(AUTORES);
+        }
+
+        // Prefijos de distinto largo, como al ir escribiendo un titulo o un autor
+        prefijos = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            String texto = i % 2 == 0 ? biblioteca.getLibro(azar.nextInt(libros)).getTitulo()
+                    : "autor " + azar.nextInt(AUTORES);
+            prefijos[i] = texto.substring(0, 1 + azar.nextInt(texto.length()));
+        }
+
+        // Una o dos palabras de un titulo, con un error de tipeo en la primera
+        consultasConErrores = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            String[] palabras = biblioteca.getLibro(azar.nextInt(libros)).getTitulo().split(" ");
+            String consulta = conError(palabras[0]);
+            if (i % 2 == 1) consulta += " " + palabras[1];
+            consultasConErrores[i] = consulta;
+        }
+    }
+
+    /**
+     * Un decimo del historial queda abierto (un prestamo por usuario,
+     * la mitad ya vencidos); el resto son prestamos devueltos.
+     */
+    private void prepararHistorial(int prestamos) {
+
+        int abiertos = Math.min(prestamos / 10, Math.min(usuarios, libros));
+        int hoy = (int) HOY.toEpochDay();
+
+        for (int id = 1; id <= prestamos; id++) {
+
+            if (id <= abiertos) {
+                int diaPrestamo = hoy - (id % 2 == 0 ? 30 : 1);
+                biblioteca.restaurarPrestamo(id, biblioteca.getLibro(id - 1), biblioteca.getUsuario(id - 1),
+                        diaPrestamo, TablaPrestamos.SIN_FECHA);
+            } else {
+                int diaPrestamo = hoy - 400 + id % 365;
+                biblioteca.restaurarPrestamo(id, biblioteca.getLibro(azar.nextInt(libros)),
+                        biblioteca.getUsuario(azar.nextInt(usuarios)), diaPrestamo, diaPrestamo + 7);
+            }
+        }
+
+        biblioteca.actualizarVencimientos();
+    }
+
+    private static Libro nuevoLibro(long numero) {
+        return new Libro(isbn(numero), titulo(numero), "Autor " + (numero % AUTORES), "Editorial",
+                1950 + (int) (numero % 70), CATEGORIAS[(int) (numero % CATEGORIAS.length)], 2);
+    }
+
+    // Titulo de dos a cuatro palabras del vocabulario, fijo para cada numero
+    private static String titulo(long numero) {
+
+        SplittableRandom azarTitulo = new SplittableRandom(numero);
+        int palabras = 2 + azarTitulo.nextInt(3);
+
+        StringBuilder titulo = new StringBuilder();
+        for (int i = 0; i < palabras; i++) {
+            String palabra = VOCABULARIO[azarTitulo.nextInt(PALABRAS)];
+            if (i == 0) titulo.append(Character.toUpperCase(palabra.charAt(0))).append(palabra, 1, palabra.length());
+            else titulo.append(' ').append(palabra);
+        }
+        return titulo.toString();
+    }
+
+    private static String[] generarVocabulario() {
+
+        SplittableRandom azarVocabulario = new SplittableRandom(7L);
+        HashSet<String> distintas = new HashSet<>();
+
+        while (distintas.size() < PALABRAS) {
+            int silabas = 2 + azarVocabulario.nextInt(3);
+            StringBuilder palabra = new StringBuilder();
+            for (int i = 0; i < silabas; i++) palabra.append(SILABAS[azarVocabulario.nextInt(SILABAS.length)]);
+            distintas.add(palabra.toString());
+        }
+
+        String[] vocabulario = distintas.toArray(new String[0]);
+        Arrays.sort(vocabulario);
+        return vocabulario;
+    }
+
+    // Cambia, quita, agrega o intercambia una letra, como un error de tipeo
+    private String conError(String palabra) {
+
+        StringBuilder conError = new StringBuilder(palabra.toLowerCase());
+        int i = azar.nextInt(conError.length() - 1);
+
+        switch (azar.nextInt(4)) {
+            case 0:
+                conError.setCharAt(i, conError.charAt(i) == 'a' ? 'e' : 'a');
+                break;
+            case 1:
+                conError.deleteCharAt(i);
+                break;
+            case 2:
+                conError.insert(i, 'r');
+                break;
+            default:
+                char letra = conError.charAt(i);
+                conError.setCharAt(i, conError.charAt(i + 1));
+                conError.setCharAt(i + 1, letra);
+        }
+        return conError.toString();
+    }
+
+    // ISBN de 13 digitos a partir de un numero, con ceros a la izquierda
+    private static String isbn(long numero) {
+
+        char[] digitos = new char[13];
+        for (int i = 12; i >= 0; i--) {
+            digitos[i] = (char) ('0' + numero % 10);
+            numero /= 10;
+        }
+        return new String(digitos);
+    }
+
+    @Override
+    public boolean registrarLibro() {
+        return biblioteca.registrarLibro(nuevoLibro(siguienteIsbn++));
+    }
+
+    @Override
+    public Object buscarLibroPorISBN() {
+        return biblioteca.buscarLibroPorISBN(biblioteca.getLibro(azar.nextInt(libros)).getIsbn());
+    }
+
+    @Override
+    public Object buscarLibro() {
+        return biblioteca.buscarLibro(consultas[azar.nextInt(CONSULTAS)]);
+    }
+
+    @Override
+    public Object buscarLibroAproximado() {
+        return biblioteca.buscarLibroAproximado(consultasConErrores[azar.nextInt(CONSULTAS)]);
+    }
+
+    /**
+     * El indice de autocompletado se arma con la primera consulta, que cae
+     * en el calentamiento.
+     */
+    @Override
+    public Object sugerirLibros() {
+        return biblioteca.sugerirLibros(prefijos[azar.nextInt(CONSULTAS)], SUGERENCIAS);
+    }
+
+    @Override
+    public Object buscarUsuario() {
+        return biblioteca.buscarUsuario(biblioteca.getUsuario(azar.nextInt(usuarios)).getNumeroIdentificacion());
+    }
+
+    @Override
+    public int realizarPrestamo() {
+
+        String idUsuario = "P" + (siguienteUsuarioPrueba++ % USUARIOS_PRUEBA);
+        String isbn = biblioteca.getLibro(azar.nextInt(libros)).getIsbn();
+
+        if (!biblioteca.realizarPrestamo(isbn, idUsuario)) return -1;
+        return biblioteca.getHistorialPrestamos().getUltimoId();
+    }
+
+    @Override
+    public boolean registrarDevolucion(int idPrestamo) {
+        return idPrestamo > 0 && biblioteca.registrarDevolucion(idPrestamo);
+    }
+
+    @Override
+    public Object listarPrestamosVencidos() {
+        return biblioteca.listarPrestamosVencidos();
+    }
+
+    @Override
+    public void generarReporteGeneral() {
+        biblioteca.generarReporteGeneral();
+    }
+
+    @Override
+    public void cerrar() {
+        if (salidaOriginal != null) System.setOut(salidaOriginal);
+        biblioteca = null;
+    }
+}
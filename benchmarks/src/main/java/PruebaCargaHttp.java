@@ -0,0 +1,234 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Clase PruebaCargaHttp
+ * Prueba de carga local de ServidorBiblioteca con miles de clientes concurrentes.
+ *
+ * Levanta el servidor en un puerto libre sobre una biblioteca generada
+ * (ver GeneradorCarga) y simula N clientes, cada uno con una solicitud
+ * siempre en curso: en cuanto recibe la respuesta envia la siguiente.
+ * Los clientes usan el HttpClient asincrono del JDK, asi que no necesitan
+ * un hilo cada uno; la concurrencia real que ve el servidor es N.
+ *
+ * Al final muestra latencias por operacion (ReporteCarga), las fallas
+ * (errores de red, tiempos de espera y respuestas 5xx) y los hilos de
+ * plataforma de la JVM, para ver que el servidor no agota un pool.
+ *
+ * Uso: java PruebaCargaHttp [--clientes N] [--segundos N] [--libros N] [--usuarios N] [--semilla N]
+ */
+public class PruebaCargaHttp {
+
+    // Tiempo maximo de espera de una respuesta antes de contarla como falla
+    private static final Duration ESPERA_MAXIMA = Duration.ofSeconds(30);
+
+    // Numero del prestamo en la respuesta JSON de POST /api/prestamos
+    private static final Pattern ID_PRESTAMO = Pattern.compile("\"id\":(\\d+)");
+
+    private final HttpClient cliente;
+    private final String base;
+    private final Biblioteca biblioteca;
+    private final GeneradorCarga generador;
+
+    // Compartido por todos los clientes; registrar se sincroniza sobre el
+    private final ReporteCarga reporte = new ReporteCarga();
+    private final AtomicLong fallas = new AtomicLong();
+
+    private volatile boolean terminar;
+
+    public PruebaCargaHttp(HttpClient cliente, String base, Biblioteca biblioteca, GeneradorCarga generador) {
+        this.cliente = cliente;
+        this.base = base;
+        this.biblioteca = biblioteca;
+        this.generador = generador;
+    }
+
+    /**
+     * Simula los clientes durante el tiempo indicado y retorna el reporte.
+     */
+    public ReporteCarga ejecutar(int clientes, Duration duracion) throws InterruptedException {
+
+        CountDownLatch terminados = new CountDownLatch(clientes);
+        long inicio = System.nanoTime();
+
+        for (int i = 0; i < clientes; i++) {
+            new ClienteSimulado(i, terminados).siguiente();
+        }
+
+        Thread.sleep(duracion.toMillis());
+        terminar = true;
+        terminados.await(ESPERA_MAXIMA.toSeconds() + 5, TimeUnit.SECONDS);
+
+        reporte.setDuracionNanos(System.nanoTime() - inicio);
+        return reporte;
+    }
+
+    public long getFallas() { return fallas.get(); }
+
+    /**
+     * Cliente con una solicitud en curso a la vez. Presta con su propio
+     * usuario y devuelve solo sus prestamos.
+     */
+    private final class ClienteSimulado {
+
+        private final SplittableRandom azar;
+        private final CountDownLatch terminados;
+        private final String idUsuario;
+        private final ArrayDeque<String> abiertos = new ArrayDeque<>();
+
+        ClienteSimulado(int numero, CountDownLatch terminados) {
+            this.azar = generador.azarDeHilo(numero);
+            this.terminados = terminados;
+            this.idUsuario = GeneradorCarga.identificacion(numero % generador.getUsuarios());
+        }
+
+        void siguiente() {
+
+            if (terminar) {
+                terminados.countDown();
+                return;
+            }
+
+            TipoOperacion tipo = generador.siguienteOperacion(azar);
+            if (tipo == TipoOperacion.DEVOLUCION && abiertos.isEmpty()) tipo = TipoOperacion.BUSQUEDA_ISBN;
+
+            HttpRequest solicitud = armar(tipo);
+            TipoOperacion operacion = tipo;
+            long comienzo = System.nanoTime();
+
+            cliente.sendAsync(solicitud, HttpResponse.BodyHandlers.ofString()).whenComplete((respuesta, error) -> {
+                long nanos = System.nanoTime() - comienzo;
+
+                if (error != null || respuesta.statusCode() >= 500) {
+                    fallas.incrementAndGet();
+                } else {
+                    boolean exito = respuesta.statusCode() < 300;
+                    if (exito && operacion == TipoOperacion.PRESTAMO) {
+                        Matcher m = ID_PRESTAMO.matcher(respuesta.body());
+                        if (m.find()) abiertos.add(m.group(1));
+                    }
+                    synchronized (reporte) {
+                        reporte.registrar(operacion, nanos, exito);
+                    }
+                }
+
+                siguiente();
+            });
+        }
+
+        private HttpRequest armar(TipoOperacion tipo) {
+
+            switch (tipo) {
+                case PRESTAMO: {
+                    String isbn = biblioteca.getLibro(generador.ordinalLibro(azar)).getIsbn();
+                    String cuerpo = "{\"isbn\":\"" + isbn + "\",\"usuario\":\"" + idUsuario + "\"}";
+                    return post("/api/prestamos", cuerpo);
+                }
+                case DEVOLUCION:
+                    return post("/api/prestamos/" + abiertos.poll() + "/devolucion", "");
+                case BUSQUEDA_TEXTO:
+                    return get("/api/libros?limite=20&q="
+                            + URLEncoder.encode(generador.consultaTexto(biblioteca, azar), StandardCharsets.UTF_8));
+                case BUSQUEDA_ISBN:
+                    return get("/api/libros/" + biblioteca.getLibro(generador.ordinalLibro(azar)).getIsbn());
+                case BUSQUEDA_USUARIO:
+                    return get("/api/usuarios/" + GeneradorCarga.identificacion(azar.nextInt(generador.getUsuarios())));
+                default:
+                    throw new IllegalArgumentException("Operacion desconocida: " + tipo);
+            }
+        }
+
+        private HttpRequest get(String ruta) {
+            return HttpRequest.newBuilder(URI.create(base + ruta)).timeout(ESPERA_MAXIMA).GET().build();
+        }
+
+        private HttpRequest post(String ruta, String cuerpo) {
+            return HttpRequest.newBuilder(URI.create(base + ruta)).timeout(ESPERA_MAXIMA)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(cuerpo)).build();
+        }
+    }
+
+    // ===================== LINEA DE COMANDOS =====================
+
+    public static void main(String[] args) throws Exception {
+
+        int clientes = 2000;
+        int segundos = 20;
+        int libros = 50_000;
+        int usuarios = 20_000;
+        long semilla = 42;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String opcion = args[i];
+                String valor = i + 1 < args.length ? args[++i] : "";
+
+                switch (opcion) {
+                    case "--clientes": clientes = Integer.parseInt(valor); break;
+                    case "--segundos": segundos = Integer.parseInt(valor); break;
+                    case "--libros":   libros = Integer.parseInt(valor); break;
+                    case "--usuarios": usuarios = Integer.parseInt(valor); break;
+                    case "--semilla":  semilla = Long.parseLong(valor); break;
+                    default:
+                        System.out.println("  [Error] Opcion desconocida: " + opcion);
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("  [Error] Argumento invalido: " + e.getMessage());
+            return;
+        }
+
+        GeneradorCarga generador = new GeneradorCarga(semilla, libros, usuarios, libros);
+        Biblioteca biblioteca = new Biblioteca();
+        generador.poblar(biblioteca);
+
+        ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+
+        // El cliente usa pocos hilos propios, para que los que se vean sean los del servidor
+        ExecutorService ejecutorCliente = Executors.newFixedThreadPool(2);
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(ESPERA_MAXIMA)
+                .executor(ejecutorCliente)
+                .build();
+
+        try (ServidorBiblioteca servidor = new ServidorBiblioteca(biblioteca, 0)) {
+            servidor.iniciar();
+
+            System.out.println("Servidor en el puerto " + servidor.getPuerto() + ", "
+                    + ServidorBiblioteca.HILOS_SOLICITUDES + " hilos y cola de "
+                    + ServidorBiblioteca.COLA_SOLICITUDES + " solicitudes.");
+            System.out.println(clientes + " clientes concurrentes durante " + segundos + " s...");
+
+            hilos.resetPeakThreadCount();
+            PruebaCargaHttp prueba = new PruebaCargaHttp(cliente, "http://localhost:" + servidor.getPuerto(),
+                    biblioteca, generador);
+            ReporteCarga reporte = prueba.ejecutar(clientes, Duration.ofSeconds(segundos));
+
+            reporte.mostrarResumen();
+            System.out.println("  Clientes concurrentes:      " + clientes);
+            System.out.println("  Fallas (red, espera, 5xx):  " + prueba.getFallas());
+            System.out.println("  Hilos de plataforma (pico): " + hilos.getPeakThreadCount());
+        } finally {
+            ejecutorCliente.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package rendimiento;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Clase BibliotecaBenchmark
+ * Pruebas de rendimiento de las operaciones principales de la biblioteca,
+ * con distintos tamanos de catalogo, usuarios e historial de prestamos.
+ *
+ * Los tamanos por defecto van de 1k a 10M; con -p se elige un subconjunto,
+ * por ejemplo: -p libros=100000 -p usuarios=1000 -p prestamos=1000.
+ * Los tamanos grandes necesitan un heap acorde (por ejemplo -jvmArgs -Xmx16g).
+ * El metodo main agrega el perfilador de GC para reportar tasas de asignacion.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BibliotecaBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int libros;
+
+    @Param({"1000", "1000000"})
+    public int usuarios;
+
+    @Param({"1000", "10000000"})
+    public int prestamos;
+
+    Escenario escenario;
+
+    @Setup(Level.Trial)
+    public void preparar() throws ReflectiveOperationException {
+        escenario = Escenario.crear();
+        escenario.preparar(libros, usuarios, prestamos);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        escenario.cerrar();
+    }
+
+    @Benchmark
+    public boolean registrarLibro() {
+        return escenario.registrarLibro();
+    }
+
+    @Benchmark
+    public Object buscarLibroPorISBN() {
+        return escenario.buscarLibroPorISBN();
+    }
+
+    @Benchmark
+    public Object buscarLibro() {
+        return escenario.buscarLibro();
+    }
+
+    @Benchmark
+    public Object buscarLibroAproximado() {
+        return escenario.buscarLibroAproximado();
+    }
+
+    @Benchmark
+    public Object sugerirLibros() {
+        return escenario.sugerirLibros();
+    }
+
+    @Benchmark
+    public Object buscarUsuario() {
+        return escenario.buscarUsuario();
+    }
+
+    @Benchmark
+    public int realizarPrestamo(PrestamoPorDevolver pendiente) {
+        return pendiente.idPrestamo = escenario.realizarPrestamo();
+    }
+
+    @Benchmark
+    public boolean registrarDevolucion(PrestamoRealizado realizado) {
+        return escenario.registrarDevolucion(realizado.idPrestamo);
+    }
+
+    @Benchmark
+    public Object listarPrestamosVencidos() {
+        return escenario.listarPrestamosVencidos();
+    }
+
+    @Benchmark
+    public void generarReporteGeneral() {
+        escenario.generarReporteGeneral();
+    }
+
+    /**
+     * Devuelve, fuera de la medicion, el prestamo que hizo realizarPrestamo,
+     * para que el usuario y el libro vuelvan a tener cupo.
+     */
+    @State(Scope.Thread)
+    public static class PrestamoPorDevolver {
+
+        int idPrestamo = -1;
+
+        @TearDown(Level.Invocation)
+        public void devolver(BibliotecaBenchmark prueba) {
+            if (idPrestamo > 0) prueba.escenario.registrarDevolucion(idPrestamo);
+            idPrestamo = -1;
+        }
+    }
+
+    /**
+     * Realiza, fuera de la medicion, el prestamo que devuelve registrarDevolucion.
+     */
+    @State(Scope.Thread)
+    public static class PrestamoRealizado {
+
+        int idPrestamo;
+
+        @Setup(Level.Invocation)
+        public void prestar(BibliotecaBenchmark prueba) {
+            idPrestamo = prueba.escenario.realizarPrestamo();
+        }
+    }
+
+    /**
+     * Ejecuta las pruebas con el perfilador de GC. Acepta las opciones
+     * de linea de comandos de JMH (-p, -f, -wi, -i, expresiones de inclusion...).
+     */
+    public static void main(String[] args) throws Exception {
+
+        Options opciones = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(BibliotecaBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opciones).run();
+    }
+}
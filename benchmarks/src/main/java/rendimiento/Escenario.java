@@ -0,0 +1,68 @@
+package rendimiento;
+
+/**
+ * Interfaz Escenario
+ * Operaciones de la biblioteca que miden las pruebas de rendimiento.
+ *
+ * La aplicacion esta en el paquete por defecto, que no se puede importar
+ * desde un paquete con nombre, y JMH exige que las pruebas tengan paquete.
+ * Por eso las pruebas solo conocen esta interfaz; la implementacion
+ * (EscenarioBiblioteca, en el paquete por defecto) se carga por nombre
+ * una sola vez al preparar cada prueba.
+ */
+public interface Escenario {
+
+    // Nombre de la clase que implementa el escenario sobre la biblioteca real
+    String IMPLEMENTACION = "EscenarioBiblioteca";
+
+    /**
+     * Crea la implementacion del escenario.
+     */
+    static Escenario crear() throws ReflectiveOperationException {
+        return (Escenario) Class.forName(IMPLEMENTACION).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Arma una biblioteca con la cantidad indicada de libros, usuarios
+     * y prestamos en el historial (en parte abiertos y vencidos).
+     */
+    void preparar(int libros, int usuarios, int prestamos);
+
+    /**
+     * Registra un libro nuevo con un ISBN que aun no existe.
+     */
+    boolean registrarLibro();
+
+    Object buscarLibroPorISBN();
+
+    Object buscarLibro();
+
+    /**
+     * Busqueda tolerante a errores, con un error de tipeo en la consulta.
+     */
+    Object buscarLibroAproximado();
+
+    /**
+     * Sugerencias de autocompletado para un prefijo de titulo o autor.
+     */
+    Object sugerirLibros();
+
+    Object buscarUsuario();
+
+    /**
+     * Presta un libro disponible a un usuario con cupo.
+     * Retorna el ID del prestamo, o -1 si no se pudo realizar.
+     */
+    int realizarPrestamo();
+
+    boolean registrarDevolucion(int idPrestamo);
+
+    Object listarPrestamosVencidos();
+
+    void generarReporteGeneral();
+
+    /**
+     * Libera la biblioteca y restaura la salida estandar.
+     */
+    void cerrar();
+}
@@ -0,0 +1,45 @@
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Clase Apartado
+ * Ejemplar devuelto que queda guardado para el primer usuario de la cola
+ * de reservas del libro (ver Biblioteca.realizarReserva). El usuario lo
+ * retira con un prestamo normal; si no lo hace antes del limite, un
+ * temporizador lo libera y pasa al siguiente de la cola.
+ */
+public class Apartado {
+
+    private final Libro libro;
+    private final Usuario usuario;
+
+    // Fecha y hora hasta la que se guarda el ejemplar
+    private final LocalDateTime limite;
+
+    // Tarea que libera el apartado al vencer; se cancela si se retira antes
+    private volatile ScheduledFuture<?> expiracion;
+
+    Apartado(Libro libro, Usuario usuario, LocalDateTime limite) {
+        this.libro = libro;
+        this.usuario = usuario;
+        this.limite = limite;
+    }
+
+    void setExpiracion(ScheduledFuture<?> expiracion) {
+        this.expiracion = expiracion;
+    }
+
+    /**
+     * Cancela la tarea de expiracion, si aun no corrio.
+     */
+    void cancelarExpiracion() {
+        ScheduledFuture<?> tarea = expiracion;
+        if (tarea != null) tarea.cancel(false);
+    }
+
+    // ===================== GETTERS =====================
+
+    public Libro getLibro() { return libro; }
+    public Usuario getUsuario() { return usuario; }
+    public LocalDateTime getLimite() { return limite; }
+}
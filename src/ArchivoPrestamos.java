@@ -0,0 +1,607 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Clase ArchivoPrestamos
+ * Nivel frio del historial: prestamos ya devueltos, que no vuelven a cambiar,
+ * guardados en un archivo de solo anexar, comprimido por trozos.
+ * TablaPrestamos les pasa sus bloques viejos (ver TablaPrestamos.archivar)
+ * y asi en memoria solo quedan los prestamos recientes y los abiertos.
+ *
+ * Formato de cada trozo (enteros big-endian):
+ *   cabecera: "BIBA", bloque de la tabla (-1 si son filas sueltas), filas,
+ *             ID minimo y maximo, cantidad de grupos, palabras de cada filtro,
+ *             bytes sin comprimir, bytes comprimidos y CRC32 de los comprimidos
+ *   grupos:   numeros de grupo de IDs (ID / FILAS_POR_GRUPO) con filas en el trozo
+ *   filtros:  filtro de Bloom de ordinales de usuario y luego el de libros
+ *   datos:    filas en orden de ID, por columnas y comprimidas con Deflate;
+ *             en varint: saltos de ID, ordinales de libro, ordinales de usuario,
+ *             cambios de la fecha de prestamo respecto a la fila anterior y
+ *             dias hasta la devolucion
+ *
+ * En memoria queda solo el indice disperso: las cabeceras, los filtros
+ * (unos dos bytes por prestamo archivado) y un directorio de grupo a trozos.
+ * Una busqueda por ID descomprime solo el trozo que lo contiene, y una por
+ * usuario o libro solo los trozos cuyo filtro lo admite. Los ultimos trozos
+ * leidos quedan en una cache pequena.
+ *
+ * Los trozos se agregan con todas las franjas de la biblioteca tomadas;
+ * las lecturas no toman cerrojos y ven el indice publicado mas reciente.
+ */
+public class ArchivoPrestamos implements Closeable {
+
+    private static final int MAGICO = 0x42494241;
+
+    // Bytes de la parte fija de la cabecera de un trozo
+    private static final int CABECERA = 10 * Integer.BYTES;
+
+    // Agrupacion de IDs para el directorio (potencia de dos)
+    private static final int BITS_GRUPO = 12;
+
+    // Bits de cada filtro de Bloom por fila, y funciones de hash
+    private static final int BITS_POR_FILA = 8;
+    private static final int FUNCIONES_FILTRO = 3;
+
+    // Trozos descomprimidos que se mantienen en memoria
+    private static final int TROZOS_EN_CACHE = 16;
+
+    private final FileChannel canal;
+
+    // Bytes confirmados; lo que haya despues se sobrescribe al anexar
+    private volatile long longitud;
+
+    // Indice disperso publicado; se reemplaza entero al anexar
+    private volatile Indice indice;
+
+    private final Map<Trozo, Filas> cache = new LinkedHashMap<>(TROZOS_EN_CACHE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Trozo, Filas> mayor) {
+            return size() > TROZOS_EN_CACHE;
+        }
+    };
+
+    private ArchivoPrestamos(FileChannel canal, long longitud, List<Trozo> trozos) {
+        this.canal = canal;
+        this.longitud = longitud;
+        this.indice = new Indice(trozos);
+    }
+
+    /**
+     * Abre (o crea) el archivo y lee el indice de los trozos confirmados.
+     * Lo que haya despues de longitudConfirmada se descarta: son trozos que
+     * se anexaron despues de la ultima instantanea y que esta aun contiene.
+     */
+    static ArchivoPrestamos abrir(Path archivo, long longitudConfirmada) throws IOException {
+
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            if (canal.size() < longitudConfirmada) {
+                throw new IOException("Archivo de prestamos incompleto: tiene " + canal.size()
+                        + " bytes y la instantanea espera " + longitudConfirmada);
+            }
+            if (canal.size() > longitudConfirmada) canal.truncate(longitudConfirmada);
+
+            ArrayList<Trozo> trozos = new ArrayList<>();
+            long posicion = 0;
+
+            while (posicion < longitudConfirmada) {
+                Trozo trozo = leerCabecera(canal, posicion);
+                if (trozo.fin() > longitudConfirmada) {
+                    throw new IOException("Trozo incompleto en el archivo de prestamos en " + posicion);
+                }
+                trozos.add(trozo);
+                posicion = trozo.fin();
+            }
+
+            return new ArchivoPrestamos(canal, longitudConfirmada, trozos);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    // ===================== ESCRITURA =====================
+
+    /**
+     * Anexa un trozo con las filas indicadas (en orden de ID) y lo publica
+     * en el indice. El bloque es el de TablaPrestamos que se archiva, o -1
+     * si son filas sueltas. No fuerza a disco (ver forzar).
+     */
+    void anexar(Filas filas, int bloque) throws IOException {
+
+        byte[] crudos = codificar(filas);
+        byte[] comprimidos = comprimir(crudos);
+
+        CRC32 crc = new CRC32();
+        crc.update(comprimidos);
+
+        int[] grupos = gruposDe(filas);
+        int palabras = palabrasFiltro(filas.cantidad);
+        long[] filtroUsuarios = new long[palabras];
+        long[] filtroLibros = new long[palabras];
+
+        for (int i = 0; i < filas.cantidad; i++) {
+            agregarAlFiltro(filtroUsuarios, filas.usuarios[i]);
+            agregarAlFiltro(filtroLibros, filas.libros[i]);
+        }
+
+        int minId = filas.cantidad > 0 ? filas.ids[0] : 0;
+        int maxId = filas.cantidad > 0 ? filas.ids[filas.cantidad - 1] : -1;
+
+        ByteBuffer trozo = ByteBuffer.allocate(CABECERA + grupos.length * Integer.BYTES
+                + 2 * palabras * Long.BYTES + comprimidos.length);
+
+        trozo.putInt(MAGICO).putInt(bloque).putInt(filas.cantidad).putInt(minId).putInt(maxId)
+                .putInt(grupos.length).putInt(palabras).putInt(crudos.length).putInt(comprimidos.length)
+                .putInt((int) crc.getValue());
+        for (int grupo : grupos) trozo.putInt(grupo);
+        for (long palabra : filtroUsuarios) trozo.putLong(palabra);
+        for (long palabra : filtroLibros) trozo.putLong(palabra);
+        trozo.put(comprimidos);
+        trozo.flip();
+
+        long posicion = longitud;
+        while (trozo.hasRemaining()) {
+            canal.write(trozo, posicion + trozo.position());
+        }
+
+        Trozo nuevo = new Trozo(posicion, bloque, filas.cantidad, minId, maxId, grupos,
+                filtroUsuarios, filtroLibros, crudos.length, comprimidos.length, (int) crc.getValue());
+
+        // Las filas ya estan decodificadas: se dejan en la cache
+        synchronized (cache) {
+            cache.put(nuevo, filas);
+        }
+
+        ArrayList<Trozo> trozos = new ArrayList<>(Arrays.asList(indice.trozos));
+        trozos.add(nuevo);
+        indice = new Indice(trozos);
+        longitud = nuevo.fin();
+    }
+
+    /**
+     * Fuerza a disco los trozos anexados.
+     */
+    void forzar() throws IOException {
+        canal.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    // ===================== LECTURA =====================
+
+    /**
+     * Retorna la fila archivada con el ID indicado, o null si no esta.
+     */
+    TablaPrestamos.Fila leer(int idPrestamo) {
+
+        Indice actual = indice;
+        int grupo = idPrestamo >>> BITS_GRUPO;
+
+        if (idPrestamo < 0 || grupo >= actual.porGrupo.length || actual.porGrupo[grupo] == null) return null;
+
+        for (int t : actual.porGrupo[grupo]) {
+            Trozo trozo = actual.trozos[t];
+            if (idPrestamo < trozo.minId || idPrestamo > trozo.maxId) continue;
+
+            Filas filas = filasDe(trozo, true);
+            int i = Arrays.binarySearch(filas.ids, 0, filas.cantidad, idPrestamo);
+            if (i >= 0) return filas.fila(i);
+        }
+
+        return null;
+    }
+
+    /**
+     * Retorna las filas archivadas del usuario (porUsuario) o del libro con
+     * el ordinal indicado. Solo descomprime los trozos cuyo filtro lo admite.
+     */
+    ArrayList<TablaPrestamos.Fila> buscar(boolean porUsuario, int ordinal) {
+
+        ArrayList<TablaPrestamos.Fila> encontradas = new ArrayList<>();
+
+        for (Trozo trozo : indice.trozos) {
+            if (!puedeContener(porUsuario ? trozo.filtroUsuarios : trozo.filtroLibros, ordinal)) continue;
+
+            // Un recorrido por dueno no reemplaza los trozos que estan en la cache
+            Filas filas = filasDe(trozo, false);
+            int[] columna = porUsuario ? filas.usuarios : filas.libros;
+
+            for (int i = 0; i < filas.cantidad; i++) {
+                if (columna[i] == ordinal) encontradas.add(filas.fila(i));
+            }
+        }
+
+        return encontradas;
+    }
+
+    /**
+     * Suma en conteos[ordinal] los prestamos archivados de cada libro.
+     * Descomprime todos los trozos, una vez y sin pasar por la cache.
+     */
+    void contarPorLibro(int[] conteos) {
+
+        for (Trozo trozo : indice.trozos) {
+            Filas filas = filasDe(trozo, false);
+            for (int i = 0; i < filas.cantidad; i++) {
+                int libro = filas.libros[i];
+                if (libro < conteos.length) conteos[libro]++;
+            }
+        }
+    }
+
+    /**
+     * Bloques de TablaPrestamos que ya estan archivados.
+     */
+    int[] getBloquesArchivados() {
+        return Arrays.stream(indice.trozos).filter(t -> t.bloque >= 0).mapToInt(t -> t.bloque).toArray();
+    }
+
+    public long getLongitud() { return longitud; }
+
+    public long getTotalFilas() {
+        long total = 0;
+        for (Trozo trozo : indice.trozos) total += trozo.filas;
+        return total;
+    }
+
+    public int getTotalTrozos() { return indice.trozos.length; }
+
+    private Filas filasDe(Trozo trozo, boolean guardarEnCache) {
+
+        synchronized (cache) {
+            Filas filas = cache.get(trozo);
+            if (filas != null) return filas;
+        }
+
+        Filas filas;
+        try {
+            filas = decodificar(trozo, descomprimir(trozo, leerDatos(trozo)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (guardarEnCache) {
+            synchronized (cache) {
+                cache.put(trozo, filas);
+            }
+        }
+        return filas;
+    }
+
+    private byte[] leerDatos(Trozo trozo) throws IOException {
+
+        ByteBuffer datos = ByteBuffer.allocate(trozo.comprimidos);
+        long inicio = trozo.inicioDatos();
+
+        while (datos.hasRemaining()) {
+            if (canal.read(datos, inicio + datos.position()) < 0) {
+                throw new IOException("Fin inesperado del archivo de prestamos en " + trozo.posicion);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(datos.array());
+        if ((int) crc.getValue() != trozo.crc) {
+            throw new IOException("Trozo corrupto en el archivo de prestamos en " + trozo.posicion);
+        }
+
+        return datos.array();
+    }
+
+    private static Trozo leerCabecera(FileChannel canal, long posicion) throws IOException {
+
+        ByteBuffer cabecera = leerExacto(canal, posicion, CABECERA);
+
+        if (cabecera.getInt() != MAGICO) {
+            throw new IOException("Trozo invalido en el archivo de prestamos en " + posicion);
+        }
+
+        int bloque = cabecera.getInt();
+        int filas = cabecera.getInt();
+        int minId = cabecera.getInt();
+        int maxId = cabecera.getInt();
+        int cantidadGrupos = cabecera.getInt();
+        int palabras = cabecera.getInt();
+        int crudos = cabecera.getInt();
+        int comprimidos = cabecera.getInt();
+        int crc = cabecera.getInt();
+
+        ByteBuffer resto = leerExacto(canal, posicion + CABECERA,
+                cantidadGrupos * Integer.BYTES + 2 * palabras * Long.BYTES);
+
+        int[] grupos = new int[cantidadGrupos];
+        for (int i = 0; i < cantidadGrupos; i++) grupos[i] = resto.getInt();
+
+        long[] filtroUsuarios = new long[palabras];
+        long[] filtroLibros = new long[palabras];
+        for (int i = 0; i < palabras; i++) filtroUsuarios[i] = resto.getLong();
+        for (int i = 0; i < palabras; i++) filtroLibros[i] = resto.getLong();
+
+        return new Trozo(posicion, bloque, filas, minId, maxId, grupos,
+                filtroUsuarios, filtroLibros, crudos, comprimidos, crc);
+    }
+
+    private static ByteBuffer leerExacto(FileChannel canal, long posicion, int bytes) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicion + buffer.position()) < 0) {
+                throw new IOException("Fin inesperado del archivo de prestamos en " + posicion);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // ===================== CODIFICACION =====================
+
+    private static byte[] codificar(Filas filas) {
+
+        int n = filas.cantidad;
+        ByteBuffer salida = ByteBuffer.allocate(n * 5 * 5);
+
+        // Por columnas: los valores parecidos quedan juntos y Deflate los comprime mejor
+        for (int i = 0; i < n; i++) escribirVarint(salida, filas.ids[i] - (i == 0 ? filas.ids[0] : filas.ids[i - 1]));
+        for (int i = 0; i < n; i++) escribirVarint(salida, filas.libros[i]);
+        for (int i = 0; i < n; i++) escribirVarint(salida, filas.usuarios[i]);
+        for (int i = 0; i < n; i++) {
+            escribirVarint(salida, zigzag(filas.diasPrestamo[i] - (i == 0 ? 0 : filas.diasPrestamo[i - 1])));
+        }
+        for (int i = 0; i < n; i++) escribirVarint(salida, zigzag(filas.diasDevolucion[i] - filas.diasPrestamo[i]));
+
+        return Arrays.copyOf(salida.array(), salida.position());
+    }
+
+    private static Filas decodificar(Trozo trozo, byte[] crudos) {
+
+        ByteBuffer entrada = ByteBuffer.wrap(crudos);
+        int n = trozo.filas;
+        Filas filas = new Filas(n);
+
+        int id = trozo.minId;
+        for (int i = 0; i < n; i++) filas.ids[i] = id += leerVarint(entrada);
+        for (int i = 0; i < n; i++) filas.libros[i] = leerVarint(entrada);
+        for (int i = 0; i < n; i++) filas.usuarios[i] = leerVarint(entrada);
+
+        int dia = 0;
+        for (int i = 0; i < n; i++) filas.diasPrestamo[i] = dia += deszigzag(leerVarint(entrada));
+        for (int i = 0; i < n; i++) filas.diasDevolucion[i] = filas.diasPrestamo[i] + deszigzag(leerVarint(entrada));
+
+        filas.cantidad = n;
+        return filas;
+    }
+
+    private static byte[] comprimir(byte[] crudos) {
+
+        Deflater compresor = new Deflater(Deflater.BEST_SPEED);
+        try {
+            compresor.setInput(crudos);
+            compresor.finish();
+
+            byte[] salida = new byte[Math.max(64, crudos.length / 2)];
+            int total = 0;
+            while (!compresor.finished()) {
+                if (total == salida.length) salida = Arrays.copyOf(salida, salida.length * 2);
+                total += compresor.deflate(salida, total, salida.length - total);
+            }
+            return Arrays.copyOf(salida, total);
+        } finally {
+            compresor.end();
+        }
+    }
+
+    private static byte[] descomprimir(Trozo trozo, byte[] comprimidos) throws IOException {
+
+        Inflater descompresor = new Inflater();
+        try {
+            descompresor.setInput(comprimidos);
+            byte[] crudos = new byte[trozo.crudos];
+            int total = 0;
+            while (total < crudos.length) {
+                int leidos = descompresor.inflate(crudos, total, crudos.length - total);
+                if (leidos == 0 && (descompresor.finished() || descompresor.needsInput())) break;
+                total += leidos;
+            }
+            if (total != crudos.length) {
+                throw new IOException("Trozo truncado en el archivo de prestamos en " + trozo.posicion);
+            }
+            return crudos;
+        } catch (DataFormatException e) {
+            throw new IOException("Trozo corrupto en el archivo de prestamos en " + trozo.posicion, e);
+        } finally {
+            descompresor.end();
+        }
+    }
+
+    private static void escribirVarint(ByteBuffer salida, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            salida.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        salida.put((byte) valor);
+    }
+
+    private static int leerVarint(ByteBuffer entrada) {
+        int valor = 0;
+        for (int desplazamiento = 0; ; desplazamiento += 7) {
+            byte b = entrada.get();
+            valor |= (b & 0x7F) << desplazamiento;
+            if (b >= 0) return valor;
+        }
+    }
+
+    private static int zigzag(int valor) { return (valor << 1) ^ (valor >> 31); }
+    private static int deszigzag(int valor) { return (valor >>> 1) ^ -(valor & 1); }
+
+    // ===================== INDICE =====================
+
+    private static int[] gruposDe(Filas filas) {
+        return Arrays.stream(filas.ids, 0, filas.cantidad).map(id -> id >>> BITS_GRUPO).distinct().toArray();
+    }
+
+    private static int palabrasFiltro(int filas) {
+        int bits = Integer.highestOneBit(Math.max(64, filas * BITS_POR_FILA - 1)) << 1;
+        return bits / Long.SIZE;
+    }
+
+    private static void agregarAlFiltro(long[] filtro, int ordinal) {
+        long h = mezclar(ordinal);
+        int mascara = filtro.length * Long.SIZE - 1;
+        for (int i = 0; i < FUNCIONES_FILTRO; i++) {
+            int bit = (int) (h + i * (h >>> 32)) & mascara;
+            filtro[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean puedeContener(long[] filtro, int ordinal) {
+        long h = mezclar(ordinal);
+        int mascara = filtro.length * Long.SIZE - 1;
+        for (int i = 0; i < FUNCIONES_FILTRO; i++) {
+            int bit = (int) (h + i * (h >>> 32)) & mascara;
+            if ((filtro[bit >>> 6] & 1L << bit) == 0) return false;
+        }
+        return true;
+    }
+
+    // Dispersa los ordinales consecutivos por todo el filtro
+    private static long mezclar(int valor) {
+        long h = valor * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Cabecera de un trozo, tal como queda en el indice en memoria.
+     */
+    private static final class Trozo {
+
+        final long posicion;
+        final int bloque;
+        final int filas;
+        final int minId;
+        final int maxId;
+        final int[] grupos;
+        final long[] filtroUsuarios;
+        final long[] filtroLibros;
+        final int crudos;
+        final int comprimidos;
+        final int crc;
+
+        Trozo(long posicion, int bloque, int filas, int minId, int maxId, int[] grupos,
+              long[] filtroUsuarios, long[] filtroLibros, int crudos, int comprimidos, int crc) {
+            this.posicion = posicion;
+            this.bloque = bloque;
+            this.filas = filas;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.grupos = grupos;
+            this.filtroUsuarios = filtroUsuarios;
+            this.filtroLibros = filtroLibros;
+            this.crudos = crudos;
+            this.comprimidos = comprimidos;
+            this.crc = crc;
+        }
+
+        long inicioDatos() {
+            return posicion + CABECERA + grupos.length * Integer.BYTES + 2L * filtroUsuarios.length * Long.BYTES;
+        }
+
+        long fin() { return inicioDatos() + comprimidos; }
+    }
+
+    /**
+     * Trozos publicados y, por cada grupo de IDs, los trozos que tienen filas en el.
+     */
+    private static final class Indice {
+
+        final Trozo[] trozos;
+        final int[][] porGrupo;
+
+        Indice(List<Trozo> lista) {
+
+            this.trozos = lista.toArray(new Trozo[0]);
+
+            int maximoGrupo = -1;
+            for (Trozo trozo : trozos) {
+                for (int grupo : trozo.grupos) maximoGrupo = Math.max(maximoGrupo, grupo);
+            }
+
+            this.porGrupo = new int[maximoGrupo + 1][];
+            for (int t = 0; t < trozos.length; t++) {
+                for (int grupo : trozos[t].grupos) {
+                    int[] actuales = porGrupo[grupo];
+                    if (actuales == null) {
+                        porGrupo[grupo] = new int[] { t };
+                    } else {
+                        porGrupo[grupo] = Arrays.copyOf(actuales, actuales.length + 1);
+                        porGrupo[grupo][actuales.length] = t;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Filas de un trozo por columnas, en orden de ID.
+     */
+    static final class Filas {
+
+        int[] ids;
+        int[] libros;
+        int[] usuarios;
+        int[] diasPrestamo;
+        int[] diasDevolucion;
+        int cantidad;
+
+        Filas(int capacidad) {
+            ids = new int[capacidad];
+            libros = new int[capacidad];
+            usuarios = new int[capacidad];
+            diasPrestamo = new int[capacidad];
+            diasDevolucion = new int[capacidad];
+        }
+
+        void agregar(int id, int libro, int usuario, int diaPrestamo, int diaDevolucion) {
+
+            if (cantidad == ids.length) {
+                int nueva = Math.max(16, cantidad * 2);
+                ids = Arrays.copyOf(ids, nueva);
+                libros = Arrays.copyOf(libros, nueva);
+                usuarios = Arrays.copyOf(usuarios, nueva);
+                diasPrestamo = Arrays.copyOf(diasPrestamo, nueva);
+                diasDevolucion = Arrays.copyOf(diasDevolucion, nueva);
+            }
+
+            ids[cantidad] = id;
+            libros[cantidad] = libro;
+            usuarios[cantidad] = usuario;
+            diasPrestamo[cantidad] = diaPrestamo;
+            diasDevolucion[cantidad] = diaDevolucion;
+            cantidad++;
+        }
+
+        TablaPrestamos.Fila fila(int i) {
+            return new TablaPrestamos.Fila(ids[i], libros[i], usuarios[i], diasPrestamo[i],
+                    diasDevolucion[i], EstadoPrestamo.DEVUELTO);
+        }
+    }
+}
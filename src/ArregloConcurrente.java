@@ -0,0 +1,68 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Clase ArregloConcurrente
+ * Arreglo de posiciones que crece por bloques y admite lecturas sin bloqueo.
+ * Los bloques ya creados nunca se copian ni se mueven, asi que una lectura
+ * concurrente nunca pierde una escritura hecha sobre un bloque anterior.
+ */
+public class ArregloConcurrente<T> {
+
+    // Cantidad de posiciones por bloque (potencia de dos)
+    private static final int BITS_BLOQUE = 10;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+
+    // Directorio de bloques; solo se reemplaza al crecer
+    private volatile AtomicReferenceArray<T>[] bloques;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ArregloConcurrente() {
+        this.bloques = new AtomicReferenceArray[0];
+    }
+
+    /**
+     * Guarda el elemento en la posicion indicada, creando los bloques que falten.
+     */
+    public void set(int posicion, T elemento) {
+        bloqueDe(posicion, true).set(posicion & (TAMANO_BLOQUE - 1), elemento);
+    }
+
+    /**
+     * Retorna el elemento en la posicion indicada, o null si no existe.
+     */
+    public T get(int posicion) {
+
+        if (posicion < 0) return null;
+
+        AtomicReferenceArray<T> bloque = bloqueDe(posicion, false);
+        return bloque == null ? null : bloque.get(posicion & (TAMANO_BLOQUE - 1));
+    }
+
+    private AtomicReferenceArray<T> bloqueDe(int posicion, boolean crear) {
+
+        int numeroBloque = posicion >>> BITS_BLOQUE;
+        AtomicReferenceArray<T>[] actuales = bloques;
+
+        if (numeroBloque < actuales.length) return actuales[numeroBloque];
+        if (!crear) return null;
+
+        return crecer(numeroBloque);
+    }
+
+    private synchronized AtomicReferenceArray<T> crecer(int numeroBloque) {
+
+        AtomicReferenceArray<T>[] actuales = bloques;
+        if (numeroBloque < actuales.length) return actuales[numeroBloque];
+
+        int nuevaCantidad = Math.max(actuales.length * 2, numeroBloque + 1);
+        AtomicReferenceArray<T>[] nuevos = Arrays.copyOf(actuales, nuevaCantidad);
+
+        for (int i = actuales.length; i < nuevaCantidad; i++) {
+            nuevos[i] = new AtomicReferenceArray<>(TAMANO_BLOQUE);
+        }
+
+        bloques = nuevos;
+        return nuevos[numeroBloque];
+    }
+}
@@ -1,239 +1,1598 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Clase Biblioteca
  * Controla toda la logica del sistema.
  * Administra libros, usuarios y prestamos.
+ *
+ * Puede usarse desde varios hilos a la vez. Cada operacion bloquea solo
+ * las franjas del ISBN y del usuario que toca, de modo que prestamos
+ * sobre libros distintos no compiten por un mismo cerrojo.
  */
 public class Biblioteca {
 
-    private ArrayList<Libro> catalogoLibros;
-    private ArrayList<Usuario> usuariosRegistrados;
-    private ArrayList<Prestamo> historialPrestamos;
-    private int contadorPrestamos;
+    // Cantidad de franjas de bloqueo para libros y usuarios
+    private static final int FRANJAS_BLOQUEO = 256;
 
+    // Tiempo que se guarda un ejemplar apartado si no se cambia con setPlazoApartado
+    static final Duration PLAZO_APARTADO_PREDETERMINADO = Duration.ofDays(2);
+
+    // Catalogo y usuarios en orden de registro (la posicion es el ordinal)
+    private ArregloConcurrente<Libro> catalogoLibros;
+    private AtomicInteger totalLibros;
+    private ArregloConcurrente<Usuario> usuariosRegistrados;
+    private AtomicInteger totalUsuarios;
+
+    // Historial de prestamos por columnas, indexado por ID (consecutivos desde 1)
+    private TablaPrestamos historialPrestamos;
+
+    // Prestamos abiertos aun no vencidos, ordenados por fecha estimada de devolucion
+    private PriorityBlockingQueue<Prestamo> prestamosPorVencer;
+
+    // Totales del reporte general, actualizados en cada transicion
+    private ContadoresBiblioteca contadores;
+
+    // Indice de libros por ISBN normalizado (sin guiones)
+    private ConcurrentHashMap<String, Libro> indiceISBN;
+
+    // Indice de texto para buscar por titulo, autor o categoria
+    private IndiceTexto indiceTexto;
+
+    // Sugerencias de titulos y autores por prefijo, ordenadas por prestamos
+    private IndiceAutocompletado indiceAutocompletado;
+
+    // Indices de usuarios por ID y por nombre en minusculas (los nombres pueden repetirse)
+    private ConcurrentHashMap<String, Usuario> indiceUsuariosPorId;
+    private ConcurrentHashMap<String, CopyOnWriteArrayList<Usuario>> indiceUsuariosPorNombre;
+
+    // Cerrojos por franja, indexados por ISBN normalizado o ID de usuario
+    private BloqueosPorClave bloqueos;
+
+    // Diario donde se registran las operaciones antes de aplicarlas (opcional)
+    private volatile DiarioOperaciones diario;
+
+    // Archivo de instantaneas y tarea que las guarda periodicamente (opcionales)
+    private Path archivoInstantanea;
+    private ScheduledExecutorService programadorInstantaneas;
+
+    // Prestamos devueltos que salieron de historialPrestamos (junto a la instantanea)
+    private ArchivoPrestamos archivoPrestamos;
+
+    // Fecha de trabajo y tarea que revisa los vencimientos al cambiar el dia (opcional)
+    private final RelojBiblioteca reloj;
+    private ScheduledExecutorService revisionDiaria;
+
+    // Latencias y resultados de las operaciones de mostrador (apagadas al inicio)
+    private final MetricasBiblioteca metricas;
+
+    // Plazo de los apartados y temporizador que los vence y entrega los avisos
+    // (se crea con el primer apartado)
+    private volatile Duration plazoApartado;
+    private ScheduledThreadPoolExecutor temporizadorApartados;
+
+    // Quienes reciben el aviso de cada ejemplar apartado (ver agregarOyenteApartados)
+    private final CopyOnWriteArrayList<Consumer<Apartado>> oyentesApartados;
+
+    /**
+     * Constructor que usa el reloj del sistema.
+     */
     public Biblioteca() {
-        this.catalogoLibros = new ArrayList<>();
-        this.usuariosRegistrados = new ArrayList<>();
-        this.historialPrestamos = new ArrayList<>();
-        this.contadorPrestamos = 1;
+        this(new RelojBiblioteca());
+    }
+
+    /**
+     * Constructor con un reloj propio (por ejemplo, uno fijo para pruebas).
+     */
+    public Biblioteca(RelojBiblioteca reloj) {
+        this.reloj = reloj;
+        this.metricas = new MetricasBiblioteca();
+        this.plazoApartado = PLAZO_APARTADO_PREDETERMINADO;
+        this.oyentesApartados = new CopyOnWriteArrayList<>();
+        this.catalogoLibros = new ArregloConcurrente<>();
+        this.totalLibros = new AtomicInteger();
+        this.indiceISBN = new ConcurrentHashMap<>();
+        this.indiceTexto = new IndiceTexto();
+        this.indiceAutocompletado = new IndiceAutocompletado(this);
+        this.usuariosRegistrados = new ArregloConcurrente<>();
+        this.totalUsuarios = new AtomicInteger();
+        this.indiceUsuariosPorId = new ConcurrentHashMap<>();
+        this.indiceUsuariosPorNombre = new ConcurrentHashMap<>();
+        this.contadores = new ContadoresBiblioteca();
+        this.historialPrestamos = new TablaPrestamos(1, this, contadores);
+        this.prestamosPorVencer = new PriorityBlockingQueue<>(11,
+                Comparator.comparingInt(Prestamo::getDiaVencimiento)
+                        .thenComparingInt(Prestamo::getIdPrestamo));
+        this.bloqueos = new BloqueosPorClave(FRANJAS_BLOQUEO);
+    }
+
+    // ===================== PERSISTENCIA =====================
+
+    /**
+     * Abre una biblioteca respaldada por un diario en disco con la politica
+     * de escritura por defecto. Si el diario existe, se reproduce primero.
+     */
+    public static Biblioteca abrir(Path archivoDiario) throws IOException {
+        return abrir(archivoDiario, null);
+    }
+
+    /**
+     * Abre una biblioteca respaldada por un diario y una instantanea.
+     * Carga la instantanea, si existe, y reproduce solo los registros
+     * del diario posteriores a ella. Junto a la instantanea queda el archivo
+     * de prestamos devueltos (mismo nombre terminado en .devueltos).
+     */
+    public static Biblioteca abrir(Path archivoDiario, Path archivoInstantanea) throws IOException {
+        return abrir(archivoDiario, archivoInstantanea,
+                DiarioOperaciones.LOTE_FSYNC_PREDETERMINADO,
+                DiarioOperaciones.INTERVALO_FSYNC_PREDETERMINADO_MS);
+    }
+
+    /**
+     * Igual que abrir(diario, instantanea), indicando cada cuantos registros
+     * o milisegundos se fuerza el diario a disco.
+     */
+    public static Biblioteca abrir(Path archivoDiario, Path archivoInstantanea,
+                                   int loteFsync, long intervaloFsyncMs) throws IOException {
+        return abrir(archivoDiario, archivoInstantanea, loteFsync, intervaloFsyncMs, new RelojBiblioteca());
+    }
+
+    /**
+     * Igual que abrir(diario, instantanea, loteFsync, intervaloFsyncMs), con un reloj propio.
+     */
+    public static Biblioteca abrir(Path archivoDiario, Path archivoInstantanea, int loteFsync,
+                                   long intervaloFsyncMs, RelojBiblioteca reloj) throws IOException {
+
+        Biblioteca biblioteca = new Biblioteca(reloj);
+        biblioteca.archivoInstantanea = archivoInstantanea;
+        long secuencia = 0;
+
+        if (archivoInstantanea != null && Files.exists(archivoInstantanea)) {
+            secuencia = InstantaneaBiblioteca.cargar(archivoInstantanea, biblioteca);
+        }
+
+        // Sin instantanea, nada de lo archivado antes sigue siendo valido
+        if (archivoInstantanea != null && biblioteca.archivoPrestamos == null) {
+            biblioteca.abrirArchivoPrestamos(0);
+        }
+
+        DiarioOperaciones diario = new DiarioOperaciones(archivoDiario, loteFsync, intervaloFsyncMs);
+        diario.reproducir(biblioteca, secuencia);
+
+        biblioteca.diario = diario;
+
+        return biblioteca;
+    }
+
+    /**
+     * Guarda una instantanea de todo el estado y vacia el diario.
+     * Mientras se escribe, se detienen las operaciones que modifican la biblioteca.
+     */
+    public void guardarInstantanea() throws IOException {
+
+        if (archivoInstantanea == null) {
+            throw new IllegalStateException("La biblioteca no tiene archivo de instantanea");
+        }
+
+        Path temporal = archivoInstantanea.resolveSibling(archivoInstantanea.getFileName() + ".tmp");
+
+        bloqueos.bloquearTodas();
+        try {
+            long secuencia = diario != null ? diario.getUltimaSecuencia() : 0;
+
+            // Lo archivado se confirma con la instantanea, que guarda hasta donde llega el archivo
+            if (archivoPrestamos != null) {
+                historialPrestamos.archivar();
+                archivoPrestamos.forzar();
+            }
+
+            InstantaneaBiblioteca.escribir(this, secuencia, temporal);
+            Files.move(temporal, archivoInstantanea,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // Si se cae antes de compactar, los registros repetidos se saltan por secuencia
+            if (diario != null) diario.compactar();
+        } finally {
+            bloqueos.desbloquearTodas();
+        }
+    }
+
+    /**
+     * Abre el archivo de prestamos devueltos, descartando lo que este despues
+     * de longitudConfirmada, y lo conecta con el historial, aun vacio.
+     * Lo llama la carga de la instantanea, que sabe hasta donde llegaba.
+     */
+    void abrirArchivoPrestamos(long longitudConfirmada) throws IOException {
+
+        Path ruta = archivoInstantanea.resolveSibling(archivoInstantanea.getFileName() + ".devueltos");
+
+        archivoPrestamos = ArchivoPrestamos.abrir(ruta, longitudConfirmada);
+        historialPrestamos.usarArchivo(archivoPrestamos);
+    }
+
+    /**
+     * Suma a cada libro sus prestamos archivados, que tambien cuentan para su
+     * popularidad. Lo llama la carga de la instantanea, con el catalogo ya armado.
+     */
+    void contarPrestamosArchivados() {
+
+        int[] prestamosPorLibro = new int[getTotalLibros()];
+        archivoPrestamos.contarPorLibro(prestamosPorLibro);
+
+        for (int ordinal = 0; ordinal < prestamosPorLibro.length; ordinal++) {
+            if (prestamosPorLibro[ordinal] > 0) getLibro(ordinal).sumarPrestamos(prestamosPorLibro[ordinal]);
+        }
     }
 
+    ArchivoPrestamos getArchivoPrestamos() { return archivoPrestamos; }
+
+    /**
+     * Programa una instantanea periodica en un hilo de fondo.
+     */
+    public synchronized void programarInstantaneas(long periodo, TimeUnit unidad) {
+
+        if (programadorInstantaneas != null) programadorInstantaneas.shutdownNow();
+
+        programadorInstantaneas = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "instantanea-biblioteca");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        programadorInstantaneas.scheduleWithFixedDelay(() -> {
+            try {
+                guardarInstantanea();
+            } catch (IOException e) {
+                System.out.println("  [Error] No se pudo guardar la instantanea: " + e.getMessage());
+            }
+        }, periodo, periodo, unidad);
+    }
+
+    /**
+     * Programa, en un hilo de fondo, la revision de vencimientos al comenzar
+     * cada dia: actualiza la fecha del reloj y pasa a VENCIDO, en un solo lote,
+     * los prestamos que vencieron.
+     */
+    public synchronized void programarRevisionDiaria() {
+
+        if (revisionDiaria != null) revisionDiaria.shutdownNow();
+
+        revisionDiaria = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "revision-vencimientos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        programarSiguienteRevision(revisionDiaria);
+    }
+
+    // Cada revision agenda la siguiente; asi se respeta la medianoche aunque cambie el horario
+    private void programarSiguienteRevision(ScheduledExecutorService programador) {
+
+        long espera = reloj.hastaProximoDia().toMillis() + 1;
+
+        programador.schedule(() -> {
+            try {
+                actualizarVencimientos();
+            } finally {
+                if (!programador.isShutdown()) programarSiguienteRevision(programador);
+            }
+        }, espera, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene las tareas periodicas, fuerza a disco las operaciones
+     * pendientes y cierra el diario, si lo hay.
+     * Avisa si quedan reservas o apartados, que no se guardan.
+     */
+    public void cerrar() throws IOException {
+
+        avisarReservasDescartadas();
+
+        synchronized (this) {
+            if (programadorInstantaneas != null) programadorInstantaneas.shutdownNow();
+            if (revisionDiaria != null) revisionDiaria.shutdownNow();
+            if (temporizadorApartados != null) temporizadorApartados.shutdownNow();
+            temporizadorApartados = null;
+        }
+
+        if (diario != null) diario.cerrar();
+        if (archivoPrestamos != null) archivoPrestamos.close();
+    }
+
+    // Las reservas y los apartados no van al diario ni a la instantanea (ver
+    // realizarReserva): al cerrar se informa cuantos se pierden
+    private void avisarReservasDescartadas() {
+
+        int enEspera = 0;
+        int total = totalLibros.get();
+        for (int i = 0; i < total; i++) {
+            Libro libro = catalogoLibros.get(i);
+            if (libro != null) enEspera += libro.getReservasEnEspera();
+        }
+        int apartados = contadores.getEjemplaresApartados();
+
+        if (enEspera == 0 && apartados == 0) return;
+
+        System.out.println("  [Aviso] Las reservas no se guardan: se descartan " + enEspera
+                + " usuarios en espera y " + apartados + " ejemplares apartados, que vuelven al estante.");
+    }
+
+    // ===================== ACCESO INTERNO =====================
+
+    int getTotalLibros() { return totalLibros.get(); }
+    Libro getLibro(int ordinal) { return catalogoLibros.get(ordinal); }
+    int getTotalUsuarios() { return totalUsuarios.get(); }
+    Usuario getUsuario(int ordinal) { return usuariosRegistrados.get(ordinal); }
+    TablaPrestamos getHistorialPrestamos() { return historialPrestamos; }
+
+    public RelojBiblioteca getReloj() { return reloj; }
+    public MetricasBiblioteca getMetricas() { return metricas; }
+
     // ===================== LIBROS =====================
 
     public boolean registrarLibro(Libro libro) {
 
-        if (!Libro.validarISBN(libro.getIsbn())) {
-            System.out.println("  [Error] ISBN invalido. Debe tener 10 o 13 digitos.");
-            return false;
-        }
+        CodigoResultado codigo = agregarLibro(libro);
 
-        if (buscarLibroPorISBN(libro.getIsbn()) != null) {
-            System.out.println("  [Error] Ya existe un libro con ISBN: " + libro.getIsbn());
+        if (!codigo.esExito()) {
+            mostrarError(codigo, libro.getIsbn());
             return false;
         }
 
-        catalogoLibros.add(libro);
         System.out.println("  [OK] Libro registrado: " + libro.getTitulo());
         return true;
     }
 
-    public Libro buscarLibroPorISBN(String isbn) {
-        for (Libro l : catalogoLibros) {
-            if (l.getIsbn().equals(isbn)) return l;
+    /**
+     * Igual que registrarLibro, pero sin mensajes en consola.
+     */
+    public CodigoResultado agregarLibro(Libro libro) {
+
+        long inicio = metricas.iniciar();
+        CodigoResultado codigo = validarYAgregarLibro(libro);
+        metricas.registrar(MetricasBiblioteca.Operacion.REGISTRO_LIBRO, codigo, inicio);
+        return codigo;
+    }
+
+    private CodigoResultado validarYAgregarLibro(Libro libro) {
+
+        if (!Libro.validarISBN(libro.getIsbn())) return CodigoResultado.ISBN_INVALIDO;
+        if (!agregarLibroSiNoExiste(libro)) return CodigoResultado.LIBRO_DUPLICADO;
+        return CodigoResultado.OK;
+    }
+
+    /**
+     * Registra un libro con ISBN ya validado, sin mensajes en consola.
+     * Retorna false si ya existe un libro con ese ISBN.
+     */
+    boolean agregarLibroSiNoExiste(Libro libro) {
+
+        String clave = libro.getClaveISBN();
+        int franja = bloqueos.franja(clave);
+
+        bloqueos.bloquear(franja);
+        try {
+            if (indiceISBN.containsKey(clave)) return false;
+
+            if (diario != null) diario.registrarLibro(libro);
+            incorporarLibro(libro);
+            return true;
+        } finally {
+            bloqueos.desbloquear(franja);
         }
-        return null;
     }
 
-    public ArrayList<Libro> buscarLibro(String criterio) {
+    /**
+     * Registra juntos libros con ISBN ya validados (un lote de ImportadorCatalogo):
+     * toma una sola vez las franjas de todos, descarta los que ya estan en el
+     * catalogo o se repiten en el lote, lleva los demas al diario en un solo
+     * registro y los incorpora. Retorna, por libro, si se registro.
+     */
+    boolean[] agregarLibrosSiNoExisten(List<Libro> libros) {
 
-        ArrayList<Libro> resultados = new ArrayList<>();
-        String criterioBaja = criterio.toLowerCase();
+        int cantidad = libros.size();
+        boolean[] agregados = new boolean[cantidad];
+        if (cantidad == 0) return agregados;
 
-        for (Libro l : catalogoLibros) {
-            if (l.getTitulo().toLowerCase().contains(criterioBaja)
-                    || l.getAutor().toLowerCase().contains(criterioBaja)
-                    || l.getCategoria().toLowerCase().contains(criterioBaja)) {
+        int[] franjas = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) franjas[i] = bloqueos.franja(libros.get(i).getClaveISBN());
+        franjas = BloqueosPorClave.ordenar(franjas);
 
-                resultados.add(l);
+        bloqueos.bloquear(franjas);
+        try {
+            HashSet<String> claves = new HashSet<>();
+            ArrayList<Libro> nuevos = new ArrayList<>(cantidad);
+
+            for (int i = 0; i < cantidad; i++) {
+                String clave = libros.get(i).getClaveISBN();
+                if (indiceISBN.containsKey(clave) || !claves.add(clave)) continue;
+
+                agregados[i] = true;
+                nuevos.add(libros.get(i));
             }
+
+            if (diario != null && !nuevos.isEmpty()) diario.registrarLibros(nuevos);
+
+            for (Libro libro : nuevos) incorporarLibro(libro, false, false);
+            indiceTexto.agregar(nuevos);
+            indiceAutocompletado.agregar(nuevos);
+        } finally {
+            bloqueos.desbloquear(franjas);
         }
 
-        return resultados;
+        return agregados;
+    }
+
+    /**
+     * Importa libros desde un archivo CSV o TSV (ver ImportadorCatalogo).
+     */
+    public ReporteImportacion importarCatalogo(Path archivo) throws IOException {
+        return new ImportadorCatalogo(this).importar(archivo);
+    }
+
+    /**
+     * Agrega al catalogo un libro ya validado.
+     * Requiere la franja del ISBN tomada, o que nadie mas use la biblioteca.
+     */
+    void incorporarLibro(Libro libro) {
+        incorporarLibro(libro, true);
+    }
+
+    /**
+     * Igual que incorporarLibro, pero permite dejar la indexacion de texto
+     * para despues (ver indexarTextoEnSegundoPlano).
+     */
+    void incorporarLibro(Libro libro, boolean indexarTexto) {
+        incorporarLibro(libro, indexarTexto, true);
+    }
+
+    // Con indexarSugerencias en false el libro no entra al autocompletado: lo agrega quien llama
+    private void incorporarLibro(Libro libro, boolean indexarTexto, boolean indexarSugerencias) {
+
+        indiceISBN.put(libro.getClaveISBN(), libro);
+
+        int ordinal = totalLibros.getAndIncrement();
+        libro.registrarEn(this, ordinal);
+        catalogoLibros.set(ordinal, libro);
+        if (indexarTexto) indiceTexto.agregar(libro);
+        if (indexarSugerencias) indiceAutocompletado.agregar(libro);
+        contadores.libroRegistrado(libro);
+    }
+
+    /**
+     * Indexa para busqueda, en un hilo de fondo, libros incorporados sin indexar.
+     */
+    void indexarTextoEnSegundoPlano(List<Libro> libros) {
+        indiceTexto.agregarEnSegundoPlano(libros);
+    }
+
+    public Libro buscarLibroPorISBN(String isbn) {
+        if (isbn == null) return null;
+
+        return indiceISBN.get(Libro.normalizarISBN(isbn));
+    }
+
+    /**
+     * Busca libros cuyo titulo, autor o categoria contengan el criterio,
+     * sin distinguir mayusculas ni tildes.
+     */
+    public ArrayList<Libro> buscarLibro(String criterio) {
+
+        long inicio = metricas.iniciar();
+        ArrayList<Libro> encontrados = indiceTexto.buscarSubcadena(criterio);
+        metricas.registrar(MetricasBiblioteca.Operacion.BUSQUEDA_LIBRO,
+                encontrados.isEmpty() ? CodigoResultado.LIBRO_NO_ENCONTRADO : CodigoResultado.OK, inicio);
+        return encontrados;
+    }
+
+    /**
+     * Busca libros aunque el criterio tenga errores de tipeo: cada palabra
+     * puede diferir en una letra de alguna del titulo, autor o categoria
+     * (en dos, si es larga). Los mas parecidos al criterio van primero.
+     */
+    public ArrayList<Libro> buscarLibroAproximado(String criterio) {
+
+        long inicio = metricas.iniciar();
+        ArrayList<Libro> encontrados = indiceTexto.buscarAproximado(criterio);
+        metricas.registrar(MetricasBiblioteca.Operacion.BUSQUEDA_APROXIMADA,
+                encontrados.isEmpty() ? CodigoResultado.LIBRO_NO_ENCONTRADO : CodigoResultado.OK, inicio);
+        return encontrados;
+    }
+
+    /**
+     * Busca libros que contengan todas las palabras del criterio, en cualquier orden.
+     */
+    public ArrayList<Libro> buscarLibroPorPalabras(String criterio) {
+        return indiceTexto.buscarPalabras(criterio);
+    }
+
+    /**
+     * Sugiere hasta cantidad titulos y autores que empiezan con el prefijo,
+     * o que tienen una palabra que empieza con el, sin distinguir mayusculas
+     * ni tildes. Van de los mas prestados a los menos.
+     */
+    public ArrayList<Sugerencia> sugerirLibros(String prefijo, int cantidad) {
+
+        long inicio = metricas.iniciar();
+        ArrayList<Sugerencia> sugerencias = indiceAutocompletado.sugerir(prefijo, cantidad);
+        metricas.registrar(MetricasBiblioteca.Operacion.SUGERENCIA,
+                sugerencias.isEmpty() ? CodigoResultado.LIBRO_NO_ENCONTRADO : CodigoResultado.OK, inicio);
+        return sugerencias;
+    }
+
+    ContadoresBiblioteca getContadores() {
+        return contadores;
+    }
+
+    // Los llama el libro antes y despues de cambiar un campo indexado
+    void quitarDeIndices(Libro libro) {
+        indiceTexto.quitar(libro);
+        indiceAutocompletado.quitar(libro);
+    }
+
+    void agregarAIndices(Libro libro) {
+        indiceTexto.agregar(libro);
+        indiceAutocompletado.agregar(libro);
     }
 
     public void listarLibros() {
 
-        if (catalogoLibros.isEmpty()) {
+        int total = totalLibros.get();
+
+        if (total == 0) {
             System.out.println("  No hay libros registrados.");
             return;
         }
 
-        for (Libro l : catalogoLibros) {
-            l.mostrarInformacion();
+        RenderizadorRegistros salida = RenderizadorRegistros.consola(FormatoSalida.CAJA);
+        for (int i = 0; i < total; i++) {
+            Libro l = catalogoLibros.get(i);
+            if (l != null) salida.escribir(l);
         }
+        salida.close();
+    }
+
+    /**
+     * Retorna una pagina del catalogo en orden de registro, con hasta
+     * tamano libros que cumplan el filtro (null para no filtrar),
+     * empezando en el cursor (Pagina.INICIO para la primera).
+     */
+    public Pagina<Libro> paginarLibros(int cursor, int tamano, Predicate<? super Libro> filtro) {
+        return paginar(catalogoLibros, totalLibros.get(), cursor, tamano, filtro);
     }
 
     // ===================== USUARIOS =====================
 
     public boolean registrarUsuario(Usuario usuario) {
 
-        if (!Usuario.validarEmail(usuario.getCorreoElectronico())) {
-            System.out.println("  [Error] Formato de correo invalido: " + usuario.getCorreoElectronico());
-            return false;
-        }
+        CodigoResultado codigo = agregarUsuario(usuario);
 
-        if (buscarUsuario(usuario.getNumeroIdentificacion()) != null) {
-            System.out.println("  [Error] Ya existe un usuario con ID: " + usuario.getNumeroIdentificacion());
+        if (!codigo.esExito()) {
+            mostrarError(codigo, codigo == CodigoResultado.EMAIL_INVALIDO
+                    ? usuario.getCorreoElectronico() : usuario.getNumeroIdentificacion());
             return false;
         }
 
-        usuariosRegistrados.add(usuario);
         System.out.println("  [OK] Usuario registrado: " + usuario.getNombreCompleto());
         return true;
     }
 
-    public Usuario buscarUsuario(String identificacion) {
+    /**
+     * Igual que registrarUsuario, pero sin mensajes en consola.
+     */
+    public CodigoResultado agregarUsuario(Usuario usuario) {
 
-        for (Usuario u : usuariosRegistrados) {
-            if (u.getNumeroIdentificacion().equals(identificacion)
-                    || u.getNombreCompleto().equalsIgnoreCase(identificacion)) {
-                return u;
-            }
+        if (!Usuario.validarEmail(usuario.getCorreoElectronico())) return CodigoResultado.EMAIL_INVALIDO;
+
+        String id = usuario.getNumeroIdentificacion();
+        int franja = bloqueos.franja(id);
+
+        bloqueos.bloquear(franja);
+        try {
+            if (localizarUsuario(id) != null) return CodigoResultado.USUARIO_DUPLICADO;
+
+            if (diario != null) diario.registrarUsuario(usuario);
+            incorporarUsuario(usuario);
+        } finally {
+            bloqueos.desbloquear(franja);
         }
 
+        return CodigoResultado.OK;
+    }
+
+    /**
+     * Agrega un usuario ya validado.
+     * Requiere la franja de su ID tomada, o que nadie mas use la biblioteca.
+     */
+    void incorporarUsuario(Usuario usuario) {
+
+        indiceUsuariosPorId.put(usuario.getNumeroIdentificacion(), usuario);
+
+        int ordinal = totalUsuarios.getAndIncrement();
+        usuario.registrarEn(this, ordinal);
+        usuariosRegistrados.set(ordinal, usuario);
+        agregarAIndiceNombres(usuario, usuario.getNombreCompleto());
+    }
+
+    /**
+     * Busca un usuario por numero de identificacion o, si no existe,
+     * por nombre completo sin distinguir mayusculas.
+     * Si varios usuarios comparten el nombre, retorna el registrado primero.
+     */
+    public Usuario buscarUsuario(String identificacion) {
+
+        long inicio = metricas.iniciar();
+        Usuario usuario = localizarUsuario(identificacion);
+        metricas.registrar(MetricasBiblioteca.Operacion.BUSQUEDA_USUARIO,
+                usuario == null ? CodigoResultado.USUARIO_NO_ENCONTRADO : CodigoResultado.OK, inicio);
+        return usuario;
+    }
+
+    // Igual que buscarUsuario, sin contar en las metricas (para uso interno)
+    private Usuario localizarUsuario(String identificacion) {
+
+        if (identificacion == null) return null;
+
+        Usuario usuario = indiceUsuariosPorId.get(identificacion);
+        if (usuario != null) return usuario;
+
+        CopyOnWriteArrayList<Usuario> homonimos = indiceUsuariosPorNombre.get(claveNombre(identificacion));
+        if (homonimos == null) return null;
+
+        // La lista puede vaciarse entre la consulta y la lectura
+        for (Usuario u : homonimos) return u;
         return null;
     }
 
+    /**
+     * Retorna todos los usuarios con el nombre indicado, sin distinguir mayusculas.
+     */
+    public ArrayList<Usuario> buscarUsuariosPorNombre(String nombre) {
+
+        if (nombre == null) return new ArrayList<>();
+
+        CopyOnWriteArrayList<Usuario> homonimos = indiceUsuariosPorNombre.get(claveNombre(nombre));
+        return homonimos == null ? new ArrayList<>() : new ArrayList<>(homonimos);
+    }
+
+    /**
+     * Cambia el nombre del usuario y lo mueve dentro del indice de nombres.
+     * Leer el nombre anterior, cambiarlo y reindexar se hace con la franja
+     * del usuario tomada, para que dos cambios a la vez no dejen entradas
+     * con un nombre intermedio ni al usuario dos veces bajo el mismo nombre.
+     */
+    void renombrarUsuario(Usuario usuario, String nombre) {
+
+        int franja = franjaDe(usuario);
+
+        bloqueos.bloquear(franja);
+        try {
+            String anterior = usuario.getNombreCompleto();
+            usuario.asignarNombreCompleto(nombre);
+
+            quitarDeIndiceNombres(usuario, anterior);
+            agregarAIndiceNombres(usuario, nombre);
+        } finally {
+            bloqueos.desbloquear(franja);
+        }
+    }
+
+    private void agregarAIndiceNombres(Usuario usuario, String nombre) {
+        if (nombre == null) return;
+
+        indiceUsuariosPorNombre.compute(claveNombre(nombre), (k, homonimos) -> {
+            if (homonimos == null) homonimos = new CopyOnWriteArrayList<>();
+            homonimos.add(usuario);
+            return homonimos;
+        });
+    }
+
+    private void quitarDeIndiceNombres(Usuario usuario, String nombre) {
+        if (nombre == null) return;
+
+        indiceUsuariosPorNombre.computeIfPresent(claveNombre(nombre), (k, homonimos) -> {
+            homonimos.remove(usuario);
+            return homonimos.isEmpty() ? null : homonimos;
+        });
+    }
+
+    private static String claveNombre(String nombre) {
+        return nombre.toLowerCase(Locale.ROOT);
+    }
+
     public void listarUsuarios() {
 
-        if (usuariosRegistrados.isEmpty()) {
+        int total = totalUsuarios.get();
+
+        if (total == 0) {
             System.out.println("  No hay usuarios registrados.");
             return;
         }
 
-        for (Usuario u : usuariosRegistrados) {
-            u.mostrarInformacion();
+        RenderizadorRegistros salida = RenderizadorRegistros.consola(FormatoSalida.CAJA);
+        for (int i = 0; i < total; i++) {
+            Usuario u = usuariosRegistrados.get(i);
+            if (u != null) salida.escribir(u);
+        }
+        salida.close();
+    }
+
+    /**
+     * Retorna una pagina de usuarios en orden de registro (ver paginarLibros).
+     */
+    public Pagina<Usuario> paginarUsuarios(int cursor, int tamano, Predicate<? super Usuario> filtro) {
+        return paginar(usuariosRegistrados, totalUsuarios.get(), cursor, tamano, filtro);
+    }
+
+    // Recorre desde el cursor hasta llenar la pagina; el cursor es la siguiente posicion
+    private static <T> Pagina<T> paginar(ArregloConcurrente<T> elementos, int total, int cursor,
+                                         int tamano, Predicate<? super T> filtro) {
+
+        ArrayList<T> pagina = new ArrayList<>(tamano);
+        int posicion = Math.max(cursor, 0);
+
+        while (posicion < total && pagina.size() < tamano) {
+            T e = elementos.get(posicion++);
+            if (e != null && (filtro == null || filtro.test(e))) pagina.add(e);
         }
+
+        return new Pagina<>(pagina, posicion < total ? posicion : Pagina.FIN);
     }
 
     // ===================== PRESTAMOS =====================
 
     public boolean realizarPrestamo(String isbnLibro, String idUsuario) {
 
-        Libro libro = buscarLibroPorISBN(isbnLibro);
+        ResultadoPrestamo resultado = prestar(isbnLibro, idUsuario);
 
-        if (libro == null) {
-            System.out.println("  [Error] No se encontro libro con ISBN: " + isbnLibro);
+        if (!resultado.esExito()) {
+            mostrarError(resultado.getCodigo(),
+                    resultado.getCodigo() == CodigoResultado.USUARIO_NO_ENCONTRADO ? idUsuario : isbnLibro);
             return false;
         }
 
-        if (!libro.estaDisponible()) {
-            System.out.println("  [Error] El libro no tiene ejemplares disponibles.");
-            return false;
+        Prestamo nuevoPrestamo = resultado.getPrestamo();
+        System.out.println("  [OK] Prestamo registrado. ID: "
+                + nuevoPrestamo.getIdPrestamo()
+                + " | Libro: " + nuevoPrestamo.getLibro().getTitulo()
+                + " | Usuario: " + nuevoPrestamo.getUsuario().getNombreCompleto());
+
+        return true;
+    }
+
+    /**
+     * Igual que realizarPrestamo, pero sin mensajes en consola.
+     * Retorna el prestamo creado o el motivo del rechazo.
+     */
+    public ResultadoPrestamo prestar(String isbnLibro, String idUsuario) {
+
+        long inicio = metricas.iniciar();
+        ResultadoPrestamo resultado = validarYPrestar(isbnLibro, idUsuario);
+        metricas.registrar(MetricasBiblioteca.Operacion.PRESTAMO, resultado.getCodigo(), inicio);
+        return resultado;
+    }
+
+    private ResultadoPrestamo validarYPrestar(String isbnLibro, String idUsuario) {
+
+        Libro libro = buscarLibroPorISBN(isbnLibro);
+
+        if (libro == null) return ResultadoPrestamo.rechazado(CodigoResultado.LIBRO_NO_ENCONTRADO);
+
+        // Sin ejemplares en el estante solo puede llevarselo quien tenga uno apartado
+        if (!libro.estaDisponible() && !libro.tieneApartados()) {
+            return ResultadoPrestamo.rechazado(CodigoResultado.SIN_EJEMPLARES);
         }
 
-        Usuario usuario = buscarUsuario(idUsuario);
+        Usuario usuario = localizarUsuario(idUsuario);
 
-        if (usuario == null) {
-            System.out.println("  [Error] No se encontro usuario con ID: " + idUsuario);
-            return false;
+        if (usuario == null) return ResultadoPrestamo.rechazado(CodigoResultado.USUARIO_NO_ENCONTRADO);
+
+        int franjaLibro = franjaDe(libro);
+        int franjaUsuario = franjaDe(usuario);
+
+        // Las verificaciones se repiten bajo el cerrojo para que nadie
+        // tome el ultimo ejemplar o el ultimo cupo entre la verificacion y el prestamo
+        bloqueos.bloquear(franjaLibro, franjaUsuario);
+        try {
+            ColaReservas reservas = libro.getReservas();
+            Apartado apartado = reservas == null ? null : reservas.apartadoDe(usuario);
+
+            if (apartado == null && !libro.estaDisponible()) {
+                return ResultadoPrestamo.rechazado(CodigoResultado.SIN_EJEMPLARES);
+            }
+            if (tieneVencidos(usuario)) return ResultadoPrestamo.rechazado(CodigoResultado.USUARIO_CON_VENCIDOS);
+            if (!usuario.puedePrestar()) return ResultadoPrestamo.rechazado(CodigoResultado.LIMITE_PRESTAMOS);
+
+            int idPrestamo = historialPrestamos.generarId();
+            LocalDate hoy = reloj.hoy();
+
+            if (diario != null) {
+                diario.registrarPrestamo(idPrestamo, libro.getIsbn(), usuario.getNumeroIdentificacion(), hoy);
+            }
+
+            if (apartado != null) retirarApartado(libro, reservas, apartado);
+            return ResultadoPrestamo.aprobado(incorporarPrestamo(idPrestamo, libro, usuario, hoy));
+        } finally {
+            bloqueos.desbloquear(franjaLibro, franjaUsuario);
         }
+    }
 
-        if (tieneVencidos(usuario)) {
-            System.out.println("  [Error] El usuario tiene prestamos vencidos.");
+    public boolean registrarDevolucion(int idPrestamo) {
+
+        CodigoResultado codigo = devolver(idPrestamo);
+
+        if (!codigo.esExito()) {
+            mostrarError(codigo, idPrestamo);
             return false;
         }
 
-        if (!usuario.puedePrestar()) {
-            System.out.println("  [Error] El usuario ya alcanzo el limite de prestamos.");
-            return false;
+        return true;
+    }
+
+    /**
+     * Igual que registrarDevolucion, pero sin mensajes en consola.
+     */
+    public CodigoResultado devolver(int idPrestamo) {
+
+        long inicio = metricas.iniciar();
+        CodigoResultado codigo = validarYDevolver(idPrestamo);
+        metricas.registrar(MetricasBiblioteca.Operacion.DEVOLUCION, codigo, inicio);
+        return codigo;
+    }
+
+    private CodigoResultado validarYDevolver(int idPrestamo) {
+
+        Prestamo prestamo = buscarPrestamoPorId(idPrestamo);
+
+        if (prestamo == null) return CodigoResultado.PRESTAMO_NO_ENCONTRADO;
+
+        int franjaLibro = franjaDe(prestamo.getLibro());
+        int franjaUsuario = franjaDe(prestamo.getUsuario());
+
+        bloqueos.bloquear(franjaLibro, franjaUsuario);
+        try {
+            if (prestamo.getEstado() == EstadoPrestamo.DEVUELTO) return CodigoResultado.PRESTAMO_YA_DEVUELTO;
+
+            LocalDate hoy = reloj.hoy();
+
+            if (diario != null) diario.registrarDevolucion(idPrestamo, hoy);
+            incorporarDevolucion(prestamo, hoy);
+        } finally {
+            bloqueos.desbloquear(franjaLibro, franjaUsuario);
         }
 
-        Prestamo nuevoPrestamo = new Prestamo(contadorPrestamos++, libro, usuario);
-        historialPrestamos.add(nuevoPrestamo);
+        return CodigoResultado.OK;
+    }
+
+    private static void mostrarError(CodigoResultado codigo, Object dato) {
+        System.out.println("  [Error] " + codigo.getMensaje(dato));
+    }
+
+    /**
+     * Crea y registra un prestamo ya validado.
+     * Requiere las franjas del libro y del usuario tomadas.
+     */
+    private Prestamo incorporarPrestamo(int idPrestamo, Libro libro, Usuario usuario, LocalDate fecha) {
+
+        Prestamo prestamo = historialPrestamos.agregar(idPrestamo, libro, usuario, (int) fecha.toEpochDay());
+        prestamosPorVencer.add(prestamo);
 
         libro.prestar();
-        usuario.agregarPrestamo();
+        libro.sumarPrestamos(1);
+        usuario.agregarPrestamo(prestamo);
+        indiceAutocompletado.prestado(libro);
 
-        System.out.println("  [OK] Prestamo registrado. ID: "
-                + nuevoPrestamo.getIdPrestamo()
-                + " | Libro: " + libro.getTitulo()
-                + " | Usuario: " + usuario.getNombreCompleto());
+        return prestamo;
+    }
 
-        return true;
+    /**
+     * Cierra un prestamo abierto en la fecha indicada.
+     * Requiere las franjas del libro y del usuario tomadas.
+     */
+    private void incorporarDevolucion(Prestamo prestamo, LocalDate fecha) {
+
+        // Si aun estaba por vencer, la cola lo descarta despues
+        prestamo.registrarDevolucion(fecha);
     }
 
-    public boolean registrarDevolucion(int idPrestamo) {
+    /**
+     * Aplica un prestamo leido del diario.
+     */
+    void reproducirPrestamo(int idPrestamo, String isbn, String idUsuario, LocalDate fecha) throws IOException {
+
+        Libro libro = buscarLibroPorISBN(isbn);
+        Usuario usuario = indiceUsuariosPorId.get(idUsuario);
+
+        if (libro == null || usuario == null) {
+            throw new IOException("Diario inconsistente: prestamo " + idPrestamo
+                    + " sobre un libro o usuario inexistente");
+        }
+
+        historialPrestamos.reservarHasta(idPrestamo);
+        incorporarPrestamo(idPrestamo, libro, usuario, fecha);
+    }
+
+    /**
+     * Restaura un prestamo leido de una instantanea, devuelto o no.
+     * Las fechas van en dias epoch; diaDevolucion es TablaPrestamos.SIN_FECHA
+     * si sigue abierto. Los devueltos solo ocupan su fila en la tabla.
+     */
+    void restaurarPrestamo(int idPrestamo, Libro libro, Usuario usuario,
+                           int diaPrestamo, int diaDevolucion) {
+
+        historialPrestamos.reservarHasta(idPrestamo);
+
+        if (diaDevolucion == TablaPrestamos.SIN_FECHA) {
+            incorporarPrestamo(idPrestamo, libro, usuario, LocalDate.ofEpochDay(diaPrestamo));
+        } else {
+            historialPrestamos.agregarDevuelto(idPrestamo, libro.getOrdinal(), usuario.getOrdinal(),
+                    diaPrestamo, diaDevolucion);
+            libro.sumarPrestamos(1);
+        }
+    }
+
+    /**
+     * Aplica una devolucion leida del diario.
+     */
+    void reproducirDevolucion(int idPrestamo, LocalDate fecha) throws IOException {
 
         Prestamo prestamo = buscarPrestamoPorId(idPrestamo);
 
         if (prestamo == null) {
-            System.out.println("  [Error] No se encontro prestamo con ID: " + idPrestamo);
-            return false;
+            throw new IOException("Diario inconsistente: devolucion del prestamo inexistente " + idPrestamo);
         }
 
-        return prestamo.registrarDevolucion();
+        incorporarDevolucion(prestamo, fecha);
     }
 
     public Prestamo buscarPrestamoPorId(int idPrestamo) {
+        return historialPrestamos.buscar(idPrestamo);
+    }
 
-        for (Prestamo p : historialPrestamos) {
-            if (p.getIdPrestamo() == idPrestamo) return p;
-        }
+    /**
+     * Retorna todos los prestamos del usuario, abiertos, devueltos o
+     * archivados, en orden de ID. Si el usuario no existe, la lista queda vacia.
+     */
+    public ArrayList<Prestamo> historialDeUsuario(String idUsuario) {
 
-        return null;
+        Usuario usuario = localizarUsuario(idUsuario);
+        return usuario == null ? new ArrayList<>() : historialPrestamos.historialDe(true, usuario.getOrdinal());
+    }
+
+    /**
+     * Retorna todos los prestamos del libro, en orden de ID (ver historialDeUsuario).
+     */
+    public ArrayList<Prestamo> historialDeLibro(String isbn) {
+
+        Libro libro = buscarLibroPorISBN(isbn);
+        return libro == null ? new ArrayList<>() : historialPrestamos.historialDe(false, libro.getOrdinal());
     }
 
     private boolean tieneVencidos(Usuario usuario) {
+        return usuario.tienePrestamosVencidos();
+    }
+
+    /**
+     * Retorna los prestamos no devueltos (activos y vencidos), en orden de ID.
+     * Recorre solo la columna de estado del historial.
+     */
+    public ArrayList<Prestamo> listarPrestamosActivos() {
+
+        actualizarVencimientos();
+
+        ArrayList<Prestamo> activos = new ArrayList<>(contadores.getPrestamosActivos());
+        historialPrestamos.paraCadaAbierto(id -> activos.add(historialPrestamos.buscar(id)));
+        return activos;
+    }
+
+    /**
+     * Retorna los prestamos vencidos, en orden de ID.
+     */
+    public ArrayList<Prestamo> listarPrestamosVencidos() {
+
+        actualizarVencimientos();
+
+        ArrayList<Prestamo> vencidos = new ArrayList<>(contadores.getPrestamosVencidos());
+        historialPrestamos.paraCada(EstadoPrestamo.VENCIDO, id -> vencidos.add(historialPrestamos.buscar(id)));
+        return vencidos;
+    }
+
+    /**
+     * Retorna una pagina de prestamos no devueltos en orden de ID, con hasta
+     * tamano prestamos que cumplan el filtro (null para no filtrar).
+     * El cursor es el ID desde el que se sigue (Pagina.INICIO para la primera).
+     */
+    public Pagina<Prestamo> paginarPrestamosActivos(int cursor, int tamano, Predicate<? super Prestamo> filtro) {
+        actualizarVencimientos();
+        return paginarPrestamos(cursor, tamano, filtro, null);
+    }
+
+    /**
+     * Retorna una pagina de prestamos vencidos en orden de ID (ver paginarPrestamosActivos).
+     */
+    public Pagina<Prestamo> paginarPrestamosVencidos(int cursor, int tamano, Predicate<? super Prestamo> filtro) {
+        actualizarVencimientos();
+        return paginarPrestamos(cursor, tamano, filtro, EstadoPrestamo.VENCIDO);
+    }
 
-        for (Prestamo p : historialPrestamos) {
-            if (p.getUsuario().getNumeroIdentificacion()
-                    .equals(usuario.getNumeroIdentificacion())
-                    && p.estaVencido()) {
-                return true;
+    // Con estado null recorre los prestamos abiertos (ACTIVO o VENCIDO)
+    private Pagina<Prestamo> paginarPrestamos(int cursor, int tamano, Predicate<? super Prestamo> filtro,
+                                              EstadoPrestamo estado) {
+
+        ArrayList<Prestamo> pagina = new ArrayList<>(tamano);
+        int id = estado == null ? historialPrestamos.siguienteAbierto(cursor)
+                : historialPrestamos.siguiente(cursor, estado);
+
+        while (id != -1 && pagina.size() < tamano) {
+            Prestamo p = historialPrestamos.buscar(id);
+            if (filtro == null || filtro.test(p)) pagina.add(p);
+
+            id = estado == null ? historialPrestamos.siguienteAbierto(id + 1)
+                    : historialPrestamos.siguiente(id + 1, estado);
+        }
+
+        return new Pagina<>(pagina, id == -1 ? Pagina.FIN : id);
+    }
+
+    /**
+     * Pasa a VENCIDO, en bloque, los prestamos cuya fecha estimada ya paso.
+     * Solo toca los prestamos que cruzan la fecha, no todo el historial.
+     * Antes vuelve a leer la fecha del reloj, por si cambio el dia.
+     */
+    public void actualizarVencimientos() {
+
+        reloj.actualizar();
+        long hoy = reloj.diaActual();
+        Prestamo siguiente;
+
+        while ((siguiente = prestamosPorVencer.peek()) != null
+                && hoy > siguiente.getDiaVencimiento()) {
+
+            Prestamo p = prestamosPorVencer.poll();
+            if (p == null) break;
+
+            int franjaLibro = franjaDe(p.getLibro());
+            int franjaUsuario = franjaDe(p.getUsuario());
+
+            bloqueos.bloquear(franjaLibro, franjaUsuario);
+            try {
+                // Los prestamos devueltos antes de vencer se descartan aqui
+                if (p.getEstado() == EstadoPrestamo.DEVUELTO) continue;
+
+                p.marcarVencido();
+            } finally {
+                bloqueos.desbloquear(franjaLibro, franjaUsuario);
             }
         }
+    }
 
-        return false;
+    private int franjaDe(Libro libro) {
+        return bloqueos.franja(libro.getClaveISBN());
     }
 
-    public ArrayList<Prestamo> listarPrestamosActivos() {
+    private int franjaDe(Usuario usuario) {
+        return bloqueos.franja(usuario.getNumeroIdentificacion());
+    }
+
+    // ===================== LOTES =====================
+
+    /**
+     * Presta al usuario todos los libros del carrito o ninguno (por ejemplo,
+     * desde un puesto de autoprestamo). El usuario se busca y se valida
+     * (vencidos y limite) una sola vez para todo el carrito, las franjas del
+     * usuario y de los libros se toman juntas y el lote va al diario en un
+     * solo registro. Un mismo ISBN puede repetirse si hay ejemplares para todos.
+     */
+    public ResultadoLote prestarLote(String idUsuario, List<String> isbns) {
+
+        long inicio = metricas.iniciar();
+        ResultadoLote resultado = validarYPrestarLote(idUsuario, isbns);
+        metricas.registrar(MetricasBiblioteca.Operacion.PRESTAMO_LOTE, resultado.getCodigo(), inicio);
+        return resultado;
+    }
+
+    private ResultadoLote validarYPrestarLote(String idUsuario, List<String> isbns) {
+
+        int cantidad = isbns.size();
+        Usuario usuario = localizarUsuario(idUsuario);
+
+        if (usuario == null) return ResultadoLote.rechazado(CodigoResultado.USUARIO_NO_ENCONTRADO, cantidad);
+
+        CodigoResultado[] codigos = new CodigoResultado[cantidad];
+
+        Libro[] libros = new Libro[cantidad];
+        int[] franjas = new int[cantidad + 1];
+        franjas[cantidad] = franjaDe(usuario);
+
+        for (int i = 0; i < cantidad; i++) {
+            libros[i] = buscarLibroPorISBN(isbns.get(i));
+            franjas[i] = libros[i] == null ? franjas[cantidad] : franjaDe(libros[i]);
+        }
+        franjas = BloqueosPorClave.ordenar(franjas);
+
+        bloqueos.bloquear(franjas);
+        try {
+            if (rechazarCarrito(usuario, libros, codigos)) return ResultadoLote.rechazado(codigos);
 
-        ArrayList<Prestamo> activos = new ArrayList<>();
+            int[] ids = new int[cantidad];
+            for (int i = 0; i < cantidad; i++) ids[i] = historialPrestamos.generarId();
+            LocalDate hoy = reloj.hoy();
 
-        for (Prestamo p : historialPrestamos) {
-            if (!p.getEstadoPrestamo().equals("DEVUELTO")) {
-                activos.add(p);
+            if (diario != null && cantidad > 0) {
+                diario.registrarPrestamos(ids, libros, usuario.getNumeroIdentificacion(), hoy);
             }
+
+            Prestamo[] prestamos = new Prestamo[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                ColaReservas reservas = libros[i].getReservas();
+                Apartado apartado = reservas == null ? null : reservas.apartadoDe(usuario);
+
+                if (apartado != null) retirarApartado(libros[i], reservas, apartado);
+                prestamos[i] = incorporarPrestamo(ids[i], libros[i], usuario, hoy);
+            }
+            return ResultadoLote.aplicado(prestamos);
+        } finally {
+            bloqueos.desbloquear(franjas);
         }
+    }
 
-        return activos;
+    // Valida el carrito entero con las franjas tomadas y deja el codigo de cada
+    // elemento; retorna true si alguno se rechaza
+    private boolean rechazarCarrito(Usuario usuario, Libro[] libros, CodigoResultado[] codigos) {
+
+        boolean conVencidos = tieneVencidos(usuario);
+
+        // Ejemplares que el carrito ya pidio de cada libro, por si se repite
+        IdentityHashMap<Libro, Integer> pedidos = new IdentityHashMap<>();
+        int aprobados = 0;
+        boolean rechazado = false;
+
+        for (int i = 0; i < libros.length; i++) {
+            Libro libro = libros[i];
+            CodigoResultado codigo;
+
+            if (libro == null) {
+                codigo = CodigoResultado.LIBRO_NO_ENCONTRADO;
+            } else if (pedidos.merge(libro, 1, Integer::sum) > ejemplaresPara(libro, usuario)) {
+                codigo = CodigoResultado.SIN_EJEMPLARES;
+            } else if (conVencidos) {
+                codigo = CodigoResultado.USUARIO_CON_VENCIDOS;
+            } else if (!usuario.puedePrestar(aprobados + 1)) {
+                codigo = CodigoResultado.LIMITE_PRESTAMOS;
+            } else {
+                codigo = CodigoResultado.OK;
+                aprobados++;
+            }
+
+            codigos[i] = codigo;
+            rechazado |= !codigo.esExito();
+        }
+
+        return rechazado;
     }
 
-    public ArrayList<Prestamo> listarPrestamosVencidos() {
+    // Ejemplares que el usuario puede llevarse del libro: los del estante y el que tenga apartado
+    private static int ejemplaresPara(Libro libro, Usuario usuario) {
 
-        ArrayList<Prestamo> vencidos = new ArrayList<>();
+        ColaReservas reservas = libro.getReservas();
+        boolean conApartado = reservas != null && reservas.apartadoDe(usuario) != null;
+        return libro.getEjemplaresDisponibles() + (conApartado ? 1 : 0);
+    }
+
+    /**
+     * Registra la devolucion de todos los prestamos indicados o de ninguno.
+     * Los prestamos pueden ser de usuarios distintos; se toman juntas las
+     * franjas de todos sus libros y usuarios y el lote va al diario en un
+     * solo registro.
+     */
+    public ResultadoLote devolverLote(List<Integer> idsPrestamo) {
+
+        long inicio = metricas.iniciar();
+        ResultadoLote resultado = validarYDevolverLote(idsPrestamo);
+        metricas.registrar(MetricasBiblioteca.Operacion.DEVOLUCION_LOTE, resultado.getCodigo(), inicio);
+        return resultado;
+    }
+
+    private ResultadoLote validarYDevolverLote(List<Integer> idsPrestamo) {
+
+        int cantidad = idsPrestamo.size();
+        CodigoResultado[] codigos = new CodigoResultado[cantidad];
+        Prestamo[] prestamos = new Prestamo[cantidad];
+        int[] ids = new int[cantidad];
+        int[] franjas = new int[2 * cantidad];
+        int tomadas = 0;
+
+        for (int i = 0; i < cantidad; i++) {
+            ids[i] = idsPrestamo.get(i);
+            prestamos[i] = buscarPrestamoPorId(ids[i]);
 
-        for (Prestamo p : historialPrestamos) {
-            if (p.estaVencido()) {
-                vencidos.add(p);
+            if (prestamos[i] != null) {
+                franjas[tomadas++] = franjaDe(prestamos[i].getLibro());
+                franjas[tomadas++] = franjaDe(prestamos[i].getUsuario());
             }
         }
+        franjas = BloqueosPorClave.ordenar(Arrays.copyOf(franjas, tomadas));
 
-        return vencidos;
+        bloqueos.bloquear(franjas);
+        try {
+            HashSet<Integer> vistos = new HashSet<>();
+            boolean rechazado = false;
+
+            for (int i = 0; i < cantidad; i++) {
+                if (prestamos[i] == null) {
+                    codigos[i] = CodigoResultado.PRESTAMO_NO_ENCONTRADO;
+                } else if (prestamos[i].getEstado() == EstadoPrestamo.DEVUELTO || !vistos.add(ids[i])) {
+                    codigos[i] = CodigoResultado.PRESTAMO_YA_DEVUELTO;
+                } else {
+                    codigos[i] = CodigoResultado.OK;
+                }
+                rechazado |= !codigos[i].esExito();
+            }
+
+            if (rechazado) return ResultadoLote.rechazado(codigos);
+
+            LocalDate hoy = reloj.hoy();
+
+            if (diario != null && cantidad > 0) diario.registrarDevoluciones(ids, hoy);
+            for (Prestamo prestamo : prestamos) incorporarDevolucion(prestamo, hoy);
+
+            return ResultadoLote.aplicado(prestamos);
+        } finally {
+            bloqueos.desbloquear(franjas);
+        }
+    }
+
+    // ===================== RESERVAS =====================
+
+    /**
+     * Pone al usuario en la cola de espera de un libro sin ejemplares.
+     * Cuando se devuelva uno, queda apartado para el primero de la cola,
+     * que recibe el aviso (ver agregarOyenteApartados) y lo retira con
+     * realizarPrestamo antes de que venza el plazo.
+     *
+     * Las reservas y los apartados solo viven en memoria: al reabrir la
+     * biblioteca las colas empiezan vacias y los ejemplares apartados
+     * vuelven al estante.
+     */
+    public boolean realizarReserva(String isbnLibro, String idUsuario) {
+
+        CodigoResultado codigo = reservar(isbnLibro, idUsuario);
+
+        if (!codigo.esExito()) {
+            mostrarError(codigo, codigo == CodigoResultado.USUARIO_NO_ENCONTRADO ? idUsuario : isbnLibro);
+            return false;
+        }
+
+        Libro libro = buscarLibroPorISBN(isbnLibro);
+        System.out.println("  [OK] Reserva registrada. Libro: " + libro.getTitulo()
+                + " | Usuarios en espera: " + libro.getReservasEnEspera());
+        return true;
+    }
+
+    /**
+     * Igual que realizarReserva, pero sin mensajes en consola.
+     */
+    public CodigoResultado reservar(String isbnLibro, String idUsuario) {
+
+        long inicio = metricas.iniciar();
+        CodigoResultado codigo = validarYReservar(isbnLibro, idUsuario);
+        metricas.registrar(MetricasBiblioteca.Operacion.RESERVA, codigo, inicio);
+        return codigo;
+    }
+
+    private CodigoResultado validarYReservar(String isbnLibro, String idUsuario) {
+
+        Libro libro = buscarLibroPorISBN(isbnLibro);
+        if (libro == null) return CodigoResultado.LIBRO_NO_ENCONTRADO;
+
+        Usuario usuario = localizarUsuario(idUsuario);
+        if (usuario == null) return CodigoResultado.USUARIO_NO_ENCONTRADO;
+
+        int franjaLibro = franjaDe(libro);
+
+        // La cola es del libro: basta con su franja
+        bloqueos.bloquear(franjaLibro);
+        try {
+            if (libro.estaDisponible()) return CodigoResultado.LIBRO_DISPONIBLE;
+            if (!libro.abrirReservas().encolar(usuario)) return CodigoResultado.RESERVA_DUPLICADA;
+        } finally {
+            bloqueos.desbloquear(franjaLibro);
+        }
+
+        return CodigoResultado.OK;
+    }
+
+    public boolean cancelarReserva(String isbnLibro, String idUsuario) {
+
+        CodigoResultado codigo = quitarReserva(isbnLibro, idUsuario);
+
+        if (!codigo.esExito()) {
+            mostrarError(codigo, codigo == CodigoResultado.USUARIO_NO_ENCONTRADO ? idUsuario : isbnLibro);
+            return false;
+        }
+
+        System.out.println("  [OK] Reserva cancelada.");
+        return true;
+    }
+
+    /**
+     * Igual que cancelarReserva, pero sin mensajes en consola. Si el usuario
+     * ya tenia un ejemplar apartado, pasa al siguiente de la cola.
+     */
+    public CodigoResultado quitarReserva(String isbnLibro, String idUsuario) {
+
+        Libro libro = buscarLibroPorISBN(isbnLibro);
+        if (libro == null) return CodigoResultado.LIBRO_NO_ENCONTRADO;
+
+        Usuario usuario = localizarUsuario(idUsuario);
+        if (usuario == null) return CodigoResultado.USUARIO_NO_ENCONTRADO;
+
+        int franjaLibro = franjaDe(libro);
+
+        bloqueos.bloquear(franjaLibro);
+        try {
+            ColaReservas reservas = libro.getReservas();
+            if (reservas == null) return CodigoResultado.RESERVA_NO_ENCONTRADA;
+            if (reservas.quitar(usuario)) return CodigoResultado.OK;
+
+            Apartado apartado = reservas.apartadoDe(usuario);
+            if (apartado == null) return CodigoResultado.RESERVA_NO_ENCONTRADA;
+
+            reservas.quitarApartado(apartado);
+            apartado.cancelarExpiracion();
+            pasarAlSiguiente(libro, reservas);
+        } finally {
+            bloqueos.desbloquear(franjaLibro);
+        }
+
+        return CodigoResultado.OK;
+    }
+
+    /**
+     * Registra a quien avisar cada vez que un ejemplar queda apartado.
+     * Los avisos se entregan en el hilo del temporizador de apartados,
+     * fuera de los cerrojos, asi que no deben tardar.
+     */
+    public void agregarOyenteApartados(Consumer<Apartado> oyente) {
+        oyentesApartados.add(oyente);
+    }
+
+    public Duration getPlazoApartado() { return plazoApartado; }
+
+    /**
+     * Cambia el tiempo que se guardan los ejemplares apartados desde ahora.
+     */
+    public void setPlazoApartado(Duration plazo) {
+        this.plazoApartado = plazo;
+    }
+
+    /**
+     * Aparta el ejemplar recien devuelto para el primero de la cola del libro.
+     * Retorna false si nadie espera; entonces el ejemplar vuelve al estante.
+     * Lo llama Libro.devolver, con la franja del libro tomada.
+     */
+    boolean apartarDevuelto(Libro libro) {
+
+        ColaReservas reservas = libro.getReservas();
+        Usuario siguiente = reservas == null ? null : reservas.siguiente();
+
+        if (siguiente == null) return false;
+
+        contadores.ejemplarApartado();
+        apartar(libro, reservas, siguiente);
+        return true;
+    }
+
+    // Guarda el ejemplar para el usuario, programa su vencimiento y lo avisa.
+    // Requiere la franja del libro tomada.
+    private void apartar(Libro libro, ColaReservas reservas, Usuario usuario) {
+
+        Apartado apartado = new Apartado(libro, usuario, reloj.ahora().plus(plazoApartado));
+        reservas.agregarApartado(apartado);
+        programarVencimiento(apartado);
+
+        ScheduledExecutorService temporizador = temporizadorApartados();
+        for (Consumer<Apartado> oyente : oyentesApartados) {
+            temporizador.execute(() -> oyente.accept(apartado));
+        }
+    }
+
+    // Programa la liberacion del apartado para cuando el reloj de la biblioteca
+    // llegue a su limite. Requiere la franja del libro tomada.
+    private void programarVencimiento(Apartado apartado) {
+
+        long espera = Math.max(0, Duration.between(reloj.ahora(), apartado.getLimite()).toMillis());
+        apartado.setExpiracion(temporizadorApartados().schedule(() -> vencerApartado(apartado),
+                espera, TimeUnit.MILLISECONDS));
+    }
+
+    // El ejemplar apartado vuelve al estante justo antes de prestarse al usuario.
+    // Requiere la franja del libro tomada.
+    private void retirarApartado(Libro libro, ColaReservas reservas, Apartado apartado) {
+
+        reservas.quitarApartado(apartado);
+        apartado.cancelarExpiracion();
+        libro.reponerApartado();
+        contadores.apartadoTerminado();
+    }
+
+    // Corre en el temporizador al cumplirse el plazo
+    private void vencerApartado(Apartado apartado) {
+
+        Libro libro = apartado.getLibro();
+        int franjaLibro = franjaDe(libro);
+
+        bloqueos.bloquear(franjaLibro);
+        try {
+            ColaReservas reservas = libro.getReservas();
+
+            // Si ya se retiro o se cancelo, no hay nada que liberar
+            if (reservas.apartadoDe(apartado.getUsuario()) != apartado) return;
+
+            // El temporizador cuenta tiempo real; el limite lo decide el reloj de la
+            // biblioteca, que puede estar fijo o atrasado: si aun no llega, se reprograma
+            if (reloj.ahora().isBefore(apartado.getLimite())) {
+                programarVencimiento(apartado);
+                return;
+            }
+
+            reservas.quitarApartado(apartado);
+            pasarAlSiguiente(libro, reservas);
+        } finally {
+            bloqueos.desbloquear(franjaLibro);
+        }
+    }
+
+    // El ejemplar de un apartado que termino sin retirarse pasa al siguiente
+    // de la cola o, si no queda nadie, al estante
+    private void pasarAlSiguiente(Libro libro, ColaReservas reservas) {
+
+        Usuario siguiente = reservas.siguiente();
+
+        if (siguiente != null) {
+            apartar(libro, reservas, siguiente);
+            return;
+        }
+
+        libro.reponerApartado();
+        contadores.apartadoTerminado();
+    }
+
+    private synchronized ScheduledExecutorService temporizadorApartados() {
+
+        if (temporizadorApartados == null) {
+            temporizadorApartados = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread hilo = new Thread(r, "apartados-biblioteca");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            // Los apartados que se retiran a tiempo no dejan su tarea esperando en la cola
+            temporizadorApartados.setRemoveOnCancelPolicy(true);
+        }
+        return temporizadorApartados;
+    }
+
+    // ===================== EXPORTACION =====================
+
+    /**
+     * Escribe el catalogo completo en el archivo, con el formato indicado.
+     * Retorna la cantidad de libros exportados.
+     */
+    public int exportarLibros(Path archivo, FormatoSalida formato) throws IOException {
+
+        int exportados = 0;
+
+        try (RenderizadorRegistros salida = RenderizadorRegistros.archivo(archivo, formato)) {
+            int total = totalLibros.get();
+            for (int i = 0; i < total; i++) {
+                Libro l = catalogoLibros.get(i);
+                if (l == null) continue;
+                salida.escribir(l);
+                exportados++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return exportados;
+    }
+
+    /**
+     * Escribe todos los usuarios en el archivo (ver exportarLibros).
+     */
+    public int exportarUsuarios(Path archivo, FormatoSalida formato) throws IOException {
+
+        int exportados = 0;
+
+        try (RenderizadorRegistros salida = RenderizadorRegistros.archivo(archivo, formato)) {
+            int total = totalUsuarios.get();
+            for (int i = 0; i < total; i++) {
+                Usuario u = usuariosRegistrados.get(i);
+                if (u == null) continue;
+                salida.escribir(u);
+                exportados++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return exportados;
+    }
+
+    /**
+     * Escribe todo el historial de prestamos, en orden de ID (ver exportarLibros).
+     */
+    public int exportarPrestamos(Path archivo, FormatoSalida formato) throws IOException {
+
+        int exportados = 0;
+
+        try (RenderizadorRegistros salida = RenderizadorRegistros.archivo(archivo, formato)) {
+            int ultimoId = historialPrestamos.getUltimoId();
+            for (int id = historialPrestamos.getPrimerId(); id <= ultimoId; id++) {
+                Prestamo p = historialPrestamos.buscar(id);
+                if (p == null) continue;
+                salida.escribir(p);
+                exportados++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return exportados;
     }
 
     // ===================== REPORTE =====================
 
     public void generarReporteGeneral() {
+        System.out.print(textoReporteGeneral());
+    }
+
+    /**
+     * Retorna el reporte general como texto, para escribirlo en otra salida.
+     */
+    public String textoReporteGeneral() {
+
+        // Solo procesa los prestamos que vencieron desde la ultima revision
+        actualizarVencimientos();
+
+        StringBuilder reporte = new StringBuilder(512);
+
+        reporte.append("\n========== REPORTE GENERAL ==========\n");
+        reporte.append("  Libros registrados:     ").append(totalLibros.get()).append('\n');
+        reporte.append("  Usuarios registrados:   ").append(totalUsuarios.get()).append('\n');
+        reporte.append("  Total prestamos:        ").append(historialPrestamos.getTotal()).append('\n');
+        reporte.append("  Prestamos activos:      ").append(contadores.getPrestamosActivos()).append('\n');
+        reporte.append("  Prestamos vencidos:     ").append(contadores.getPrestamosVencidos()).append('\n');
+        reporte.append("  Prestamos devueltos:    ").append(contadores.getPrestamosDevueltos()).append('\n');
+        reporte.append("  Ejemplares disponibles: ").append(contadores.getEjemplaresDisponibles())
+                .append(" / ").append(contadores.getEjemplaresTotales()).append('\n');
+        reporte.append("  Ejemplares prestados:   ").append(contadores.getEjemplaresPrestados()).append('\n');
+        reporte.append("  Ejemplares apartados:   ").append(contadores.getEjemplaresApartados()).append('\n');
+        reporte.append("======================================\n\n");
 
-        System.out.println("\n========== REPORTE GENERAL ==========");
-        System.out.println("  Libros registrados:     " + catalogoLibros.size());
-        System.out.println("  Usuarios registrados:   " + usuariosRegistrados.size());
-        System.out.println("  Total prestamos:        " + historialPrestamos.size());
-        System.out.println("  Prestamos activos:      " + listarPrestamosActivos().size());
-        System.out.println("  Prestamos vencidos:     " + listarPrestamosVencidos().size());
-        System.out.println("======================================\n");
+        return reporte.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Clase BloqueosPorClave
+ * Conjunto fijo de cerrojos repartidos por hash de la clave (franjas).
+ * Las operaciones sobre libros y usuarios distintos caen, en general,
+ * en franjas distintas y no se bloquean entre si.
+ * Cuando se toman dos o mas franjas siempre se toman en orden creciente
+ * para evitar interbloqueos.
+ */
+public class BloqueosPorClave {
+
+    private final ReentrantLock[] franjas;
+    private final int mascara;
+
+    /**
+     * Constructor que recibe la cantidad de franjas (se redondea a potencia de dos).
+     */
+    public BloqueosPorClave(int cantidad) {
+
+        int tamano = Integer.highestOneBit(Math.max(1, cantidad - 1)) << 1;
+
+        this.franjas = new ReentrantLock[tamano];
+        this.mascara = tamano - 1;
+
+        for (int i = 0; i < tamano; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Retorna la franja que corresponde a la clave.
+     */
+    public int franja(String clave) {
+        int h = clave.hashCode();
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    public void bloquear(int franja) {
+        franjas[franja].lock();
+    }
+
+    public void desbloquear(int franja) {
+        franjas[franja].unlock();
+    }
+
+    /**
+     * Toma dos franjas en orden creciente (una sola vez si coinciden).
+     */
+    public void bloquear(int a, int b) {
+        int menor = Math.min(a, b);
+        int mayor = Math.max(a, b);
+
+        franjas[menor].lock();
+        if (mayor != menor) franjas[mayor].lock();
+    }
+
+    public void desbloquear(int a, int b) {
+        int menor = Math.min(a, b);
+        int mayor = Math.max(a, b);
+
+        if (mayor != menor) franjas[mayor].unlock();
+        franjas[menor].unlock();
+    }
+
+    /**
+     * Retorna las franjas ordenadas y sin repetir, listas para bloquear(int[]).
+     */
+    public static int[] ordenar(int[] franjas) {
+
+        int[] ordenadas = franjas.clone();
+        Arrays.sort(ordenadas);
+
+        int distintas = 0;
+        for (int i = 0; i < ordenadas.length; i++) {
+            if (i == 0 || ordenadas[i] != ordenadas[i - 1]) ordenadas[distintas++] = ordenadas[i];
+        }
+        return Arrays.copyOf(ordenadas, distintas);
+    }
+
+    /**
+     * Toma varias franjas, que deben venir ordenadas y sin repetir (ver ordenar).
+     */
+    public void bloquear(int[] ordenadas) {
+        for (int franja : ordenadas) franjas[franja].lock();
+    }
+
+    public void desbloquear(int[] ordenadas) {
+        for (int i = ordenadas.length - 1; i >= 0; i--) franjas[ordenadas[i]].unlock();
+    }
+
+    /**
+     * Toma todas las franjas en orden; detiene cualquier operacion en curso.
+     */
+    public void bloquearTodas() {
+        for (ReentrantLock franja : franjas) franja.lock();
+    }
+
+    public void desbloquearTodas() {
+        for (int i = franjas.length - 1; i >= 0; i--) franjas[i].unlock();
+    }
+}
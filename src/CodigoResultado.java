@@ -0,0 +1,49 @@
+/**
+ * Enum CodigoResultado
+ * Resultado de una operacion de la biblioteca que puede ser rechazada.
+ * Las variantes silenciosas de registrar, prestar, devolver y reservar lo
+ * retornan en lugar de escribir en consola; cada codigo trae el mensaje que
+ * se muestra al usuario, con %s para el dato que identifica al objeto del rechazo.
+ */
+public enum CodigoResultado {
+
+    OK("Operacion realizada."),
+
+    // Registro de libros y usuarios
+    ISBN_INVALIDO("ISBN invalido. Debe tener 10 o 13 digitos."),
+    LIBRO_DUPLICADO("Ya existe un libro con ISBN: %s"),
+    EMAIL_INVALIDO("Formato de correo invalido: %s"),
+    USUARIO_DUPLICADO("Ya existe un usuario con ID: %s"),
+
+    // Prestamos y devoluciones
+    LIBRO_NO_ENCONTRADO("No se encontro libro con ISBN: %s"),
+    SIN_EJEMPLARES("El libro no tiene ejemplares disponibles."),
+    USUARIO_NO_ENCONTRADO("No se encontro usuario con ID: %s"),
+    USUARIO_CON_VENCIDOS("El usuario tiene prestamos vencidos."),
+    LIMITE_PRESTAMOS("El usuario ya alcanzo el limite de prestamos."),
+    PRESTAMO_NO_ENCONTRADO("No se encontro prestamo con ID: %s"),
+    PRESTAMO_YA_DEVUELTO("Este prestamo ya fue devuelto."),
+    LOTE_RECHAZADO("No se aplico porque otro elemento del lote fue rechazado."),
+
+    // Reservas
+    LIBRO_DISPONIBLE("El libro tiene ejemplares disponibles; puede prestarse sin reservar."),
+    RESERVA_DUPLICADA("El usuario ya tiene una reserva de este libro."),
+    RESERVA_NO_ENCONTRADA("El usuario no tiene reservas del libro con ISBN: %s");
+
+    private final String mensaje;
+
+    CodigoResultado(String mensaje) {
+        this.mensaje = mensaje;
+    }
+
+    public boolean esExito() {
+        return this == OK;
+    }
+
+    /**
+     * Retorna el mensaje para el usuario, completado con el dato indicado.
+     */
+    public String getMensaje(Object dato) {
+        return mensaje.contains("%s") ? mensaje.replace("%s", String.valueOf(dato)) : mensaje;
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Clase ColaReservas
+ * Reservas de un libro: los usuarios que esperan un ejemplar, en orden de
+ * llegada, y los ejemplares devueltos que ya estan apartados para alguno
+ * de ellos (ver Apartado).
+ *
+ * No se sincroniza: la biblioteca solo la toca con la franja del libro tomada.
+ * La cantidad de apartados se publica aparte para poder consultarla sin cerrojo.
+ */
+class ColaReservas {
+
+    // Usuarios en espera; el conjunto enlazado da el orden y descarta repetidos en O(1)
+    private final LinkedHashSet<Usuario> enEspera = new LinkedHashSet<>();
+
+    // Ejemplares apartados que aun no se retiran (a lo sumo uno por ejemplar del libro)
+    private final ArrayList<Apartado> apartados = new ArrayList<>(1);
+
+    private volatile int totalApartados;
+
+    /**
+     * Pone al usuario al final de la cola. Retorna false si ya estaba
+     * esperando o si ya tiene un ejemplar apartado.
+     */
+    boolean encolar(Usuario usuario) {
+        return apartadoDe(usuario) == null && enEspera.add(usuario);
+    }
+
+    /**
+     * Saca y retorna el primer usuario en espera, o null si no hay ninguno.
+     */
+    Usuario siguiente() {
+
+        Iterator<Usuario> it = enEspera.iterator();
+        if (!it.hasNext()) return null;
+
+        Usuario primero = it.next();
+        it.remove();
+        return primero;
+    }
+
+    /**
+     * Saca al usuario de la espera. Retorna false si no estaba esperando.
+     */
+    boolean quitar(Usuario usuario) {
+        return enEspera.remove(usuario);
+    }
+
+    // ===================== APARTADOS =====================
+
+    void agregarApartado(Apartado apartado) {
+        apartados.add(apartado);
+        totalApartados = apartados.size();
+    }
+
+    /**
+     * Quita el apartado si sigue pendiente. Retorna false si ya se habia
+     * retirado, cancelado o vencido.
+     */
+    boolean quitarApartado(Apartado apartado) {
+
+        if (!apartados.remove(apartado)) return false;
+
+        totalApartados = apartados.size();
+        return true;
+    }
+
+    /**
+     * Retorna el apartado pendiente del usuario, o null si no tiene.
+     */
+    Apartado apartadoDe(Usuario usuario) {
+
+        for (Apartado apartado : apartados) {
+            if (apartado.getUsuario() == usuario) return apartado;
+        }
+        return null;
+    }
+
+    // ===================== GETTERS =====================
+
+    int getEnEspera() { return enEspera.size(); }
+    int getTotalApartados() { return totalApartados; }
+}
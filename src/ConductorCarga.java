@@ -0,0 +1,314 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Clase ConductorCarga
+ * Reproduce contra una Biblioteca la mezcla de operaciones de un
+ * GeneradorCarga, desde varios hilos, y mide la latencia de cada una.
+ *
+ * Dos modos:
+ *  - Lazo cerrado (tasa 0): cada hilo lanza la siguiente operacion en cuanto
+ *    termina la anterior; mide el rendimiento maximo.
+ *  - Tasa objetivo: las operaciones se programan a intervalos fijos. La latencia
+ *    se mide desde la hora programada, no desde la hora real de inicio, de modo
+ *    que la espera acumulada cuando la biblioteca no da abasto cuenta en los
+ *    percentiles en lugar de ocultarse.
+ *
+ * Cada hilo atiende solo a los usuarios cuyo ordinal corresponde a su numero
+ * (ordinal % hilos), asi que devuelve unicamente prestamos que el mismo hizo.
+ *
+ * Uso: java ConductorCarga [--libros N] [--usuarios N] [--historial N] [--hilos N]
+ *      [--segundos N] [--calentamiento N] [--tasa OPS_POR_SEGUNDO] [--zipf S]
+ *      [--semilla N] [--mezcla prestamo=15,devolucion=12,texto=40,isbn=23,usuario=10]
+ */
+public class ConductorCarga {
+
+    // Tramo final de cada espera programada que se hace sin dormir el hilo
+    private static final long ESPERA_ACTIVA_NANOS = 200_000;
+
+    private final Biblioteca biblioteca;
+    private final GeneradorCarga generador;
+    private final int hilos;
+
+    // Estado de cada hilo que se conserva entre corridas (calentamiento y medicion),
+    // para que los prestamos abiertos en una se devuelvan en la siguiente
+    private final ArrayList<SplittableRandom> azarPorHilo;
+    private final ArrayList<ArrayDeque<Prestamo>> abiertosPorHilo;
+
+    public ConductorCarga(Biblioteca biblioteca, GeneradorCarga generador, int hilos) {
+
+        if (hilos <= 0 || hilos > generador.getUsuarios()) {
+            throw new IllegalArgumentException("Se necesita entre 1 y " + generador.getUsuarios() + " hilos");
+        }
+
+        this.biblioteca = biblioteca;
+        this.generador = generador;
+        this.hilos = hilos;
+
+        this.azarPorHilo = new ArrayList<>(hilos);
+        this.abiertosPorHilo = new ArrayList<>(hilos);
+        for (int i = 0; i < hilos; i++) {
+            azarPorHilo.add(generador.azarDeHilo(i));
+            abiertosPorHilo.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Ejecuta la carga durante el tiempo indicado y retorna el reporte combinado.
+     * Con tasa 0 trabaja en lazo cerrado; si no, reparte la tasa entre los hilos.
+     * La biblioteca escribe sus mensajes en System.out: conviene silenciarlo antes.
+     * Las corridas sucesivas continuan la secuencia de operaciones de cada hilo.
+     */
+    public ReporteCarga ejecutar(Duration duracion, double operacionesPorSegundo) throws InterruptedException {
+
+        long intervalo = operacionesPorSegundo > 0 ? (long) (hilos * 1e9 / operacionesPorSegundo) : 0;
+        long inicio = System.nanoTime();
+        long fin = inicio + duracion.toNanos();
+
+        ArrayList<Trabajador> trabajadores = new ArrayList<>(hilos);
+        for (int i = 0; i < hilos; i++) {
+            Trabajador trabajador = new Trabajador(i, inicio, fin, intervalo);
+            trabajadores.add(trabajador);
+            trabajador.hilo.start();
+        }
+
+        ReporteCarga reporte = new ReporteCarga();
+        for (Trabajador trabajador : trabajadores) {
+            trabajador.hilo.join();
+            if (trabajador.error != null) throw new IllegalStateException("Fallo un hilo de carga", trabajador.error);
+            reporte.combinar(trabajador.reporte);
+        }
+
+        reporte.setDuracionNanos(System.nanoTime() - inicio);
+        return reporte;
+    }
+
+    /**
+     * Hilo de carga con su propio azar, sus usuarios y los prestamos que tiene abiertos.
+     */
+    private final class Trabajador implements Runnable {
+
+        private final int numero;
+        private final long inicio;
+        private final long fin;
+        private final long intervalo;
+
+        private final Thread hilo;
+        private final SplittableRandom azar;
+        private final ReporteCarga reporte = new ReporteCarga();
+
+        // Prestamos abiertos por este hilo, del mas antiguo al mas reciente
+        private final ArrayDeque<Prestamo> abiertos;
+
+        // Usuarios que atiende este hilo: ordinales numero, numero + hilos, ...
+        private final int usuariosPropios;
+
+        private volatile Throwable error;
+
+        Trabajador(int numero, long inicio, long fin, long intervalo) {
+
+            this.numero = numero;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.intervalo = intervalo;
+            this.azar = azarPorHilo.get(numero);
+            this.abiertos = abiertosPorHilo.get(numero);
+            this.usuariosPropios = (generador.getUsuarios() - numero + hilos - 1) / hilos;
+            this.hilo = new Thread(this, "carga-" + numero);
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Desfase inicial para que los hilos no lancen todos a la vez
+                long programada = inicio + intervalo * numero / hilos;
+
+                while ((intervalo > 0 ? programada : System.nanoTime()) < fin) {
+                    TipoOperacion tipo = generador.siguienteOperacion(azar);
+                    Object argumento = preparar(tipo);
+
+                    long comienzo;
+                    if (intervalo > 0) {
+                        esperarHasta(programada);
+                        comienzo = programada;
+                        programada += intervalo;
+                    } else {
+                        comienzo = System.nanoTime();
+                    }
+
+                    boolean exito = ejecutar(tipo, argumento);
+                    reporte.registrar(tipo, System.nanoTime() - comienzo, exito);
+                }
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+
+        // Elige los datos de la operacion fuera del tiempo medido
+        private Object preparar(TipoOperacion tipo) {
+
+            switch (tipo) {
+                case PRESTAMO:
+                    return new Object[] { biblioteca.getLibro(generador.ordinalLibro(azar)), usuarioPropio() };
+                case DEVOLUCION:
+                    return abiertos.poll();
+                case BUSQUEDA_TEXTO:
+                    return generador.consultaTexto(biblioteca, azar);
+                case BUSQUEDA_ISBN:
+                    return biblioteca.getLibro(generador.ordinalLibro(azar)).getIsbn();
+                case BUSQUEDA_USUARIO:
+                    return biblioteca.getUsuario(azar.nextInt(generador.getUsuarios())).getNumeroIdentificacion();
+                default:
+                    throw new IllegalArgumentException("Operacion desconocida: " + tipo);
+            }
+        }
+
+        private boolean ejecutar(TipoOperacion tipo, Object argumento) {
+
+            switch (tipo) {
+                case PRESTAMO: {
+                    Object[] datos = (Object[]) argumento;
+                    Libro libro = (Libro) datos[0];
+                    Usuario usuario = (Usuario) datos[1];
+
+                    if (!biblioteca.realizarPrestamo(libro.getIsbn(), usuario.getNumeroIdentificacion())) return false;
+                    abiertos.add(prestamoRecienAbierto(usuario, libro));
+                    return true;
+                }
+                case DEVOLUCION:
+                    return argumento != null && biblioteca.registrarDevolucion(((Prestamo) argumento).getIdPrestamo());
+                case BUSQUEDA_TEXTO:
+                    return !biblioteca.buscarLibro((String) argumento).isEmpty();
+                case BUSQUEDA_ISBN:
+                    return biblioteca.buscarLibroPorISBN((String) argumento) != null;
+                case BUSQUEDA_USUARIO:
+                    return biblioteca.buscarUsuario((String) argumento) != null;
+                default:
+                    throw new IllegalArgumentException("Operacion desconocida: " + tipo);
+            }
+        }
+
+        private Usuario usuarioPropio() {
+            return biblioteca.getUsuario(numero + azar.nextInt(usuariosPropios) * hilos);
+        }
+
+        // Solo este hilo presta a sus usuarios: el prestamo abierto mas reciente del libro es el que acaba de hacer
+        private Prestamo prestamoRecienAbierto(Usuario usuario, Libro libro) {
+
+            Prestamo reciente = null;
+            for (Prestamo prestamo : usuario.getPrestamosEnCurso()) {
+                if (prestamo.getLibro() == libro
+                        && (reciente == null || prestamo.getIdPrestamo() > reciente.getIdPrestamo())) {
+                    reciente = prestamo;
+                }
+            }
+            return reciente;
+        }
+
+        // Duerme hasta cerca del instante y espera activamente el resto:
+        // parkNanos suele despertar decenas de microsegundos tarde
+        private void esperarHasta(long instante) {
+            long restante;
+            while ((restante = instante - System.nanoTime()) > 0) {
+                if (restante > ESPERA_ACTIVA_NANOS) LockSupport.parkNanos(restante - ESPERA_ACTIVA_NANOS);
+                else Thread.onSpinWait();
+            }
+        }
+    }
+
+    // ===================== LINEA DE COMANDOS =====================
+
+    public static void main(String[] args) throws InterruptedException {
+
+        int libros = 100_000;
+        int usuarios = 20_000;
+        int historial = 200_000;
+        int hilos = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int segundos = 30;
+        int calentamiento = 10;
+        double tasa = 0;
+        double zipf = GeneradorCarga.ZIPF_POR_DEFECTO;
+        long semilla = 42;
+        int[] mezcla = GeneradorCarga.MEZCLA_MOSTRADOR.clone();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String opcion = args[i];
+                String valor = i + 1 < args.length ? args[++i] : "";
+
+                switch (opcion) {
+                    case "--libros":        libros = Integer.parseInt(valor); break;
+                    case "--usuarios":      usuarios = Integer.parseInt(valor); break;
+                    case "--historial":     historial = Integer.parseInt(valor); break;
+                    case "--hilos":         hilos = Integer.parseInt(valor); break;
+                    case "--segundos":      segundos = Integer.parseInt(valor); break;
+                    case "--calentamiento": calentamiento = Integer.parseInt(valor); break;
+                    case "--tasa":          tasa = Double.parseDouble(valor); break;
+                    case "--zipf":          zipf = Double.parseDouble(valor); break;
+                    case "--semilla":       semilla = Long.parseLong(valor); break;
+                    case "--mezcla":        mezcla = leerMezcla(valor); break;
+                    default:
+                        System.out.println("  [Error] Opcion desconocida: " + opcion);
+                        return;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("  [Error] Argumento invalido: " + e.getMessage());
+            return;
+        }
+
+        GeneradorCarga generador;
+        try {
+            generador = new GeneradorCarga(semilla, libros, usuarios, historial, zipf, mezcla);
+        } catch (IllegalArgumentException e) {
+            System.out.println("  [Error] " + e.getMessage());
+            return;
+        }
+
+        System.out.println("Generando " + libros + " libros, " + usuarios + " usuarios y "
+                + historial + " prestamos historicos (semilla " + semilla + ")...");
+
+        Biblioteca biblioteca = new Biblioteca();
+        generador.poblar(biblioteca);
+
+        ConductorCarga conductor = new ConductorCarga(biblioteca, generador, hilos);
+
+        System.out.println("Carga con " + hilos + " hilos, "
+                + (tasa > 0 ? String.format("%.0f ops/s", tasa) : "lazo cerrado")
+                + ", " + calentamiento + " s de calentamiento y " + segundos + " s medidos.");
+
+        // Los mensajes de la biblioteca no se miden ni se muestran
+        PrintStream consola = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        ReporteCarga reporte;
+        try {
+            if (calentamiento > 0) conductor.ejecutar(Duration.ofSeconds(calentamiento), tasa);
+            reporte = conductor.ejecutar(Duration.ofSeconds(segundos), tasa);
+        } finally {
+            System.setOut(consola);
+        }
+
+        reporte.mostrarResumen();
+    }
+
+    // Formato: etiqueta=peso separados por coma; los tipos omitidos quedan en 0
+    private static int[] leerMezcla(String texto) {
+
+        int[] mezcla = new int[TipoOperacion.values().length];
+
+        for (String parte : texto.split(",")) {
+            String[] claveValor = parte.split("=");
+            TipoOperacion tipo = claveValor.length == 2 ? TipoOperacion.desdeEtiqueta(claveValor[0].trim()) : null;
+
+            if (tipo == null) throw new IllegalArgumentException("mezcla \"" + parte + "\"");
+            mezcla[tipo.ordinal()] = Integer.parseInt(claveValor[1].trim());
+        }
+        return mezcla;
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase ContadoresBiblioteca
+ * Lleva en vivo los totales del reporte general.
+ * Se actualiza en cada cambio de estado de prestamos y ejemplares,
+ * de modo que el reporte no necesita recorrer el historial.
+ * Usa LongAdder para que varios hilos puedan actualizarlos sin contencion.
+ */
+public class ContadoresBiblioteca {
+
+    // Prestamos no devueltos (incluye los vencidos)
+    private final LongAdder prestamosActivos = new LongAdder();
+
+    // Prestamos vencidos que aun no se devuelven
+    private final LongAdder prestamosVencidos = new LongAdder();
+
+    // Prestamos ya devueltos
+    private final LongAdder prestamosDevueltos = new LongAdder();
+
+    // Inventario de todo el catalogo
+    private final LongAdder ejemplaresTotales = new LongAdder();
+    private final LongAdder ejemplaresPrestados = new LongAdder();
+
+    // Ejemplares devueltos que esperan a un usuario de la cola de reservas
+    private final LongAdder ejemplaresApartados = new LongAdder();
+
+    /**
+     * Suma los ejemplares de un libro recien registrado.
+     */
+    public void libroRegistrado(Libro libro) {
+        ejemplaresTotales.add(libro.getEjemplaresTotales());
+        ejemplaresPrestados.add(libro.getEjemplaresTotales() - libro.getEjemplaresDisponibles());
+    }
+
+    public void prestamoRegistrado() {
+        prestamosActivos.increment();
+    }
+
+    public void prestamoVencido() {
+        prestamosVencidos.increment();
+    }
+
+    public void prestamoDevuelto(boolean estabaVencido) {
+        prestamosActivos.decrement();
+        prestamosDevueltos.increment();
+        if (estabaVencido) prestamosVencidos.decrement();
+    }
+
+    /**
+     * Suma los prestamos devueltos que estan en el archivo y no en la tabla.
+     */
+    public void prestamosArchivados(long cantidad) {
+        prestamosDevueltos.add(cantidad);
+    }
+
+    public void ejemplarPrestado() {
+        ejemplaresPrestados.increment();
+    }
+
+    public void ejemplarDevuelto() {
+        ejemplaresPrestados.decrement();
+    }
+
+    /**
+     * Un ejemplar devuelto queda apartado en lugar de volver al estante.
+     */
+    public void ejemplarApartado() {
+        ejemplaresPrestados.decrement();
+        ejemplaresApartados.increment();
+    }
+
+    /**
+     * Un apartado deja de estarlo: se retiro con un prestamo (que suma a
+     * los prestados por su cuenta) o vencio y el ejemplar volvio al estante.
+     */
+    public void apartadoTerminado() {
+        ejemplaresApartados.decrement();
+    }
+
+    // ===================== GETTERS =====================
+
+    public int getPrestamosActivos() { return prestamosActivos.intValue(); }
+    public int getPrestamosVencidos() { return prestamosVencidos.intValue(); }
+    public int getPrestamosDevueltos() { return prestamosDevueltos.intValue(); }
+    public int getEjemplaresTotales() { return ejemplaresTotales.intValue(); }
+    public int getEjemplaresPrestados() { return ejemplaresPrestados.intValue(); }
+    public int getEjemplaresApartados() { return ejemplaresApartados.intValue(); }
+    public int getEjemplaresDisponibles() {
+        return ejemplaresTotales.intValue() - ejemplaresPrestados.intValue() - ejemplaresApartados.intValue();
+    }
+}
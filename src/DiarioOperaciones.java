@@ -0,0 +1,473 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Clase DiarioOperaciones
+ * Diario binario de solo escritura al final (write-ahead) con las operaciones
+ * que modifican la biblioteca: registro de libros y usuarios, prestamos
+ * y devoluciones, sueltos o en lote. Al abrir la biblioteca se reproduce
+ * para reconstruir su estado.
+ *
+ * Cada registro se escribe como: longitud, CRC32 y contenido. Un registro
+ * incompleto o corrupto al final (por una caida) se descarta al reproducir;
+ * como un lote va en un solo registro, se reproduce entero o no se reproduce.
+ *
+ * Para no pagar un fsync por operacion, los registros se fuerzan a disco
+ * en grupo: cada loteFsync registros o cada intervaloFsyncMs milisegundos,
+ * lo que ocurra primero. Con loteFsync = 1 cada operacion es durable al volver.
+ */
+public class DiarioOperaciones {
+
+    // Valores por defecto del grupo de escritura a disco
+    public static final int LOTE_FSYNC_PREDETERMINADO = 64;
+    public static final long INTERVALO_FSYNC_PREDETERMINADO_MS = 50;
+
+    // Cabecera del archivo: "BIBJ" y version del formato
+    private static final int MAGICO = 0x4249424A;
+    private static final int VERSION = 1;
+    private static final int TAMANO_CABECERA = 8;
+
+    // Tipos de registro
+    private static final byte LIBRO = 1;
+    private static final byte USUARIO = 2;
+    private static final byte PRESTAMO = 3;
+    private static final byte DEVOLUCION = 4;
+    private static final byte PRESTAMOS_LOTE = 5;
+    private static final byte DEVOLUCIONES_LOTE = 6;
+    private static final byte LIBROS_LOTE = 7;
+
+    private final FileChannel canal;
+    private final int loteFsync;
+    private final ScheduledExecutorService sincronizador;
+
+    // Buffers reutilizados para armar cada registro y su marco (longitud, CRC y contenido)
+    private final BufferRegistro bufferRegistro;
+    private final DataOutputStream salidaRegistro;
+    private final CRC32 crc;
+    private ByteBuffer marco;
+
+    // Registros escritos que aun no se han forzado a disco
+    private int pendientes;
+
+    // Numero de secuencia del ultimo registro escrito o reproducido
+    private long ultimaSecuencia;
+
+    // Error que dejo el archivo en un estado dudoso; desde entonces se rechaza toda escritura
+    private IOException falla;
+
+    /**
+     * Abre (o crea) el diario con la politica de escritura a disco indicada.
+     * Con intervaloFsyncMs <= 0 solo se fuerza por cantidad de registros.
+     */
+    public DiarioOperaciones(Path archivo, int loteFsync, long intervaloFsyncMs) throws IOException {
+
+        this.canal = FileChannel.open(archivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.loteFsync = Math.max(1, loteFsync);
+        this.bufferRegistro = new BufferRegistro(256);
+        this.salidaRegistro = new DataOutputStream(bufferRegistro);
+        this.crc = new CRC32();
+        this.marco = ByteBuffer.allocate(8 + 256);
+
+        if (canal.size() == 0) {
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA);
+            cabecera.putInt(MAGICO).putInt(VERSION).flip();
+            while (cabecera.hasRemaining()) canal.write(cabecera);
+            canal.force(true);
+        }
+
+        // Los registros se agregan siempre al final; reproducir y compactar dejan la posicion alli
+        canal.position(canal.size());
+
+        if (intervaloFsyncMs > 0) {
+            this.sincronizador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "diario-fsync");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            sincronizador.scheduleWithFixedDelay(this::sincronizarPeriodicamente,
+                    intervaloFsyncMs, intervaloFsyncMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.sincronizador = null;
+        }
+    }
+
+    // ===================== ESCRITURA =====================
+
+    public synchronized void registrarLibro(Libro libro) {
+        try {
+            iniciarRegistro(LIBRO);
+            escribirLibro(libro);
+            terminarRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario", e);
+        }
+    }
+
+    /**
+     * Registra en un solo registro los libros de un lote de importacion.
+     */
+    public synchronized void registrarLibros(List<Libro> libros) {
+        try {
+            iniciarRegistro(LIBROS_LOTE);
+            salidaRegistro.writeInt(libros.size());
+            for (Libro libro : libros) escribirLibro(libro);
+            terminarRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario", e);
+        }
+    }
+
+    public synchronized void registrarUsuario(Usuario usuario) {
+        try {
+            iniciarRegistro(USUARIO);
+            escribirTexto(usuario.getNumeroIdentificacion());
+            escribirTexto(usuario.getNombreCompleto());
+            escribirTexto(usuario.getCorreoElectronico());
+            escribirTexto(usuario.getTelefono());
+            escribirTexto(usuario.getDireccion());
+            terminarRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario", e);
+        }
+    }
+
+    public synchronized void registrarPrestamo(int idPrestamo, String isbn, String idUsuario, LocalDate fecha) {
+        try {
+            iniciarRegistro(PRESTAMO);
+            salidaRegistro.writeInt(idPrestamo);
+            escribirTexto(isbn);
+            escribirTexto(idUsuario);
+            salidaRegistro.writeLong(fecha.toEpochDay());
+            terminarRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario", e);
+        }
+    }
+
+    public synchronized void registrarDevolucion(int idPrestamo, LocalDate fecha) {
+        try {
+            iniciarRegistro(DEVOLUCION);
+            salidaRegistro.writeInt(idPrestamo);
+            salidaRegistro.writeLong(fecha.toEpochDay());
+            terminarRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario", e);
+        }
+    }
+
+    /**
+     * Registra en un solo registro los prestamos de un lote del mismo usuario.
+     */
+    public synchronized void registrarPrestamos(int[] idsPrestamo, Libro[] libros, String idUsuario,
+                                                LocalDate fecha) {
+        try {
+            iniciarRegistro(PRESTAMOS_LOTE);
+            escribirTexto(idUsuario);
+            salidaRegistro.writeLong(fecha.toEpochDay());
+            salidaRegistro.writeInt(idsPrestamo.length);
+            for (int i = 0; i < idsPrestamo.length; i++) {
+                salidaRegistro.writeInt(idsPrestamo[i]);
+                escribirTexto(libros[i].getIsbn());
+            }
+            terminarRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario", e);
+        }
+    }
+
+    /**
+     * Registra en un solo registro las devoluciones de un lote.
+     */
+    public synchronized void registrarDevoluciones(int[] idsPrestamo, LocalDate fecha) {
+        try {
+            iniciarRegistro(DEVOLUCIONES_LOTE);
+            salidaRegistro.writeLong(fecha.toEpochDay());
+            salidaRegistro.writeInt(idsPrestamo.length);
+            for (int id : idsPrestamo) salidaRegistro.writeInt(id);
+            terminarRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario", e);
+        }
+    }
+
+    /**
+     * Fuerza a disco los registros escritos que aun estan pendientes.
+     */
+    public synchronized void forzarPendientes() {
+
+        if (pendientes == 0) return;
+
+        try {
+            forzar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo sincronizar el diario", e);
+        }
+    }
+
+    /**
+     * Tarea del sincronizador. Una excepcion cancelaria en silencio las
+     * ejecuciones siguientes, asi que el error queda guardado en falla y
+     * son los registrar* posteriores los que lo informan.
+     */
+    private synchronized void sincronizarPeriodicamente() {
+
+        if (pendientes == 0 || falla != null) return;
+
+        try {
+            forzar();
+        } catch (IOException e) {
+            // forzar ya dejo el diario marcado como fallido
+        }
+    }
+
+    /**
+     * Fuerza a disco lo escrito. Tras un fsync fallido no se sabe que llego
+     * al disco (el sistema puede haber descartado las paginas sucias), asi que
+     * el diario queda marcado como fallido en lugar de reintentar.
+     */
+    private void forzar() throws IOException {
+
+        if (falla != null) throw new IOException("El diario no admite escrituras tras un error anterior", falla);
+
+        try {
+            canal.force(false);
+            pendientes = 0;
+        } catch (IOException e) {
+            falla = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Fuerza los registros pendientes y cierra el archivo.
+     */
+    public synchronized void cerrar() throws IOException {
+
+        if (sincronizador != null) sincronizador.shutdownNow();
+
+        try {
+            forzarPendientes();
+        } finally {
+            canal.close();
+        }
+    }
+
+    /**
+     * Descarta todos los registros despues de guardar una instantanea que los incluye.
+     * La numeracion de secuencia continua desde la ultima asignada.
+     */
+    public synchronized void compactar() throws IOException {
+        canal.truncate(TAMANO_CABECERA);
+        canal.force(true);
+        pendientes = 0;
+    }
+
+    public synchronized long getUltimaSecuencia() { return ultimaSecuencia; }
+
+    private void iniciarRegistro(byte tipo) throws IOException {
+
+        if (falla != null) throw new IOException("El diario no admite escrituras tras un error anterior", falla);
+
+        bufferRegistro.reset();
+        salidaRegistro.writeByte(tipo);
+        salidaRegistro.writeLong(ultimaSecuencia + 1);
+    }
+
+    private void terminarRegistro() throws IOException {
+
+        salidaRegistro.flush();
+        byte[] contenido = bufferRegistro.datos();
+        int longitud = bufferRegistro.size();
+
+        crc.reset();
+        crc.update(contenido, 0, longitud);
+
+        if (marco.capacity() < 8 + longitud) marco = ByteBuffer.allocate(2 * (8 + longitud));
+        marco.clear();
+        marco.putInt(longitud).putInt((int) crc.getValue()).put(contenido, 0, longitud).flip();
+
+        // Si la escritura falla a mitad del marco se recorta el archivo hasta donde
+        // empezaba, para no dejar bytes sueltos delante de los registros siguientes
+        long inicio = canal.position();
+        try {
+            while (marco.hasRemaining()) canal.write(marco);
+        } catch (IOException e) {
+            descartarDesde(inicio, e);
+            throw e;
+        }
+
+        ultimaSecuencia++;
+
+        if (++pendientes >= loteFsync) forzar();
+    }
+
+    /**
+     * Quita del archivo lo escrito desde inicio. Si ni eso se puede, el diario
+     * queda marcado como fallido y las escrituras siguientes se rechazan.
+     */
+    private void descartarDesde(long inicio, IOException causa) {
+        try {
+            canal.truncate(inicio);
+            canal.position(inicio);
+        } catch (IOException e) {
+            causa.addSuppressed(e);
+            falla = causa;
+        }
+    }
+
+    private void escribirLibro(Libro libro) throws IOException {
+        escribirTexto(libro.getIsbn());
+        escribirTexto(libro.getTitulo());
+        escribirTexto(libro.getAutor());
+        escribirTexto(libro.getEditorial());
+        salidaRegistro.writeInt(libro.getAnioPublicacion());
+        escribirTexto(libro.getCategoria());
+        salidaRegistro.writeInt(libro.getEjemplaresTotales());
+    }
+
+    private void escribirTexto(String texto) throws IOException {
+        salidaRegistro.writeBoolean(texto != null);
+        if (texto != null) salidaRegistro.writeUTF(texto);
+    }
+
+    // ===================== REPRODUCCION =====================
+
+    /**
+     * Reproduce sobre la biblioteca los registros con secuencia mayor a
+     * desdeSecuencia (los anteriores ya estan en la instantanea cargada).
+     * Si el final del archivo esta incompleto o corrupto, se trunca en
+     * el ultimo registro valido para que las siguientes escrituras sigan alli.
+     */
+    public synchronized void reproducir(Biblioteca biblioteca, long desdeSecuencia) throws IOException {
+
+        ultimaSecuencia = desdeSecuencia;
+        canal.position(0);
+        DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(canal), 1 << 16));
+
+        if (entrada.readInt() != MAGICO) {
+            throw new IOException("El archivo no es un diario de biblioteca");
+        }
+        if (entrada.readInt() != VERSION) {
+            throw new IOException("Version de diario no soportada");
+        }
+
+        long finValido = TAMANO_CABECERA;
+
+        while (true) {
+            byte[] contenido;
+
+            try {
+                int longitud = entrada.readInt();
+                int crcEsperado = entrada.readInt();
+
+                if (longitud <= 0 || finValido + 8 + longitud > canal.size()) break;
+
+                contenido = new byte[longitud];
+                entrada.readFully(contenido);
+
+                crc.reset();
+                crc.update(contenido);
+                if ((int) crc.getValue() != crcEsperado) break;
+            } catch (EOFException e) {
+                break;
+            }
+
+            aplicar(new DataInputStream(new ByteArrayInputStream(contenido)), biblioteca, desdeSecuencia);
+            finValido += 8 + contenido.length;
+        }
+
+        if (finValido < canal.size()) {
+            canal.truncate(finValido);
+            canal.force(true);
+        }
+
+        canal.position(finValido);
+    }
+
+    private void aplicar(DataInputStream registro, Biblioteca biblioteca, long desdeSecuencia) throws IOException {
+
+        byte tipo = registro.readByte();
+        long secuencia = registro.readLong();
+
+        if (secuencia <= desdeSecuencia) return;
+        ultimaSecuencia = secuencia;
+
+        switch (tipo) {
+            case LIBRO:
+                biblioteca.incorporarLibro(leerLibro(registro));
+                break;
+            case USUARIO:
+                biblioteca.incorporarUsuario(new Usuario(leerTexto(registro), leerTexto(registro),
+                        leerTexto(registro), leerTexto(registro), leerTexto(registro)));
+                break;
+            case PRESTAMO:
+                biblioteca.reproducirPrestamo(registro.readInt(), leerTexto(registro),
+                        leerTexto(registro), LocalDate.ofEpochDay(registro.readLong()));
+                break;
+            case DEVOLUCION:
+                biblioteca.reproducirDevolucion(registro.readInt(),
+                        LocalDate.ofEpochDay(registro.readLong()));
+                break;
+            case PRESTAMOS_LOTE: {
+                String idUsuario = leerTexto(registro);
+                LocalDate fecha = LocalDate.ofEpochDay(registro.readLong());
+                int cantidad = registro.readInt();
+                for (int i = 0; i < cantidad; i++) {
+                    biblioteca.reproducirPrestamo(registro.readInt(), leerTexto(registro), idUsuario, fecha);
+                }
+                break;
+            }
+            case DEVOLUCIONES_LOTE: {
+                LocalDate fecha = LocalDate.ofEpochDay(registro.readLong());
+                int cantidad = registro.readInt();
+                for (int i = 0; i < cantidad; i++) biblioteca.reproducirDevolucion(registro.readInt(), fecha);
+                break;
+            }
+            case LIBROS_LOTE: {
+                int cantidad = registro.readInt();
+                for (int i = 0; i < cantidad; i++) biblioteca.incorporarLibro(leerLibro(registro));
+                break;
+            }
+            default:
+                throw new IOException("Tipo de registro desconocido en el diario: " + tipo);
+        }
+    }
+
+    private static Libro leerLibro(DataInputStream entrada) throws IOException {
+        return new Libro(leerTexto(entrada), leerTexto(entrada), leerTexto(entrada), leerTexto(entrada),
+                entrada.readInt(), leerTexto(entrada), entrada.readInt());
+    }
+
+    private static String leerTexto(DataInputStream entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readUTF() : null;
+    }
+
+    // ByteArrayOutputStream que deja leer su arreglo sin copiarlo
+    private static final class BufferRegistro extends ByteArrayOutputStream {
+
+        BufferRegistro(int capacidad) {
+            super(capacidad);
+        }
+
+        byte[] datos() { return buf; }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Enum EstadoPrestamo
+ * Estados posibles de un prestamo. Cada estado tiene un codigo de un byte
+ * con el que se guarda en la tabla de prestamos; el 0 queda para filas vacias.
+ */
+public enum EstadoPrestamo {
+
+    ACTIVO((byte) 1),
+    VENCIDO((byte) 2),
+    DEVUELTO((byte) 3);
+
+    // Codigo reservado para una fila sin prestamo
+    static final byte SIN_PRESTAMO = 0;
+
+    private static final EstadoPrestamo[] POR_CODIGO = { null, ACTIVO, VENCIDO, DEVUELTO };
+
+    private final byte codigo;
+
+    EstadoPrestamo(byte codigo) {
+        this.codigo = codigo;
+    }
+
+    byte getCodigo() { return codigo; }
+
+    /**
+     * Retorna el estado con el codigo indicado, o null si es SIN_PRESTAMO.
+     */
+    static EstadoPrestamo desdeCodigo(byte codigo) {
+        return POR_CODIGO[codigo];
+    }
+}
@@ -0,0 +1,32 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Clase EventoOperacionBiblioteca
+ * Evento de JFR que se emite por cada operacion medida de la biblioteca
+ * (ver MetricasBiblioteca) mientras haya una grabacion que lo habilite,
+ * por ejemplo con: java -XX:StartFlightRecording=filename=biblioteca.jfr ...
+ *
+ * Fuera de una grabacion, JFR no instrumenta la clase y crearlo no cuesta nada.
+ */
+@Name("biblioteca.Operacion")
+@Label("Operacion de biblioteca")
+@Category("Biblioteca")
+@Description("Registro, busqueda, prestamo o devolucion con su resultado y latencia")
+@StackTrace(false)
+class EventoOperacionBiblioteca extends jdk.jfr.Event {
+
+    @Label("Operacion")
+    String operacion;
+
+    @Label("Resultado")
+    String resultado;
+
+    @Label("Latencia")
+    @Timespan(Timespan.NANOSECONDS)
+    long latencia;
+}
@@ -0,0 +1,18 @@
+/**
+ * Enum FormatoSalida
+ * Formatos en los que RenderizadorRegistros escribe libros, usuarios y prestamos.
+ */
+public enum FormatoSalida {
+
+    // Recuadro con un campo por linea (formato historico de la consola)
+    CAJA,
+
+    // Una fila por registro en columnas de ancho fijo, con encabezado
+    TABLA,
+
+    // Valores separados por comas con encabezado, segun RFC 4180
+    CSV,
+
+    // Un objeto JSON por linea (JSON Lines)
+    JSON
+}
@@ -0,0 +1,295 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Clase GeneradorCarga
+ * Genera con una semilla fija un catalogo, usuarios e historial de prestamos
+ * con aspecto realista, y la mezcla de operaciones de mostrador que se
+ * reproduce sobre ellos (ver ConductorCarga).
+ *
+ * La popularidad de los libros sigue una distribucion de Zipf: el libro de
+ * rango k se elige con probabilidad proporcional a 1 / k^s. Los rangos se
+ * reparten al azar entre los ordinales, de modo que los libros populares
+ * no son los primeros del catalogo. Prestamos, busquedas por ISBN y
+ * busquedas de texto se concentran asi en pocos titulos, como en un
+ * mostrador real.
+ *
+ * Con la misma semilla y los mismos parametros se obtienen exactamente
+ * los mismos datos y la misma secuencia de operaciones por hilo.
+ */
+public class GeneradorCarga {
+
+    /**
+     * Mezcla por defecto, en pesos relativos por TipoOperacion:
+     * sobre todo busquedas, con prestamos y devoluciones equilibrados.
+     */
+    public static final int[] MEZCLA_MOSTRADOR = { 15, 12, 40, 23, 10 };
+
+    // Exponente de Zipf por defecto; con 1.0 el 20% de los titulos recibe cerca del 80% de la demanda
+    public static final double ZIPF_POR_DEFECTO = 1.0;
+
+    private static final String[] SUSTANTIVOS = {
+            "Casa", "Sombra", "Memoria", "Ciudad", "Rio", "Noche", "Jardin", "Camino",
+            "Silencio", "Mar", "Tiempo", "Viento", "Isla", "Puerta", "Espejo", "Fuego",
+            "Montana", "Ciencia", "Historia", "Voz", "Laberinto", "Invierno", "Hija", "Senda"
+    };
+
+    private static final String[] ADJETIVOS = {
+            "Perdida", "Oscura", "Infinita", "Secreta", "Antigua", "Blanca", "Breve", "Dormida",
+            "Lejana", "Roja", "Callada", "Eterna", "Nueva", "Ultima", "Salvaje", "Dorada"
+    };
+
+    private static final String[] COMPLEMENTOS = {
+            "Bogota", "los Andes", "la Lluvia", "los Suenos", "Macondo", "la Sal", "los Abuelos",
+            "la Frontera", "Medellin", "las Palabras", "Cartagena", "la Guerra", "los Numeros"
+    };
+
+    private static final String[] NOMBRES = {
+            "Gabriel", "Laura", "Andres", "Maria", "Jorge", "Ana", "Luis", "Carmen", "Camilo",
+            "Isabel", "Mario", "Elena", "Julio", "Sofia", "Pablo", "Rosa", "Tomas", "Lucia"
+    };
+
+    private static final String[] APELLIDOS = {
+            "Garcia", "Restrepo", "Mutis", "Ospina", "Vargas", "Cortazar", "Borges", "Rulfo",
+            "Mistral", "Isaacs", "Silva", "Lopez", "Moreno", "Castro", "Paz", "Neruda",
+            "Caicedo", "Rojas", "Herrera", "Fuentes"
+    };
+
+    private static final String[] EDITORIALES = {
+            "Norma", "Planeta", "Alfaguara", "Anagrama", "Siglo XXI", "Tusquets", "Panamericana"
+    };
+
+    private static final String[] CATEGORIAS = {
+            "Novela", "Cuento", "Poesia", "Ensayo", "Historia", "Ciencia",
+            "Filosofia", "Arte", "Biografia", "Infantil", "Tecnologia", "Derecho"
+    };
+
+    private final long semilla;
+    private final int libros;
+    private final int usuarios;
+    private final int prestamosHistoricos;
+    private final double exponenteZipf;
+
+    // Pesos acumulados de la mezcla, por ordinal de TipoOperacion
+    private final int[] mezclaAcumulada;
+
+    // Probabilidad acumulada (sin normalizar) de los rangos de popularidad 1..libros
+    private final double[] popularidadAcumulada;
+
+    // Ordinal del libro que ocupa cada rango de popularidad
+    private final int[] libroPorRango;
+
+    /**
+     * Constructor con la mezcla de mostrador y el exponente de Zipf por defecto.
+     */
+    public GeneradorCarga(long semilla, int libros, int usuarios, int prestamosHistoricos) {
+        this(semilla, libros, usuarios, prestamosHistoricos, ZIPF_POR_DEFECTO, MEZCLA_MOSTRADOR);
+    }
+
+    /**
+     * Constructor completo. La mezcla tiene un peso no negativo por cada TipoOperacion,
+     * en el orden en que estan declarados. Un exponente de 0 da popularidad uniforme.
+     */
+    public GeneradorCarga(long semilla, int libros, int usuarios, int prestamosHistoricos,
+                          double exponenteZipf, int[] mezcla) {
+
+        if (libros <= 0 || usuarios <= 0 || prestamosHistoricos < 0) {
+            throw new IllegalArgumentException("Se necesita al menos un libro y un usuario");
+        }
+        if (exponenteZipf < 0) {
+            throw new IllegalArgumentException("El exponente de Zipf no puede ser negativo: " + exponenteZipf);
+        }
+        if (mezcla.length != TipoOperacion.values().length) {
+            throw new IllegalArgumentException("La mezcla debe tener un peso por tipo de operacion");
+        }
+
+        this.semilla = semilla;
+        this.libros = libros;
+        this.usuarios = usuarios;
+        this.prestamosHistoricos = prestamosHistoricos;
+        this.exponenteZipf = exponenteZipf;
+
+        this.mezclaAcumulada = new int[mezcla.length];
+        int acumulado = 0;
+        for (int i = 0; i < mezcla.length; i++) {
+            if (mezcla[i] < 0) throw new IllegalArgumentException("Peso negativo en la mezcla");
+            acumulado += mezcla[i];
+            mezclaAcumulada[i] = acumulado;
+        }
+        if (acumulado == 0) throw new IllegalArgumentException("La mezcla no tiene operaciones");
+
+        this.popularidadAcumulada = new double[libros];
+        double suma = 0;
+        for (int rango = 1; rango <= libros; rango++) {
+            suma += 1.0 / Math.pow(rango, exponenteZipf);
+            popularidadAcumulada[rango - 1] = suma;
+        }
+
+        this.libroPorRango = permutacion(libros, new SplittableRandom(semilla ^ 0x5DEECE66DL));
+    }
+
+    // ===================== DATOS =====================
+
+    /**
+     * Carga en una biblioteca vacia el catalogo, los usuarios y el historial.
+     * El historial son prestamos ya devueltos, repartidos en el ultimo ano y
+     * con la misma popularidad de Zipf que la carga; no deja prestamos abiertos.
+     */
+    public void poblar(Biblioteca biblioteca) {
+
+        SplittableRandom azar = new SplittableRandom(semilla);
+
+        for (int i = 0; i < libros; i++) {
+            biblioteca.incorporarLibro(nuevoLibro(i, azar));
+        }
+
+        for (int i = 0; i < usuarios; i++) {
+            biblioteca.incorporarUsuario(nuevoUsuario(i, azar));
+        }
+
+        int hoy = (int) biblioteca.getReloj().diaActual();
+        int primerId = biblioteca.getHistorialPrestamos().getUltimoId() + 1;
+
+        for (int i = 0; i < prestamosHistoricos; i++) {
+
+            int diaPrestamo = hoy - 1 - azar.nextInt(365);
+            int diaDevolucion = Math.min(hoy, diaPrestamo + 1 + azar.nextInt(Prestamo.DIAS_PRESTAMO));
+
+            biblioteca.restaurarPrestamo(primerId + i, biblioteca.getLibro(ordinalLibro(azar)),
+                    biblioteca.getUsuario(azar.nextInt(usuarios)), diaPrestamo, diaDevolucion);
+        }
+    }
+
+    private static Libro nuevoLibro(int numero, SplittableRandom azar) {
+
+        String titulo = SUSTANTIVOS[azar.nextInt(SUSTANTIVOS.length)] + " "
+                + ADJETIVOS[azar.nextInt(ADJETIVOS.length)];
+        if (azar.nextBoolean()) titulo += " de " + COMPLEMENTOS[azar.nextInt(COMPLEMENTOS.length)];
+
+        return new Libro(isbn(numero), titulo, nombreAleatorio(azar),
+                EDITORIALES[azar.nextInt(EDITORIALES.length)], 1900 + azar.nextInt(125),
+                CATEGORIAS[azar.nextInt(CATEGORIAS.length)], 1 + azar.nextInt(4));
+    }
+
+    private static Usuario nuevoUsuario(int numero, SplittableRandom azar) {
+
+        String id = identificacion(numero);
+        return new Usuario(id, nombreAleatorio(azar), "lector" + numero + "@biblioteca.co",
+                "3" + (100000000 + azar.nextInt(900000000)), "Calle " + (1 + azar.nextInt(200)) + " # " + azar.nextInt(100));
+    }
+
+    private static String nombreAleatorio(SplittableRandom azar) {
+        return NOMBRES[azar.nextInt(NOMBRES.length)] + " " + APELLIDOS[azar.nextInt(APELLIDOS.length)];
+    }
+
+    /**
+     * ISBN-13 con prefijo 978 y digito de control valido para el numero indicado.
+     */
+    public static String isbn(int numero) {
+
+        char[] digitos = new char[13];
+        digitos[0] = '9';
+        digitos[1] = '7';
+        digitos[2] = '8';
+
+        int resto = numero;
+        for (int i = 11; i >= 3; i--) {
+            digitos[i] = (char) ('0' + resto % 10);
+            resto /= 10;
+        }
+
+        int suma = 0;
+        for (int i = 0; i < 12; i++) {
+            suma += (digitos[i] - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        digitos[12] = (char) ('0' + (10 - suma % 10) % 10);
+
+        return new String(digitos);
+    }
+
+    /**
+     * Numero de identificacion del usuario generado con el numero indicado.
+     */
+    public static String identificacion(int numero) {
+        return Integer.toString(1_000_000_000 + numero);
+    }
+
+    // ===================== OPERACIONES =====================
+
+    /**
+     * Retorna una fuente de azar propia para el hilo indicado. Cada hilo
+     * produce siempre la misma secuencia para la misma semilla.
+     */
+    public SplittableRandom azarDeHilo(int hilo) {
+        return new SplittableRandom(semilla * 31 + hilo + 1);
+    }
+
+    /**
+     * Elige la siguiente operacion segun los pesos de la mezcla.
+     */
+    public TipoOperacion siguienteOperacion(SplittableRandom azar) {
+
+        int valor = azar.nextInt(mezclaAcumulada[mezclaAcumulada.length - 1]);
+        TipoOperacion[] tipos = TipoOperacion.values();
+
+        for (int i = 0; i < mezclaAcumulada.length; i++) {
+            if (valor < mezclaAcumulada[i]) return tipos[i];
+        }
+        return tipos[tipos.length - 1];
+    }
+
+    /**
+     * Elige el ordinal de un libro segun su popularidad.
+     */
+    public int ordinalLibro(SplittableRandom azar) {
+
+        double valor = azar.nextDouble() * popularidadAcumulada[libros - 1];
+        int rango = Arrays.binarySearch(popularidadAcumulada, valor);
+        if (rango < 0) rango = -rango - 1;
+
+        return libroPorRango[Math.min(rango, libros - 1)];
+    }
+
+    /**
+     * Arma una consulta de texto sobre un libro popular: una palabra de su titulo,
+     * el apellido del autor o la categoria, como las escribiria un lector.
+     */
+    public String consultaTexto(Biblioteca biblioteca, SplittableRandom azar) {
+
+        Libro libro = biblioteca.getLibro(ordinalLibro(azar));
+        int tipo = azar.nextInt(20);
+
+        if (tipo < 12) {
+            String[] palabras = libro.getTitulo().split(" ");
+            return palabras[azar.nextInt(palabras.length)].toLowerCase();
+        }
+        if (tipo < 17) {
+            String autor = libro.getAutor();
+            return autor.substring(autor.lastIndexOf(' ') + 1).toLowerCase();
+        }
+        return libro.getCategoria().toLowerCase();
+    }
+
+    // Permutacion aleatoria de 0..n-1 (Fisher-Yates)
+    private static int[] permutacion(int n, SplittableRandom azar) {
+
+        int[] valores = new int[n];
+        for (int i = 0; i < n; i++) valores[i] = i;
+
+        for (int i = n - 1; i > 0; i--) {
+            int j = azar.nextInt(i + 1);
+            int temporal = valores[i];
+            valores[i] = valores[j];
+            valores[j] = temporal;
+        }
+        return valores;
+    }
+
+    // ===================== GETTERS =====================
+
+    public long getSemilla() { return semilla; }
+    public int getLibros() { return libros; }
+    public int getUsuarios() { return usuarios; }
+    public int getPrestamosHistoricos() { return prestamosHistoricos; }
+    public double getExponenteZipf() { return exponenteZipf; }
+}
@@ -0,0 +1,126 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Clase HistogramaLatencia
+ * Acumula latencias en nanosegundos en cubetas log-lineales de tamano fijo:
+ * cada potencia de dos se divide en 32 cubetas, asi que un percentil
+ * se reporta con un error relativo menor al 3%, sin guardar las muestras.
+ *
+ * Registrar no reserva memoria ni toma cerrojos, y se puede hacer desde
+ * varios hilos a la vez. Los histogramas de distintos hilos se combinan
+ * al final para el reporte.
+ */
+public class HistogramaLatencia {
+
+    // Bits de precision dentro de cada potencia de dos
+    private static final int BITS_SUBCUBETA = 5;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+
+    // Cubetas necesarias para cubrir cualquier long positivo
+    private static final int CUBETAS = (64 - BITS_SUBCUBETA) * SUBCUBETAS;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong suma = new AtomicLong();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra una latencia en nanosegundos. Los valores negativos cuentan como cero.
+     */
+    public void registrar(long nanos) {
+
+        if (nanos < 0) nanos = 0;
+
+        cubetas.incrementAndGet(cubeta(nanos));
+        total.incrementAndGet();
+        suma.addAndGet(nanos);
+
+        long actual = maximo.get();
+        while (nanos > actual && !maximo.compareAndSet(actual, nanos)) {
+            actual = maximo.get();
+        }
+    }
+
+    /**
+     * Suma a este histograma las muestras de otro.
+     */
+    public void combinar(HistogramaLatencia otro) {
+
+        for (int i = 0; i < CUBETAS; i++) {
+            long n = otro.cubetas.get(i);
+            if (n != 0) cubetas.addAndGet(i, n);
+        }
+
+        total.addAndGet(otro.total.get());
+        suma.addAndGet(otro.suma.get());
+
+        long maximoOtro = otro.maximo.get();
+        long actual = maximo.get();
+        while (maximoOtro > actual && !maximo.compareAndSet(actual, maximoOtro)) {
+            actual = maximo.get();
+        }
+    }
+
+    /**
+     * Descarta todas las muestras.
+     */
+    public void reiniciar() {
+
+        for (int i = 0; i < CUBETAS; i++) cubetas.set(i, 0);
+        total.set(0);
+        suma.set(0);
+        maximo.set(0);
+    }
+
+    /**
+     * Retorna la latencia bajo la cual esta la fraccion indicada de las muestras
+     * (por ejemplo 0.99 para el p99), o 0 si no hay muestras.
+     */
+    public long percentil(double fraccion) {
+
+        long n = total.get();
+        if (n == 0) return 0;
+
+        long objetivo = Math.max(1, (long) Math.ceil(fraccion * n));
+        long acumulado = 0;
+
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cubetas.get(i);
+            if (acumulado >= objetivo) return Math.min(limiteSuperior(i), maximo.get());
+        }
+
+        return maximo.get();
+    }
+
+    public long getTotal() { return total.get(); }
+    public long getMaximo() { return maximo.get(); }
+
+    public long getPromedio() {
+        long n = total.get();
+        return n == 0 ? 0 : suma.get() / n;
+    }
+
+    // ===================== CUBETAS =====================
+
+    // Los valores menores a 2 * SUBCUBETAS tienen cubeta propia; los demas
+    // se agrupan por potencia de dos y por sus BITS_SUBCUBETA bits siguientes
+    private static int cubeta(long valor) {
+
+        if (valor < 2 * SUBCUBETAS) return (int) valor;
+
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int desplazamiento = exponente - BITS_SUBCUBETA;
+        return desplazamiento * SUBCUBETAS + (int) (valor >>> desplazamiento);
+    }
+
+    // Mayor valor que cae en la cubeta
+    private static long limiteSuperior(int cubeta) {
+
+        if (cubeta < 2 * SUBCUBETAS) return cubeta;
+
+        int desplazamiento = cubeta / SUBCUBETAS - 1;
+        long mantisa = SUBCUBETAS + cubeta % SUBCUBETAS;
+        return ((mantisa + 1) << desplazamiento) - 1;
+    }
+}
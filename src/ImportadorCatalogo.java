@@ -0,0 +1,217 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Clase ImportadorCatalogo
+ * Carga masiva de libros desde archivos CSV o TSV de editoriales.
+ *
+ * El archivo se lee en flujo, por lotes de filas, sin cargarlo completo.
+ * Cada lote se valida en paralelo (formato, ISBN, campos obligatorios)
+ * y luego se registra junto (ver Biblioteca.agregarLibrosSiNoExisten):
+ * una toma de las franjas y un registro del diario por lote, descartando
+ * ISBN repetidos dentro del archivo o ya presentes en el catalogo.
+ *
+ * Columnas esperadas: isbn, titulo, autor, editorial, anio, categoria, ejemplares.
+ * La primera fila se toma como encabezado si su primer campo es "isbn".
+ * Los archivos .tsv se separan por tabulador; el resto, por coma
+ * (admitiendo campos entre comillas dobles).
+ */
+public class ImportadorCatalogo {
+
+    // Filas que se validan y registran juntas
+    private static final int TAMANO_LOTE = 10_000;
+
+    private static final int COLUMNAS = 7;
+
+    private final Biblioteca biblioteca;
+
+    public ImportadorCatalogo(Biblioteca biblioteca) {
+        this.biblioteca = biblioteca;
+    }
+
+    /**
+     * Importa el archivo y retorna el resumen con las filas rechazadas.
+     */
+    public ReporteImportacion importar(Path archivo) throws IOException {
+
+        char separador = archivo.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        ReporteImportacion reporte = new ReporteImportacion();
+
+        // ISBN normalizados ya aceptados en este archivo
+        HashSet<String> isbnVistos = new HashSet<>();
+
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+
+            ArrayList<FilaImportada> lote = new ArrayList<>(TAMANO_LOTE);
+            String linea;
+            int numeroLinea = 0;
+
+            while ((linea = lector.readLine()) != null) {
+                numeroLinea++;
+
+                if (linea.isBlank()) continue;
+                if (numeroLinea == 1 && esEncabezado(linea)) continue;
+
+                lote.add(new FilaImportada(numeroLinea, linea));
+
+                if (lote.size() == TAMANO_LOTE) {
+                    procesarLote(lote, separador, isbnVistos, reporte);
+                    lote.clear();
+                }
+            }
+
+            procesarLote(lote, separador, isbnVistos, reporte);
+        }
+
+        return reporte;
+    }
+
+    private void procesarLote(List<FilaImportada> lote, char separador,
+                              HashSet<String> isbnVistos, ReporteImportacion reporte) {
+
+        if (lote.isEmpty()) return;
+
+        // Validacion en paralelo: no depende del estado de la biblioteca
+        List<FilaImportada> validadas = lote.parallelStream()
+                .map(fila -> validar(fila, separador))
+                .collect(Collectors.toList());
+
+        // Repetidos en el archivo, en orden: gana la primera fila con cada ISBN
+        ArrayList<FilaImportada> candidatas = new ArrayList<>(validadas.size());
+        ArrayList<Libro> libros = new ArrayList<>(validadas.size());
+
+        for (FilaImportada fila : validadas) {
+            if (fila.error != null) continue;
+
+            if (!isbnVistos.add(fila.libro.getClaveISBN())) {
+                fila.rechazar("ISBN repetido en el archivo: " + fila.libro.getIsbn());
+                continue;
+            }
+
+            candidatas.add(fila);
+            libros.add(fila.libro);
+        }
+
+        // Registro del lote entero; el catalogo se consulta con las franjas tomadas
+        boolean[] agregados = biblioteca.agregarLibrosSiNoExisten(libros);
+        for (int i = 0; i < agregados.length; i++) {
+            FilaImportada fila = candidatas.get(i);
+            if (!agregados[i]) fila.rechazar("Ya existe un libro con ISBN: " + fila.libro.getIsbn());
+        }
+
+        for (FilaImportada fila : validadas) {
+            reporte.filaLeida();
+
+            if (fila.error != null) reporte.filaRechazada(fila.numeroLinea, fila.error);
+            else reporte.filaAceptada();
+        }
+    }
+
+    private static FilaImportada validar(FilaImportada fila, char separador) {
+
+        ArrayList<String> campos = separar(fila.linea, separador);
+
+        if (campos.size() != COLUMNAS) {
+            return fila.rechazar("Se esperaban " + COLUMNAS + " columnas y hay " + campos.size());
+        }
+
+        String isbn = campos.get(0);
+        String titulo = campos.get(1);
+        String autor = campos.get(2);
+
+        if (!Libro.validarISBN(isbn)) {
+            return fila.rechazar("ISBN invalido: " + isbn);
+        }
+
+        if (titulo.isEmpty() || autor.isEmpty()) {
+            return fila.rechazar("Titulo y autor son obligatorios");
+        }
+
+        int anio;
+        int ejemplares;
+
+        try {
+            anio = Integer.parseInt(campos.get(4));
+        } catch (NumberFormatException e) {
+            return fila.rechazar("Anio invalido: " + campos.get(4));
+        }
+
+        try {
+            ejemplares = Integer.parseInt(campos.get(6));
+        } catch (NumberFormatException e) {
+            return fila.rechazar("Numero de ejemplares invalido: " + campos.get(6));
+        }
+
+        if (ejemplares < 0) {
+            return fila.rechazar("Numero de ejemplares negativo: " + ejemplares);
+        }
+
+        fila.libro = new Libro(isbn, titulo, autor, campos.get(3), anio, campos.get(5), ejemplares);
+        return fila;
+    }
+
+    private static boolean esEncabezado(String linea) {
+        return linea.trim().toLowerCase(Locale.ROOT).startsWith("isbn");
+    }
+
+    /**
+     * Separa una linea en campos. Con coma admite comillas dobles,
+     * donde "" representa una comilla literal.
+     */
+    private static ArrayList<String> separar(String linea, char separador) {
+
+        ArrayList<String> campos = new ArrayList<>(COLUMNAS);
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+
+            if (separador == ',' && c == '"') {
+                if (entreComillas && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreComillas = !entreComillas;
+                }
+            } else if (c == separador && !entreComillas) {
+                campos.add(campo.toString().trim());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+
+        campos.add(campo.toString().trim());
+        return campos;
+    }
+
+    /**
+     * Fila del archivo con su resultado de validacion.
+     */
+    private static class FilaImportada {
+
+        final int numeroLinea;
+        final String linea;
+        Libro libro;
+        String error;
+
+        FilaImportada(int numeroLinea, String linea) {
+            this.numeroLinea = numeroLinea;
+            this.linea = linea;
+        }
+
+        FilaImportada rechazar(String error) {
+            this.error = error;
+            return this;
+        }
+    }
+}
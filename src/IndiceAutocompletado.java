@@ -0,0 +1,778 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Clase IndiceAutocompletado
+ * Sugerencias de titulos y autores mientras se escribe. Es un trie compacto
+ * (los tramos sin ramificaciones van en una sola arista) sobre el texto
+ * normalizado de cada titulo y cada autor distinto, con una clave por cada
+ * comienzo de palabra: "garcia m" y "marq" sugieren "Gabriel Garcia Marquez".
+ *
+ * Cada nodo guarda la mayor popularidad de su subarbol, asi las sugerencias
+ * mas prestadas de un prefijo salen recorriendo primero las ramas que las
+ * contienen, sin visitar el resto del subarbol.
+ *
+ * Los nodos van en arreglos paralelos indexados por numero de nodo, sin un
+ * objeto por nodo: son varios por libro, y como objetos el recolector los
+ * recorreria y copiaria en cada pasada. Las aristas no copian texto: son un
+ * tramo de la clave de la entrada que las creo.
+ *
+ * Se construye con la primera consulta (ver construir); desde ahi se
+ * actualiza con cada libro incorporado, cada cambio de titulo o autor y
+ * cada prestamo. Antes de eso los cambios no le cuestan nada al resto.
+ * Las consultas comparten un cerrojo de lectura; los cambios toman el de escritura.
+ * Los prestamos no toman ninguno: solo anotan el libro, y sus prestamos se
+ * suman a la popularidad antes de la siguiente consulta o cambio.
+ */
+public class IndiceAutocompletado {
+
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Sugerencia.Campo[] CAMPOS = Sugerencia.Campo.values();
+
+    private static final int NINGUNO = -1;
+    private static final int RAIZ = 0;
+
+    private final Biblioteca biblioteca;
+
+    // Por campo: texto normalizado -> entrada, y por ordinal de libro, su entrada
+    private final HashMap<String, Entrada>[] entradas;
+    private final Entrada[][] porLibro;
+
+    // Por ordinal de libro: prestamos ya sumados a la popularidad de sus entradas
+    private int[] prestamosSumados = new int[1024];
+
+    // Ordinales de libros con prestamos aun no sumados (ver prestado)
+    private final Set<Integer> prestamosPendientes = ConcurrentHashMap.newKeySet();
+
+    // Entradas por id (los de las entradas eliminadas se reusan)
+    private Entrada[] entradasPorId = new Entrada[1024];
+    private int totalIds;
+    private final ArrayDeque<Integer> idsLibres = new ArrayDeque<>();
+
+    // Nodos: la arista que llega al nodo n es fuente[n] entre desde[n] y hasta[n];
+    // lo que esta antes de desde[n] en fuente[n] es el camino desde la raiz
+    private String[] fuente;
+    private int[] desde;
+    private int[] hasta;
+    private int[] padre;
+
+    // Hijos en lista enlazada, ordenados por el primer caracter de su arista
+    private int[] primerHijo;
+    private int[] hermano;
+
+    // Primera celda de la lista de entradas con una clave que termina en el nodo
+    private int[] terminal;
+
+    // Mayor popularidad entre las entradas del subarbol
+    private int[] mejor;
+
+    private int totalNodos;
+
+    // Nodos liberados, enlazados por hermano
+    private int nodoLibre = NINGUNO;
+
+    // Celdas de las listas de terminales: id de entrada y siguiente celda
+    private int[] celdaEntrada;
+    private int[] celdaSiguiente;
+    private int totalCeldas;
+    private int celdaLibre = NINGUNO;
+
+    // Se enciende al empezar la construccion; mientras este apagado, los cambios se ignoran
+    private volatile boolean activo;
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public IndiceAutocompletado(Biblioteca biblioteca) {
+        this.biblioteca = biblioteca;
+        this.entradas = new HashMap[CAMPOS.length];
+        this.porLibro = new Entrada[CAMPOS.length][1024];
+
+        for (int c = 0; c < CAMPOS.length; c++) entradas[c] = new HashMap<>();
+
+        crecerNodos(1024);
+        crecerCeldas(1024);
+        nuevoNodo(NINGUNO, "", 0, 0);
+    }
+
+    /**
+     * Forma de busqueda de un texto: normalizado y con un solo espacio
+     * en lugar de cada tramo de signos o espacios.
+     */
+    static String normalizarClave(String texto) {
+        return NO_ALFANUMERICO.matcher(IndiceTexto.normalizar(texto)).replaceAll(" ").strip();
+    }
+
+    // ===================== ACTUALIZACION =====================
+
+    /**
+     * Indexa el libro con su titulo y autor actuales (si ya estaba, lo reindexa).
+     */
+    public void agregar(Libro libro) {
+
+        if (!activo) return;
+
+        cerrojo.writeLock().lock();
+        try {
+            sumarPrestamosPendientes();
+            quitarSinBloqueo(libro);
+            agregarSinBloqueo(libro);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexa varios libros tomando el cerrojo una sola vez.
+     */
+    public void agregar(List<Libro> libros) {
+
+        if (!activo) return;
+
+        cerrojo.writeLock().lock();
+        try {
+            sumarPrestamosPendientes();
+            for (Libro libro : libros) {
+                quitarSinBloqueo(libro);
+                agregarSinBloqueo(libro);
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita el libro con el titulo y autor con los que fue indexado.
+     */
+    public void quitar(Libro libro) {
+
+        if (!activo) return;
+
+        cerrojo.writeLock().lock();
+        try {
+            sumarPrestamosPendientes();
+            quitarSinBloqueo(libro);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Anota que el libro tuvo un prestamo, sin tomar el cerrojo: se llama con
+     * las franjas del prestamo tomadas y no debe hacer esperar a otros prestamos
+     * ni a las consultas. La popularidad se actualiza despues (ver
+     * sumarPrestamosPendientes); un libro anotado dos veces se suma una sola.
+     */
+    public void prestado(Libro libro) {
+
+        if (!activo) return;
+
+        prestamosPendientes.add(libro.getOrdinal());
+    }
+
+    /**
+     * Suma a sus entradas los prestamos de los libros anotados que aun no
+     * estaban sumados. Requiere el cerrojo de escritura.
+     */
+    private void sumarPrestamosPendientes() {
+
+        Iterator<Integer> pendientes = prestamosPendientes.iterator();
+
+        while (pendientes.hasNext()) {
+            int ordinal = pendientes.next();
+            // Se quita antes de leer el libro: un prestamo posterior lo vuelve a anotar
+            pendientes.remove();
+
+            Libro libro = biblioteca.getLibro(ordinal);
+            if (libro == null || ordinal >= prestamosSumados.length) continue;
+
+            int aumento = libro.getVecesPrestado() - prestamosSumados[ordinal];
+            if (aumento <= 0) continue;
+
+            boolean indexado = false;
+            for (Entrada[] deCampo : porLibro) {
+                if (ordinal < deCampo.length && deCampo[ordinal] != null) {
+                    cambiarPopularidad(deCampo[ordinal], aumento);
+                    indexado = true;
+                }
+            }
+            if (indexado) prestamosSumados[ordinal] += aumento;
+        }
+    }
+
+    /**
+     * Indexa todo el catalogo, si aun no se hizo. La popularidad se lee de
+     * los libros, que llevan la cuenta de sus prestamos desde la carga.
+     * Los libros y prestamos que llegan durante la construccion esperan el
+     * cerrojo y se aplican despues.
+     */
+    void construir() {
+
+        cerrojo.writeLock().lock();
+        try {
+            if (activo) return;
+            activo = true;
+
+            int total = biblioteca.getTotalLibros();
+            for (int i = 0; i < total; i++) {
+                Libro libro = biblioteca.getLibro(i);
+                if (libro != null) agregarSinBloqueo(libro);
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    private void agregarSinBloqueo(Libro libro) {
+
+        int ordinal = libro.getOrdinal();
+
+        // Los prestamos que aun esten anotados quedan sumados desde ahora
+        int prestamos = libro.getVecesPrestado();
+        if (ordinal >= prestamosSumados.length) {
+            prestamosSumados = Arrays.copyOf(prestamosSumados, Math.max(ordinal + 1, prestamosSumados.length * 2));
+        }
+        prestamosSumados[ordinal] = prestamos;
+
+        for (int c = 0; c < CAMPOS.length; c++) {
+            String texto = CAMPOS[c] == Sugerencia.Campo.TITULO ? libro.getTitulo() : libro.getAutor();
+            String clave = normalizarClave(texto);
+            if (clave.isEmpty()) continue;
+
+            Entrada entrada = entradas[c].get(clave);
+            if (entrada == null) {
+                entrada = new Entrada(nuevoId(), clave, texto.strip(), CAMPOS[c]);
+                entradasPorId[entrada.id] = entrada;
+                entradas[c].put(clave, entrada);
+                insertar(entrada);
+            }
+            entrada.libros++;
+
+            if (ordinal >= porLibro[c].length) {
+                porLibro[c] = Arrays.copyOf(porLibro[c], Math.max(ordinal + 1, porLibro[c].length * 2));
+            }
+            porLibro[c][ordinal] = entrada;
+
+            cambiarPopularidad(entrada, prestamos);
+        }
+    }
+
+    private void quitarSinBloqueo(Libro libro) {
+
+        int ordinal = libro.getOrdinal();
+
+        for (int c = 0; c < CAMPOS.length; c++) {
+            if (ordinal < 0 || ordinal >= porLibro[c].length || porLibro[c][ordinal] == null) continue;
+
+            Entrada entrada = porLibro[c][ordinal];
+            porLibro[c][ordinal] = null;
+            entrada.libros--;
+
+            if (entrada.libros == 0) {
+                entradas[c].remove(entrada.clave);
+                eliminar(entrada);
+                entradasPorId[entrada.id] = null;
+                idsLibres.push(entrada.id);
+            } else {
+                cambiarPopularidad(entrada, -prestamosSumados[ordinal]);
+            }
+        }
+    }
+
+    private int nuevoId() {
+
+        if (!idsLibres.isEmpty()) return idsLibres.pop();
+
+        if (totalIds == entradasPorId.length) entradasPorId = Arrays.copyOf(entradasPorId, totalIds * 2);
+        return totalIds++;
+    }
+
+    /**
+     * Suma la diferencia a la popularidad de la entrada y la propaga a los
+     * nodos de sus claves y sus ancestros: al subir, hasta donde ya haya una
+     * igual o mayor; al bajar, recalculando los maximos.
+     */
+    private void cambiarPopularidad(Entrada entrada, int diferencia) {
+
+        if (diferencia == 0) return;
+
+        entrada.popularidad += diferencia;
+
+        for (int nodo : entrada.nodos) {
+            if (diferencia > 0) subir(nodo, entrada.popularidad);
+            else recalcular(nodo);
+        }
+    }
+
+    // ===================== CONSULTA =====================
+
+    /**
+     * Retorna hasta cantidad sugerencias cuyo texto, o alguna de sus palabras,
+     * empieza con el prefijo, de la mas popular a la menos (los empates, en
+     * un orden cualquiera). Un espacio al final del prefijo exige que la
+     * palabra este completa.
+     */
+    public ArrayList<Sugerencia> sugerir(String prefijo, int cantidad) {
+
+        String consulta = NO_ALFANUMERICO.matcher(IndiceTexto.normalizar(prefijo)).replaceAll(" ").stripLeading();
+        ArrayList<Sugerencia> sugerencias = new ArrayList<>();
+
+        if (consulta.isEmpty() || cantidad <= 0) return sugerencias;
+        if (!activo) construir();
+
+        if (!prestamosPendientes.isEmpty()) {
+            cerrojo.writeLock().lock();
+            try {
+                sumarPrestamosPendientes();
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+
+        cerrojo.readLock().lock();
+        try {
+            int inicio = bajar(consulta);
+            if (inicio == NINGUNO) return sugerencias;
+
+            // Nodos y entradas por visitar, primero el de mayor popularidad
+            Pendientes pendientes = new Pendientes();
+            int[] vistas = new int[cantidad];
+            pendientes.agregar(pendiente(mejor[inicio], false, inicio));
+
+            while (sugerencias.size() < cantidad && !pendientes.estaVacia()) {
+                long siguiente = pendientes.sacar();
+                int indice = Integer.MAX_VALUE - (int) (siguiente & Integer.MAX_VALUE);
+
+                if ((siguiente & (1L << 31)) != 0) {
+                    // Una misma entrada puede estar bajo varias de sus palabras
+                    if (!contiene(vistas, sugerencias.size(), indice)) {
+                        vistas[sugerencias.size()] = indice;
+                        sugerencias.add(entradasPorId[indice].comoSugerencia());
+                    }
+                } else {
+                    for (int celda = terminal[indice]; celda != NINGUNO; celda = celdaSiguiente[celda]) {
+                        Entrada entrada = entradasPorId[celdaEntrada[celda]];
+                        pendientes.agregar(pendiente(entrada.popularidad, true, entrada.id));
+                    }
+                    for (int hijo = primerHijo[indice]; hijo != NINGUNO; hijo = hermano[hijo]) {
+                        pendientes.agregar(pendiente(mejor[hijo], false, hijo));
+                    }
+                }
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+
+        return sugerencias;
+    }
+
+    /**
+     * Codifica un nodo o una entrada por visitar para que el mayor valor sea
+     * el de mayor popularidad; a igual popularidad, las entradas antes que
+     * los nodos y los indices menores antes que los mayores.
+     */
+    private static long pendiente(int popularidad, boolean esEntrada, int indice) {
+        return (long) popularidad << 32 | (esEntrada ? 1L << 31 : 0) | (Integer.MAX_VALUE - indice);
+    }
+
+    private static boolean contiene(int[] ids, int cantidad, int id) {
+
+        for (int i = 0; i < cantidad; i++) {
+            if (ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Retorna el nodo bajo el que estan todas las claves que empiezan con
+     * la consulta (puede terminar a mitad de una arista), o NINGUNO si no hay.
+     */
+    private int bajar(String consulta) {
+
+        int nodo = RAIZ;
+        int i = 0;
+
+        while (i < consulta.length()) {
+            int hijo = hijo(nodo, consulta.charAt(i));
+            if (hijo == NINGUNO) return NINGUNO;
+
+            int largo = Math.min(hasta[hijo] - desde[hijo], consulta.length() - i);
+            if (!fuente[hijo].regionMatches(desde[hijo], consulta, i, largo)) return NINGUNO;
+
+            i += largo;
+            nodo = hijo;
+        }
+
+        return nodo;
+    }
+
+    // ===================== TRIE =====================
+
+    /**
+     * Inserta una clave por cada comienzo de palabra del texto de la entrada.
+     */
+    private void insertar(Entrada entrada) {
+
+        String clave = entrada.clave;
+        int palabras = 1;
+        for (int i = 0; i < clave.length(); i++) {
+            if (clave.charAt(i) == ' ') palabras++;
+        }
+
+        entrada.nodos = new int[palabras];
+        int siguiente = 0;
+
+        for (int i = 0; i < clave.length(); i++) {
+            if (i == 0 || clave.charAt(i - 1) == ' ') entrada.nodos[siguiente++] = insertarClave(clave, i, entrada.id);
+        }
+    }
+
+    /**
+     * Inserta clave[inicio..] y retorna el nodo donde termina, que queda
+     * con la entrada entre sus terminales. Parte una arista si la clave se
+     * separa a mitad de ella.
+     */
+    private int insertarClave(String clave, int inicio, int id) {
+
+        int nodo = RAIZ;
+        int i = inicio;
+
+        while (i < clave.length()) {
+            int hijo = hijo(nodo, clave.charAt(i));
+
+            if (hijo == NINGUNO) {
+                int hoja = nuevoNodo(nodo, clave, i, clave.length());
+                enlazarHijo(nodo, hoja);
+                nodo = hoja;
+                break;
+            }
+
+            String texto = fuente[hijo];
+            int inicioArista = desde[hijo];
+            int largo = hasta[hijo] - inicioArista;
+
+            int comun = 1;
+            while (comun < largo && i + comun < clave.length()
+                    && texto.charAt(inicioArista + comun) == clave.charAt(i + comun)) {
+                comun++;
+            }
+
+            if (comun < largo) {
+                int medio = nuevoNodo(nodo, texto, inicioArista, inicioArista + comun);
+                mejor[medio] = mejor[hijo];
+                reemplazarHijo(nodo, hijo, medio);
+
+                hermano[hijo] = NINGUNO;
+                primerHijo[medio] = hijo;
+                padre[hijo] = medio;
+                desde[hijo] = inicioArista + comun;
+                hijo = medio;
+            }
+
+            nodo = hijo;
+            i += comun;
+        }
+
+        int celda = nuevaCelda(id);
+        celdaSiguiente[celda] = terminal[nodo];
+        terminal[nodo] = celda;
+        return nodo;
+    }
+
+    /**
+     * Quita la entrada de los nodos de sus claves y poda los que quedan sobrando.
+     */
+    private void eliminar(Entrada entrada) {
+
+        for (int nodo : entrada.nodos) {
+            int anterior = NINGUNO;
+            int celda = terminal[nodo];
+            while (celdaEntrada[celda] != entrada.id) {
+                anterior = celda;
+                celda = celdaSiguiente[celda];
+            }
+
+            if (anterior == NINGUNO) terminal[nodo] = celdaSiguiente[celda];
+            else celdaSiguiente[anterior] = celdaSiguiente[celda];
+            liberarCelda(celda);
+
+            podar(nodo);
+        }
+    }
+
+    /**
+     * Si el nodo quedo sin terminales, lo quita (sin hijos) o lo une con su
+     * unico hijo, y sigue hacia arriba; al final recalcula los maximos.
+     * Al unir, la arista del hijo se alarga hacia atras sobre su misma
+     * fuente, que antes de desde tiene el camino desde la raiz.
+     */
+    private void podar(int nodo) {
+
+        while (nodo != RAIZ && terminal[nodo] == NINGUNO) {
+            int arriba = padre[nodo];
+            int hijo = primerHijo[nodo];
+
+            if (hijo == NINGUNO) {
+                desenlazarHijo(arriba, nodo);
+            } else if (hermano[hijo] == NINGUNO) {
+                desde[hijo] -= hasta[nodo] - desde[nodo];
+                padre[hijo] = arriba;
+                reemplazarHijo(arriba, nodo, hijo);
+            } else {
+                break;
+            }
+
+            liberarNodo(nodo);
+            nodo = arriba;
+        }
+
+        recalcular(nodo);
+    }
+
+    // Sube una popularidad mayor por los ancestros hasta donde ya haya una igual o mayor
+    private void subir(int nodo, int popularidad) {
+        for (; nodo != NINGUNO && mejor[nodo] < popularidad; nodo = padre[nodo]) mejor[nodo] = popularidad;
+    }
+
+    // Recalcula los maximos desde el nodo hacia arriba, hasta donde no cambien
+    private void recalcular(int nodo) {
+
+        for (; nodo != NINGUNO; nodo = padre[nodo]) {
+            int maximo = 0;
+            for (int celda = terminal[nodo]; celda != NINGUNO; celda = celdaSiguiente[celda]) {
+                maximo = Math.max(maximo, entradasPorId[celdaEntrada[celda]].popularidad);
+            }
+            for (int hijo = primerHijo[nodo]; hijo != NINGUNO; hijo = hermano[hijo]) {
+                maximo = Math.max(maximo, mejor[hijo]);
+            }
+
+            if (maximo == mejor[nodo]) return;
+            mejor[nodo] = maximo;
+        }
+    }
+
+    // ===================== NODOS Y CELDAS =====================
+
+    private char primerCaracter(int nodo) {
+        return fuente[nodo].charAt(desde[nodo]);
+    }
+
+    // Hijo cuya arista empieza con el caracter, o NINGUNO
+    private int hijo(int nodo, char caracter) {
+
+        for (int hijo = primerHijo[nodo]; hijo != NINGUNO; hijo = hermano[hijo]) {
+            char actual = primerCaracter(hijo);
+            if (actual == caracter) return hijo;
+            if (actual > caracter) return NINGUNO;
+        }
+        return NINGUNO;
+    }
+
+    private void enlazarHijo(int nodo, int nuevo) {
+
+        char caracter = primerCaracter(nuevo);
+        int anterior = NINGUNO;
+        int actual = primerHijo[nodo];
+
+        while (actual != NINGUNO && primerCaracter(actual) < caracter) {
+            anterior = actual;
+            actual = hermano[actual];
+        }
+
+        hermano[nuevo] = actual;
+        if (anterior == NINGUNO) primerHijo[nodo] = nuevo;
+        else hermano[anterior] = nuevo;
+    }
+
+    // Pone a nuevo en el lugar de viejo entre los hijos del nodo
+    private void reemplazarHijo(int nodo, int viejo, int nuevo) {
+
+        hermano[nuevo] = hermano[viejo];
+
+        if (primerHijo[nodo] == viejo) {
+            primerHijo[nodo] = nuevo;
+            return;
+        }
+
+        int anterior = primerHijo[nodo];
+        while (hermano[anterior] != viejo) anterior = hermano[anterior];
+        hermano[anterior] = nuevo;
+    }
+
+    private void desenlazarHijo(int nodo, int hijo) {
+
+        if (primerHijo[nodo] == hijo) {
+            primerHijo[nodo] = hermano[hijo];
+            return;
+        }
+
+        int anterior = primerHijo[nodo];
+        while (hermano[anterior] != hijo) anterior = hermano[anterior];
+        hermano[anterior] = hermano[hijo];
+    }
+
+    private int nuevoNodo(int arriba, String texto, int inicio, int fin) {
+
+        int nodo;
+        if (nodoLibre != NINGUNO) {
+            nodo = nodoLibre;
+            nodoLibre = hermano[nodo];
+        } else {
+            if (totalNodos == fuente.length) crecerNodos(totalNodos * 2);
+            nodo = totalNodos++;
+        }
+
+        fuente[nodo] = texto;
+        desde[nodo] = inicio;
+        hasta[nodo] = fin;
+        padre[nodo] = arriba;
+        primerHijo[nodo] = NINGUNO;
+        hermano[nodo] = NINGUNO;
+        terminal[nodo] = NINGUNO;
+        mejor[nodo] = 0;
+        return nodo;
+    }
+
+    private void liberarNodo(int nodo) {
+        fuente[nodo] = null;
+        hermano[nodo] = nodoLibre;
+        nodoLibre = nodo;
+    }
+
+    private void crecerNodos(int capacidad) {
+
+        if (fuente == null) {
+            fuente = new String[capacidad];
+            desde = new int[capacidad];
+            hasta = new int[capacidad];
+            padre = new int[capacidad];
+            primerHijo = new int[capacidad];
+            hermano = new int[capacidad];
+            terminal = new int[capacidad];
+            mejor = new int[capacidad];
+            return;
+        }
+
+        fuente = Arrays.copyOf(fuente, capacidad);
+        desde = Arrays.copyOf(desde, capacidad);
+        hasta = Arrays.copyOf(hasta, capacidad);
+        padre = Arrays.copyOf(padre, capacidad);
+        primerHijo = Arrays.copyOf(primerHijo, capacidad);
+        hermano = Arrays.copyOf(hermano, capacidad);
+        terminal = Arrays.copyOf(terminal, capacidad);
+        mejor = Arrays.copyOf(mejor, capacidad);
+    }
+
+    private int nuevaCelda(int id) {
+
+        int celda;
+        if (celdaLibre != NINGUNO) {
+            celda = celdaLibre;
+            celdaLibre = celdaSiguiente[celda];
+        } else {
+            if (totalCeldas == celdaEntrada.length) crecerCeldas(totalCeldas * 2);
+            celda = totalCeldas++;
+        }
+
+        celdaEntrada[celda] = id;
+        celdaSiguiente[celda] = NINGUNO;
+        return celda;
+    }
+
+    private void liberarCelda(int celda) {
+        celdaSiguiente[celda] = celdaLibre;
+        celdaLibre = celda;
+    }
+
+    private void crecerCeldas(int capacidad) {
+
+        if (celdaEntrada == null) {
+            celdaEntrada = new int[capacidad];
+            celdaSiguiente = new int[capacidad];
+            return;
+        }
+
+        celdaEntrada = Arrays.copyOf(celdaEntrada, capacidad);
+        celdaSiguiente = Arrays.copyOf(celdaSiguiente, capacidad);
+    }
+
+    /**
+     * Monticulo de maximos de pendientes codificados (ver pendiente),
+     * sin envolver cada uno en un objeto.
+     */
+    private static final class Pendientes {
+
+        private long[] valores = new long[64];
+        private int tamano;
+
+        boolean estaVacia() { return tamano == 0; }
+
+        void agregar(long valor) {
+
+            if (tamano == valores.length) valores = Arrays.copyOf(valores, tamano * 2);
+
+            int i = tamano++;
+            while (i > 0 && valores[(i - 1) / 2] < valor) {
+                valores[i] = valores[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            valores[i] = valor;
+        }
+
+        long sacar() {
+
+            long mayor = valores[0];
+            long ultimo = valores[--tamano];
+
+            int i = 0;
+            while (2 * i + 1 < tamano) {
+                int hijo = 2 * i + 1;
+                if (hijo + 1 < tamano && valores[hijo + 1] > valores[hijo]) hijo++;
+                if (valores[hijo] <= ultimo) break;
+
+                valores[i] = valores[hijo];
+                i = hijo;
+            }
+            valores[i] = ultimo;
+            return mayor;
+        }
+    }
+
+    /**
+     * Un titulo o autor distinto (por su texto normalizado) y cuantos libros lo tienen.
+     */
+    private static final class Entrada {
+
+        final int id;
+        final String clave;
+        final String texto;
+        final Sugerencia.Campo campo;
+        int libros;
+
+        // Nodo donde termina la clave de cada comienzo de palabra
+        int[] nodos;
+
+        // Suma de los prestamos ya sumados de sus libros
+        int popularidad;
+
+        Entrada(int id, String clave, String texto, Sugerencia.Campo campo) {
+            this.id = id;
+            this.clave = clave;
+            this.texto = texto;
+            this.campo = campo;
+        }
+
+        Sugerencia comoSugerencia() {
+            return new Sugerencia(texto, campo, popularidad, libros);
+        }
+    }
+}
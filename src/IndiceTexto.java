@@ -0,0 +1,672 @@
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Clase IndiceTexto
+ * Indice invertido para la busqueda de libros por titulo, autor y categoria.
+ * Guarda el texto normalizado (minusculas y sin tildes) de cada libro,
+ * un indice de palabras completas y un indice de trigramas para
+ * resolver busquedas por subcadena sin recorrer todo el catalogo
+ * (las de uno o dos caracteres salen de un indice aparte de fragmentos cortos).
+ * Las listas de cada palabra y trigrama guardan ordinales de libro ordenados,
+ * asi los resultados salen en el orden del catalogo sin reordenar.
+ * Para la busqueda aproximada, las palabras distintas (el vocabulario) tienen
+ * su propio indice de trigramas, que lleva de una palabra mal escrita a las
+ * parecidas sin comparar contra todo el vocabulario.
+ * Las busquedas comparten un cerrojo de lectura; los cambios toman el de escritura.
+ */
+public class IndiceTexto {
+
+    // Longitud de los fragmentos del indice de subcadenas
+    private static final int N = 3;
+
+    // Separador entre campos del texto normalizado; no aparece en las consultas
+    private static final char SEPARADOR = '\u0000';
+
+    // Margen de las palabras del vocabulario al partirlas en trigramas,
+    // para que el comienzo y el final de la palabra tambien cuenten
+    private static final String MARGEN = "  ";
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Por ordinal: libro indexado y su texto normalizado
+    // (titulo, autor y categoria separados); null si no esta indexado
+    private Libro[] libros;
+    private String[] textos;
+
+    // Palabra normalizada -> ordinales de los libros que la contienen
+    private HashMap<String, ListaOrdinales> indicePalabras;
+
+    // Trigrama -> ordinales de los libros que lo contienen en alguno de sus campos
+    private HashMap<String, ListaOrdinales> indiceTrigramas;
+
+    // Fragmento de uno o dos caracteres -> ordinales de los libros que lo contienen
+    private HashMap<String, ListaOrdinales> indiceCortos;
+
+    // Vocabulario: cada palabra distinta del indice por su id (los ids liberados se reusan)
+    private String[] vocabulario;
+    private int totalVocabulario;
+    private ArrayDeque<Integer> idsLibres;
+
+    // Trigrama de palabra (con margenes) -> ids de las palabras del vocabulario que lo tienen
+    private HashMap<String, ListaOrdinales> trigramasVocabulario;
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    // Libros que la carga en segundo plano indexa por cada toma del cerrojo
+    private static final int BLOQUE_CARGA = 4096;
+
+    // Se abre cuando termina la carga en segundo plano; las busquedas la esperan
+    private volatile CountDownLatch cargaPendiente;
+
+    public IndiceTexto() {
+        this.libros = new Libro[1024];
+        this.textos = new String[1024];
+        this.indicePalabras = new HashMap<>();
+        this.indiceTrigramas = new HashMap<>();
+        this.indiceCortos = new HashMap<>();
+        this.vocabulario = new String[1024];
+        this.idsLibres = new ArrayDeque<>();
+        this.trigramasVocabulario = new HashMap<>();
+    }
+
+    /**
+     * Pasa el texto a minusculas y elimina tildes y diacriticos.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) return "";
+
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        return MARCAS_DIACRITICAS.matcher(descompuesto).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Agrega el libro al indice con sus valores actuales.
+     */
+    public void agregar(Libro libro) {
+
+        cerrojo.writeLock().lock();
+        try {
+            agregarSinBloqueo(libro);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexa un lote grande de libros en un hilo de fondo, por bloques.
+     * Entre bloques se pueden agregar o quitar otros libros; las busquedas
+     * esperan a que termine para no devolver resultados incompletos.
+     */
+    public void agregarEnSegundoPlano(List<Libro> libros) {
+
+        CountDownLatch terminada = new CountDownLatch(1);
+        cargaPendiente = terminada;
+
+        Thread hilo = new Thread(() -> {
+            try {
+                agregar(libros);
+            } finally {
+                terminada.countDown();
+            }
+        }, "carga-indice-texto");
+
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Agrega varios libros tomando el cerrojo una vez por bloque, no por libro.
+     */
+    public void agregar(List<Libro> libros) {
+
+        for (int desde = 0; desde < libros.size(); desde += BLOQUE_CARGA) {
+            int hasta = Math.min(desde + BLOQUE_CARGA, libros.size());
+
+            cerrojo.writeLock().lock();
+            try {
+                for (int i = desde; i < hasta; i++) agregarSinBloqueo(libros.get(i));
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+    }
+
+    private void agregarSinBloqueo(Libro libro) {
+
+        String[] campos = {
+                normalizar(libro.getTitulo()),
+                normalizar(libro.getAutor()),
+                normalizar(libro.getCategoria())
+        };
+
+        int ordinal = libro.getOrdinal();
+
+        if (ordinal >= textos.length) {
+            int capacidad = Math.max(ordinal + 1, textos.length * 2);
+            libros = Arrays.copyOf(libros, capacidad);
+            textos = Arrays.copyOf(textos, capacidad);
+        }
+
+        libros[ordinal] = libro;
+        textos[ordinal] = String.join(String.valueOf(SEPARADOR), campos);
+
+        for (String campo : campos) {
+            for (String palabra : palabras(campo)) {
+                ListaOrdinales postings = indicePalabras.get(palabra);
+                if (postings == null) {
+                    postings = new ListaOrdinales();
+                    indicePalabras.put(palabra, postings);
+                    agregarAlVocabulario(palabra, postings);
+                }
+                postings.agregar(ordinal);
+            }
+            for (String trigrama : trigramas(campo)) {
+                indiceTrigramas.computeIfAbsent(trigrama, k -> new ListaOrdinales()).agregar(ordinal);
+            }
+            for (String fragmento : fragmentosCortos(campo)) {
+                indiceCortos.computeIfAbsent(fragmento, k -> new ListaOrdinales()).agregar(ordinal);
+            }
+        }
+    }
+
+    private void esperarCarga() {
+
+        CountDownLatch pendiente = cargaPendiente;
+        if (pendiente == null) return;
+
+        try {
+            pendiente.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Quita el libro del indice usando el texto con el que fue agregado.
+     */
+    public void quitar(Libro libro) {
+
+        cerrojo.writeLock().lock();
+        try {
+            int ordinal = libro.getOrdinal();
+            if (ordinal < 0 || ordinal >= textos.length || textos[ordinal] == null) return;
+
+            String texto = textos[ordinal];
+            libros[ordinal] = null;
+            textos[ordinal] = null;
+
+            for (String campo : texto.split(String.valueOf(SEPARADOR), -1)) {
+                for (String palabra : palabras(campo)) {
+                    ListaOrdinales postings = indicePalabras.get(palabra);
+                    if (postings == null) continue;
+
+                    postings.quitar(ordinal);
+                    if (postings.tamano == 0) {
+                        indicePalabras.remove(palabra);
+                        quitarDelVocabulario(palabra, postings);
+                    }
+                }
+                for (String trigrama : trigramas(campo)) {
+                    quitarDePostings(indiceTrigramas, trigrama, ordinal);
+                }
+                for (String fragmento : fragmentosCortos(campo)) {
+                    quitarDePostings(indiceCortos, fragmento, ordinal);
+                }
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca libros cuyo titulo, autor o categoria contengan el criterio.
+     * Con tres o mas caracteres parte del trigrama menos frecuente y solo
+     * verifica esos candidatos; con uno o dos, la lista del fragmento ya es
+     * el resultado. Los resultados siguen el orden del catalogo.
+     */
+    public ArrayList<Libro> buscarSubcadena(String criterio) {
+
+        String consulta = normalizar(criterio);
+        ArrayList<Libro> resultados = new ArrayList<>();
+
+        esperarCarga();
+        cerrojo.readLock().lock();
+        try {
+            if (consulta.isEmpty()) {
+                // La consulta vacia coincide con todo el catalogo
+                for (Libro libro : libros) {
+                    if (libro != null) resultados.add(libro);
+                }
+            } else if (consulta.length() < N) {
+                ListaOrdinales postings = indiceCortos.get(consulta);
+                if (postings == null) return resultados;
+
+                resultados.ensureCapacity(postings.tamano);
+                for (int i = 0; i < postings.tamano; i++) resultados.add(libros[postings.ordinales[i]]);
+            } else {
+                ListaOrdinales candidatos = null;
+
+                for (String trigrama : trigramas(consulta)) {
+                    ListaOrdinales postings = indiceTrigramas.get(trigrama);
+                    if (postings == null) return resultados;
+                    if (candidatos == null || postings.tamano < candidatos.tamano) {
+                        candidatos = postings;
+                    }
+                }
+
+                for (int i = 0; i < candidatos.tamano; i++) {
+                    int ordinal = candidatos.ordinales[i];
+                    if (textos[ordinal].contains(consulta)) resultados.add(libros[ordinal]);
+                }
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+
+        return resultados;
+    }
+
+    /**
+     * Busca libros que contengan todas las palabras del criterio,
+     * en cualquier orden y en cualquiera de sus campos.
+     */
+    public ArrayList<Libro> buscarPalabras(String criterio) {
+
+        ArrayList<String> consulta = palabras(normalizar(criterio));
+        ArrayList<Libro> resultados = new ArrayList<>();
+
+        if (consulta.isEmpty()) return resultados;
+
+        esperarCarga();
+        cerrojo.readLock().lock();
+        try {
+            ListaOrdinales menor = null;
+
+            for (String palabra : consulta) {
+                ListaOrdinales postings = indicePalabras.get(palabra);
+                if (postings == null) return resultados;
+                if (menor == null || postings.tamano < menor.tamano) menor = postings;
+            }
+
+            for (int i = 0; i < menor.tamano; i++) {
+                int ordinal = menor.ordinales[i];
+                boolean contieneTodas = true;
+                for (String palabra : consulta) {
+                    if (!indicePalabras.get(palabra).contiene(ordinal)) {
+                        contieneTodas = false;
+                        break;
+                    }
+                }
+                if (contieneTodas) resultados.add(libros[ordinal]);
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+
+        return resultados;
+    }
+
+    /**
+     * Busca libros aunque el criterio tenga errores de tipeo: cada palabra del
+     * criterio debe parecerse a alguna palabra del titulo, autor o categoria,
+     * con hasta una letra distinta, sobrante, faltante o dos vecinas cambiadas
+     * de lugar (dos en las palabras largas; ninguna en las cortas ni en los
+     * numeros). Los mas parecidos van primero: ordenados por la suma de las
+     * distancias de cada palabra y, a igual distancia, en el orden del catalogo.
+     */
+    public ArrayList<Libro> buscarAproximado(String criterio) {
+
+        ArrayList<String> consulta = palabras(normalizar(criterio));
+        ArrayList<Libro> resultados = new ArrayList<>();
+
+        if (consulta.isEmpty()) return resultados;
+
+        esperarCarga();
+        cerrojo.readLock().lock();
+        try {
+            // Palabras parecidas a cada una de la consulta; se recorren los libros de la que tiene menos
+            Parecidas[] porPalabra = new Parecidas[consulta.size()];
+            int guia = 0;
+
+            for (int i = 0; i < porPalabra.length; i++) {
+                porPalabra[i] = parecidas(consulta.get(i));
+                if (porPalabra[i].cantidad == 0) return resultados;
+                if (porPalabra[i].totalLibros < porPalabra[guia].totalLibros) guia = i;
+            }
+
+            // Libros de la palabra guia con su menor distancia: ordinal arriba, distancia abajo
+            Parecidas parecidasGuia = porPalabra[guia];
+            long[] candidatos = new long[(int) parecidasGuia.totalLibros];
+            int n = 0;
+            for (int t = 0; t < parecidasGuia.cantidad; t++) {
+                ListaOrdinales postings = parecidasGuia.libros[t];
+                for (int k = 0; k < postings.tamano; k++) {
+                    candidatos[n++] = (long) postings.ordinales[k] << 8 | parecidasGuia.distancias[t];
+                }
+            }
+            Arrays.sort(candidatos, 0, n);
+
+            // Distancia total arriba y ordinal abajo, para ordenar por parecido y luego por catalogo
+            long[] encontrados = new long[n];
+            int m = 0;
+
+            for (int k = 0; k < n; k++) {
+                int ordinal = (int) (candidatos[k] >>> 8);
+                if (k > 0 && (int) (candidatos[k - 1] >>> 8) == ordinal) continue;
+
+                int total = (int) (candidatos[k] & 0xFF);
+                for (int i = 0; i < porPalabra.length && total >= 0; i++) {
+                    if (i == guia) continue;
+
+                    int distancia = porPalabra[i].distanciaEn(ordinal);
+                    total = distancia < 0 ? -1 : total + distancia;
+                }
+                if (total >= 0) encontrados[m++] = (long) total << 32 | ordinal;
+            }
+            Arrays.sort(encontrados, 0, m);
+
+            for (int k = 0; k < m; k++) resultados.add(libros[(int) encontrados[k]]);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+
+        return resultados;
+    }
+
+    /**
+     * Palabras del vocabulario a distancia tolerable de la indicada, de la mas
+     * cercana a la mas lejana. Una palabra a distancia d tiene, salvo a lo
+     * sumo 4d, todos los trigramas de la consultada (cada error toca a lo
+     * sumo cuatro): de la union ordenada de las listas de sus trigramas solo
+     * se verifican, una a una, las palabras que se repiten al menos n-4d
+     * veces, siendo n la cantidad de trigramas distintos de la consultada.
+     */
+    private Parecidas parecidas(String palabra) {
+
+        Parecidas parecidas = new Parecidas();
+        int maximo = tolerancia(palabra);
+
+        if (maximo == 0) {
+            ListaOrdinales postings = indicePalabras.get(palabra);
+            if (postings != null) parecidas.agregar(postings, 0);
+            return parecidas;
+        }
+
+        // Un trigrama que no esta en el vocabulario cuenta como una lista vacia
+        HashSet<String> trigramas = trigramasConMargen(palabra);
+        ListaOrdinales[] listas = new ListaOrdinales[trigramas.size()];
+        int n = 0;
+        for (String trigrama : trigramas) {
+            ListaOrdinales ids = trigramasVocabulario.get(trigrama);
+            listas[n++] = ids != null ? ids : new ListaOrdinales();
+        }
+        Arrays.sort(listas, (a, b) -> Integer.compare(a.tamano, b.tamano));
+
+        int total = 0;
+        for (ListaOrdinales lista : listas) total += lista.tamano;
+
+        int[] candidatos = new int[total];
+        int c = 0;
+        for (ListaOrdinales lista : listas) {
+            System.arraycopy(lista.ordinales, 0, candidatos, c, lista.tamano);
+            c += lista.tamano;
+        }
+        Arrays.sort(candidatos);
+
+        // Distancia arriba e id abajo, para quedar de la mas cercana a la mas lejana
+        int necesarios = Math.max(1, listas.length - 4 * maximo);
+        long[] encontradas = new long[c];
+        int m = 0;
+        for (int i = 0; i < c; ) {
+            int id = candidatos[i];
+            int comunes = 0;
+            while (i < c && candidatos[i] == id) {
+                comunes++;
+                i++;
+            }
+            if (comunes < necesarios) continue;
+
+            int distancia = distancia(palabra, vocabulario[id], maximo);
+            if (distancia <= maximo) encontradas[m++] = (long) distancia << 32 | id;
+        }
+        Arrays.sort(encontradas, 0, m);
+
+        for (int i = 0; i < m; i++) {
+            String termino = vocabulario[(int) encontradas[i]];
+            parecidas.agregar(indicePalabras.get(termino), (int) (encontradas[i] >>> 32));
+        }
+        return parecidas;
+    }
+
+    // Errores tolerados segun la palabra: ninguno en las cortas ni en las que tienen digitos
+    private static int tolerancia(String palabra) {
+
+        for (int i = 0; i < palabra.length(); i++) {
+            if (!Character.isLetter(palabra.charAt(i))) return 0;
+        }
+        return palabra.length() <= 3 ? 0 : palabra.length() <= 7 ? 1 : 2;
+    }
+
+    /**
+     * Distancia de edicion entre las palabras, contando como un error cambiar,
+     * agregar o quitar una letra, o intercambiar dos vecinas. Si pasa de
+     * maximo retorna maximo + 1 apenas lo sabe, sin terminar la tabla.
+     */
+    static int distancia(String a, String b, int maximo) {
+
+        if (Math.abs(a.length() - b.length()) > maximo) return maximo + 1;
+
+        // Solo la franja de la diagonal: fuera de ella la distancia ya supera el maximo
+        int fuera = maximo + 1;
+        int[] dosAtras = new int[b.length() + 1];
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+
+        for (int j = 0; j <= b.length(); j++) anterior[j] = Math.min(j, fuera);
+
+        for (int i = 1; i <= a.length(); i++) {
+            int desde = Math.max(1, i - maximo);
+            int hasta = Math.min(b.length(), i + maximo);
+            actual[desde - 1] = desde == 1 ? Math.min(i, fuera) : fuera;
+            if (hasta < b.length()) actual[hasta + 1] = fuera;
+            int minimoFila = actual[desde - 1];
+
+            for (int j = desde; j <= hasta; j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int valor = Math.min(Math.min(anterior[j] + 1, actual[j - 1] + 1), anterior[j - 1] + costo);
+
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    valor = Math.min(valor, dosAtras[j - 2] + 1);
+                }
+
+                actual[j] = Math.min(valor, fuera);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+
+            // Con una fila entera por encima del maximo, las siguientes tambien lo estan
+            if (minimoFila > maximo) return fuera;
+
+            int[] libre = dosAtras;
+            dosAtras = anterior;
+            anterior = actual;
+            actual = libre;
+        }
+
+        return Math.min(anterior[b.length()], maximo + 1);
+    }
+
+    // ===================== VOCABULARIO =====================
+
+    private void agregarAlVocabulario(String palabra, ListaOrdinales postings) {
+
+        int id;
+        if (!idsLibres.isEmpty()) {
+            id = idsLibres.pop();
+        } else {
+            if (totalVocabulario == vocabulario.length) vocabulario = Arrays.copyOf(vocabulario, totalVocabulario * 2);
+            id = totalVocabulario++;
+        }
+
+        vocabulario[id] = palabra;
+        postings.termino = id;
+
+        for (String trigrama : trigramasConMargen(palabra)) {
+            trigramasVocabulario.computeIfAbsent(trigrama, k -> new ListaOrdinales()).agregar(id);
+        }
+    }
+
+    private void quitarDelVocabulario(String palabra, ListaOrdinales postings) {
+
+        for (String trigrama : trigramasConMargen(palabra)) {
+            quitarDePostings(trigramasVocabulario, trigrama, postings.termino);
+        }
+
+        vocabulario[postings.termino] = null;
+        idsLibres.push(postings.termino);
+    }
+
+    private static HashSet<String> trigramasConMargen(String palabra) {
+        return trigramas(MARGEN + palabra + MARGEN);
+    }
+
+    // ===================== AUXILIARES =====================
+
+    private static ArrayList<String> palabras(String campo) {
+
+        ArrayList<String> palabras = new ArrayList<>();
+
+        for (String palabra : NO_ALFANUMERICO.split(campo)) {
+            if (!palabra.isEmpty()) palabras.add(palabra);
+        }
+
+        return palabras;
+    }
+
+    private static HashSet<String> trigramas(String campo) {
+
+        HashSet<String> trigramas = new HashSet<>();
+
+        for (int i = 0; i + N <= campo.length(); i++) {
+            trigramas.add(campo.substring(i, i + N));
+        }
+
+        return trigramas;
+    }
+
+    // Fragmentos de uno y de dos caracteres del campo
+    private static HashSet<String> fragmentosCortos(String campo) {
+
+        HashSet<String> fragmentos = new HashSet<>();
+
+        for (int i = 0; i < campo.length(); i++) {
+            fragmentos.add(campo.substring(i, i + 1));
+            if (i + 2 <= campo.length()) fragmentos.add(campo.substring(i, i + 2));
+        }
+
+        return fragmentos;
+    }
+
+    private static void quitarDePostings(HashMap<String, ListaOrdinales> indice, String clave, int ordinal) {
+
+        ListaOrdinales postings = indice.get(clave);
+        if (postings == null) return;
+
+        postings.quitar(ordinal);
+        if (postings.tamano == 0) indice.remove(clave);
+    }
+
+    /**
+     * Palabras del vocabulario parecidas a una de la consulta: los libros de
+     * cada una y su distancia, de la mas cercana a la mas lejana.
+     */
+    private static class Parecidas {
+
+        ListaOrdinales[] libros = new ListaOrdinales[4];
+        int[] distancias = new int[4];
+        int cantidad;
+
+        // Suma de los libros de todas (un libro puede estar en varias)
+        long totalLibros;
+
+        void agregar(ListaOrdinales postings, int distancia) {
+
+            if (cantidad == libros.length) {
+                libros = Arrays.copyOf(libros, cantidad * 2);
+                distancias = Arrays.copyOf(distancias, cantidad * 2);
+            }
+
+            libros[cantidad] = postings;
+            distancias[cantidad] = distancia;
+            cantidad++;
+            totalLibros += postings.tamano;
+        }
+
+        /**
+         * Menor distancia de las palabras que estan en el libro, o -1 si ninguna.
+         */
+        int distanciaEn(int ordinal) {
+
+            for (int i = 0; i < cantidad; i++) {
+                if (libros[i].contiene(ordinal)) return distancias[i];
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Lista ordenada y sin repetidos de ordinales de libro
+     * (o de ids del vocabulario, en el indice de trigramas de palabras).
+     * Los libros nuevos llegan casi siempre con el mayor ordinal,
+     * por lo que agregar suele ser anexar al final.
+     */
+    private static class ListaOrdinales {
+
+        int[] ordinales = new int[4];
+        int tamano;
+
+        // En las listas del indice de palabras: id de la palabra en el vocabulario
+        int termino = -1;
+
+        void agregar(int ordinal) {
+
+            int pos;
+            if (tamano == 0 || ordinales[tamano - 1] < ordinal) {
+                pos = tamano;
+            } else {
+                pos = Arrays.binarySearch(ordinales, 0, tamano, ordinal);
+                if (pos >= 0) return;
+                pos = -pos - 1;
+            }
+
+            if (tamano == ordinales.length) ordinales = Arrays.copyOf(ordinales, tamano * 2);
+
+            System.arraycopy(ordinales, pos, ordinales, pos + 1, tamano - pos);
+            ordinales[pos] = ordinal;
+            tamano++;
+        }
+
+        void quitar(int ordinal) {
+
+            int pos = Arrays.binarySearch(ordinales, 0, tamano, ordinal);
+            if (pos < 0) return;
+
+            System.arraycopy(ordinales, pos + 1, ordinales, pos, tamano - pos - 1);
+            tamano--;
+        }
+
+        boolean contiene(int ordinal) {
+            return Arrays.binarySearch(ordinales, 0, tamano, ordinal) >= 0;
+        }
+    }
+}
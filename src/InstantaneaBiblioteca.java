@@ -0,0 +1,198 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Clase InstantaneaBiblioteca
+ * Guarda y carga una copia compacta de todo el estado de la biblioteca
+ * en un formato binario versionado. La carga se hace a traves de un
+ * MappedByteBuffer, sin pasar por flujos ni parsear texto.
+ *
+ * Formato (version 2, enteros big-endian):
+ *   cabecera: "BIBS", version, secuencia del diario, siguiente ID de prestamo,
+ *             bytes confirmados del archivo de prestamos devueltos,
+ *             cantidad de libros, usuarios y prestamos
+ *   libros:   isbn, titulo, autor, editorial, anio, categoria, ejemplares totales
+ *   usuarios: id, nombre, correo, telefono, direccion
+ *   prestamos: id, ordinal del libro, ordinal del usuario,
+ *              fecha de prestamo y fecha de devolucion real en dias epoch
+ *              (TablaPrestamos.SIN_FECHA si sigue abierto; -1 en el ID marca un hueco)
+ *
+ * Solo lleva los prestamos que estan en memoria; los archivados estan en
+ * ArchivoPrestamos hasta los bytes indicados en la cabecera. La version 1
+ * no tiene ese campo y lleva todo el historial.
+ *
+ * Los textos se guardan como longitud en bytes UTF-8 (-1 si es null) y sus bytes.
+ * La fecha estimada y los ejemplares disponibles se derivan al cargar,
+ * y el indice de texto se reconstruye en segundo plano.
+ * La secuencia del diario indica hasta que registro incluye la instantanea;
+ * al abrir solo se reproducen los registros posteriores.
+ */
+public class InstantaneaBiblioteca {
+
+    private static final int MAGICO = 0x42494253;
+    private static final int VERSION = 2;
+
+    /**
+     * Escribe la instantanea. Quien llama debe garantizar que la biblioteca
+     * no cambie mientras tanto.
+     */
+    static void escribir(Biblioteca biblioteca, long secuenciaDiario, Path archivo) throws IOException {
+
+        int totalLibros = biblioteca.getTotalLibros();
+        int totalUsuarios = biblioteca.getTotalUsuarios();
+        TablaPrestamos historial = biblioteca.getHistorialPrestamos();
+        ArchivoPrestamos archivoPrestamos = biblioteca.getArchivoPrestamos();
+
+        try (FileOutputStream archivoSalida = new FileOutputStream(archivo.toFile());
+             DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(archivoSalida, 1 << 16))) {
+
+            salida.writeInt(MAGICO);
+            salida.writeInt(VERSION);
+            salida.writeLong(secuenciaDiario);
+            salida.writeInt(historial.getUltimoId() + 1);
+            salida.writeLong(archivoPrestamos != null ? archivoPrestamos.getLongitud() : 0);
+            salida.writeInt(totalLibros);
+            salida.writeInt(totalUsuarios);
+            salida.writeInt(historial.contarEnMemoria());
+
+            for (int i = 0; i < totalLibros; i++) {
+                Libro l = biblioteca.getLibro(i);
+                escribirTexto(salida, l.getIsbn());
+                escribirTexto(salida, l.getTitulo());
+                escribirTexto(salida, l.getAutor());
+                escribirTexto(salida, l.getEditorial());
+                salida.writeInt(l.getAnioPublicacion());
+                escribirTexto(salida, l.getCategoria());
+                salida.writeInt(l.getEjemplaresTotales());
+            }
+
+            for (int i = 0; i < totalUsuarios; i++) {
+                Usuario u = biblioteca.getUsuario(i);
+                escribirTexto(salida, u.getNumeroIdentificacion());
+                escribirTexto(salida, u.getNombreCompleto());
+                escribirTexto(salida, u.getCorreoElectronico());
+                escribirTexto(salida, u.getTelefono());
+                escribirTexto(salida, u.getDireccion());
+            }
+
+            // Las columnas de la tabla ya estan en el formato del archivo
+            try {
+                historial.paraCadaEnMemoria(id -> {
+                    try {
+                        salida.writeInt(id);
+                        salida.writeInt(historial.getOrdinalLibro(id));
+                        salida.writeInt(historial.getOrdinalUsuario(id));
+                        salida.writeInt(historial.getDiaPrestamo(id));
+                        salida.writeInt(historial.getDiaDevolucion(id));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            salida.flush();
+            archivoSalida.getChannel().force(true);
+        }
+    }
+
+    /**
+     * Carga la instantanea sobre una biblioteca vacia.
+     * Retorna la secuencia del diario hasta la que llega la instantanea.
+     */
+    static long cargar(Path archivo, Biblioteca biblioteca) throws IOException {
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Instantanea demasiado grande para mapear: " + canal.size() + " bytes");
+            }
+
+            MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+
+            if (datos.getInt() != MAGICO) {
+                throw new IOException("El archivo no es una instantanea de biblioteca");
+            }
+            int version = datos.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Version de instantanea no soportada");
+            }
+
+            long secuenciaDiario = datos.getLong();
+            int siguienteIdPrestamo = datos.getInt();
+
+            // Antes de restaurar prestamos, para que los de bloques archivados queden sueltos
+            biblioteca.abrirArchivoPrestamos(version == 1 ? 0 : datos.getLong());
+
+            int totalLibros = datos.getInt();
+            int totalUsuarios = datos.getInt();
+            int totalPrestamos = datos.getInt();
+
+            Libro[] libros = new Libro[totalLibros];
+            for (int i = 0; i < totalLibros; i++) {
+                libros[i] = new Libro(leerTexto(datos), leerTexto(datos), leerTexto(datos),
+                        leerTexto(datos), datos.getInt(), leerTexto(datos), datos.getInt());
+                biblioteca.incorporarLibro(libros[i], false);
+            }
+            biblioteca.contarPrestamosArchivados();
+
+            // El indice de texto es lo mas costoso de reconstruir: se arma en segundo plano
+            biblioteca.indexarTextoEnSegundoPlano(Arrays.asList(libros));
+
+            Usuario[] usuarios = new Usuario[totalUsuarios];
+            for (int i = 0; i < totalUsuarios; i++) {
+                usuarios[i] = new Usuario(leerTexto(datos), leerTexto(datos), leerTexto(datos),
+                        leerTexto(datos), leerTexto(datos));
+                biblioteca.incorporarUsuario(usuarios[i]);
+            }
+
+            for (int i = 0; i < totalPrestamos; i++) {
+                // El escritor solo emite prestamos existentes, siempre con sus cinco enteros
+                int id = datos.getInt();
+                if (id < 0) throw new IOException("Instantanea corrupta: prestamo con ID " + id);
+
+                Libro libro = libros[datos.getInt()];
+                Usuario usuario = usuarios[datos.getInt()];
+                int diaPrestamo = datos.getInt();
+                int diaDevolucion = datos.getInt();
+
+                biblioteca.restaurarPrestamo(id, libro, usuario, diaPrestamo, diaDevolucion);
+            }
+
+            biblioteca.getHistorialPrestamos().reservarHasta(siguienteIdPrestamo - 1);
+            return secuenciaDiario;
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+
+        if (texto == null) {
+            salida.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static String leerTexto(MappedByteBuffer datos) {
+
+        int longitud = datos.getInt();
+        if (longitud < 0) return null;
+
+        byte[] bytes = new byte[longitud];
+        datos.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,3 +1,6 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
 /**
  * Clase Libro
  * Representa un libro dentro del sistema de biblioteca.
@@ -5,8 +8,12 @@
  */
 public class Libro {
 
-    // Identificador unico del libro
+    // Formato valido de ISBN ya sin guiones: 10 o 13 digitos
+    private static final Pattern FORMATO_ISBN = Pattern.compile("\\d{10}|\\d{13}");
+
+    // Identificador unico del libro y su forma normalizada (clave de indices y cerrojos)
     private String isbn;
+    private String claveISBN;
 
     // Datos generales del libro
     private String titulo;
@@ -15,9 +22,19 @@ public class Libro {
     private int anioPublicacion;
     private String categoria;
 
-    // Control de inventario
+    // Control de inventario (los disponibles se actualizan de forma atomica)
     private int ejemplaresTotales;
-    private int ejemplaresDisponibles;
+    private AtomicInteger ejemplaresDisponibles;
+
+    // Prestamos que ha tenido, incluidos los devueltos y archivados (popularidad)
+    private volatile int vecesPrestado;
+
+    // Biblioteca donde esta registrado y posicion en su catalogo
+    private volatile Biblioteca biblioteca;
+    private int ordinal = -1;
+
+    // Reservas del libro; se crea con la primera (la guarda la franja del libro)
+    private volatile ColaReservas reservas;
 
     /**
      * Constructor que inicializa todos los atributos del libro
@@ -26,6 +43,7 @@ public class Libro {
                  int anioPublicacion, String categoria, int ejemplaresTotales) {
 
         this.isbn = isbn;
+        this.claveISBN = normalizarISBN(isbn);
         this.titulo = titulo;
         this.autor = autor;
         this.editorial = editorial;
@@ -34,36 +52,62 @@ public class Libro {
         this.ejemplaresTotales = ejemplaresTotales;
 
         // Al registrarse, todos los ejemplares estan disponibles
-        this.ejemplaresDisponibles = ejemplaresTotales;
+        this.ejemplaresDisponibles = new AtomicInteger(ejemplaresTotales);
     }
 
     /**
      * Reduce la cantidad de ejemplares disponibles cuando se realiza un prestamo
      */
     public boolean prestar() {
-        if (ejemplaresDisponibles > 0) {
-            ejemplaresDisponibles--;
-            return true;
-        }
-        return false;
+        int disponibles;
+        do {
+            disponibles = ejemplaresDisponibles.get();
+            if (disponibles <= 0) return false;
+        } while (!ejemplaresDisponibles.compareAndSet(disponibles, disponibles - 1));
+
+        if (biblioteca != null) biblioteca.getContadores().ejemplarPrestado();
+        return true;
+    }
+
+    /**
+     * Incrementa los ejemplares disponibles cuando se devuelve un libro.
+     * Retorna false si ya estaban todos en la biblioteca (en el estante o apartados).
+     * Si hay usuarios esperando, el ejemplar no vuelve al estante: queda
+     * apartado para el primero de la cola (ver Biblioteca.apartarDevuelto).
+     * La llama Prestamo.registrarDevolucion, con la franja del libro tomada.
+     */
+    boolean devolver() {
+
+        ColaReservas cola = reservas;
+        int apartados = cola == null ? 0 : cola.getTotalApartados();
+
+        if (ejemplaresDisponibles.get() + apartados >= ejemplaresTotales) return false;
+
+        if (cola != null && biblioteca != null && biblioteca.apartarDevuelto(this)) return true;
+
+        int disponibles;
+        do {
+            disponibles = ejemplaresDisponibles.get();
+            if (disponibles + apartados >= ejemplaresTotales) return false;
+        } while (!ejemplaresDisponibles.compareAndSet(disponibles, disponibles + 1));
+
+        if (biblioteca != null) biblioteca.getContadores().ejemplarDevuelto();
+        return true;
     }
 
     /**
-     * Incrementa los ejemplares disponibles cuando se devuelve un libro
+     * Vuelve a poner en el estante un ejemplar que estaba apartado,
+     * sin tocar los contadores de la biblioteca.
      */
-    public boolean devolver() {
-        if (ejemplaresDisponibles < ejemplaresTotales) {
-            ejemplaresDisponibles++;
-            return true;
-        }
-        return false;
+    void reponerApartado() {
+        ejemplaresDisponibles.incrementAndGet();
     }
 
     /**
      * Verifica si el libro tiene ejemplares disponibles
      */
     public boolean estaDisponible() {
-        return ejemplaresDisponibles > 0;
+        return ejemplaresDisponibles.get() > 0;
     }
 
     /**
@@ -72,35 +116,46 @@ public class Libro {
     public static boolean validarISBN(String isbn) {
         if (isbn == null || isbn.isEmpty()) return false;
 
-        String isbnLimpio = isbn.replace("-", "").trim();
-        return isbnLimpio.matches("\\d{10}") || isbnLimpio.matches("\\d{13}");
+        return FORMATO_ISBN.matcher(normalizarISBN(isbn)).matches();
+    }
+
+    /**
+     * Quita guiones y espacios del ISBN.
+     * Se usa como clave de busqueda para que "978-..." y "978..." coincidan.
+     */
+    public static String normalizarISBN(String isbn) {
+        if (isbn == null) return null;
+
+        // Caso comun: sin guiones, y trim no copia si no hay espacios
+        if (isbn.indexOf('-') < 0) return isbn.trim();
+        return isbn.replace("-", "").trim();
     }
 
     /**
      * Muestra la informacion completa del libro en consola
      */
     public void mostrarInformacion() {
-        System.out.println("============================================");
-        System.out.println("  ISBN:             " + isbn);
-        System.out.println("  Titulo:           " + titulo);
-        System.out.println("  Autor:            " + autor);
-        System.out.println("  Editorial:        " + editorial);
-        System.out.println("  Anio publicacion: " + anioPublicacion);
-        System.out.println("  Categoria:        " + categoria);
-        System.out.println("  Ejemplares:       " + ejemplaresDisponibles + " / " + ejemplaresTotales);
-        System.out.println("  Disponibilidad:   " + (estaDisponible() ? "DISPONIBLE" : "NO DISPONIBLE"));
-        System.out.println("============================================");
+        RenderizadorRegistros.mostrar(this);
     }
 
     // ===================== GETTERS Y SETTERS =====================
 
     public String getIsbn() { return isbn; }
+    String getClaveISBN() { return claveISBN; }
 
     public String getTitulo() { return titulo; }
-    public void setTitulo(String titulo) { this.titulo = titulo; }
+    public void setTitulo(String titulo) {
+        quitarDelIndice();
+        this.titulo = titulo;
+        agregarAlIndice();
+    }
 
     public String getAutor() { return autor; }
-    public void setAutor(String autor) { this.autor = autor; }
+    public void setAutor(String autor) {
+        quitarDelIndice();
+        this.autor = autor;
+        agregarAlIndice();
+    }
 
     public String getEditorial() { return editorial; }
     public void setEditorial(String editorial) { this.editorial = editorial; }
@@ -109,8 +164,70 @@ public class Libro {
     public void setAnioPublicacion(int anioPublicacion) { this.anioPublicacion = anioPublicacion; }
 
     public String getCategoria() { return categoria; }
-    public void setCategoria(String categoria) { this.categoria = categoria; }
+    public void setCategoria(String categoria) {
+        quitarDelIndice();
+        this.categoria = categoria;
+        agregarAlIndice();
+    }
 
     public int getEjemplaresTotales() { return ejemplaresTotales; }
-    public int getEjemplaresDisponibles() { return ejemplaresDisponibles; }
+    public int getEjemplaresDisponibles() { return ejemplaresDisponibles.get(); }
+
+    int getOrdinal() { return ordinal; }
+
+    /**
+     * Prestamos que ha tenido el libro, abiertos o no.
+     */
+    public int getVecesPrestado() { return vecesPrestado; }
+
+    /**
+     * Suma prestamos a la cuenta del libro.
+     * Requiere la franja del libro tomada, o la carga en curso.
+     */
+    void sumarPrestamos(int cantidad) {
+        vecesPrestado += cantidad;
+    }
+
+    /**
+     * Usuarios que esperan un ejemplar de este libro.
+     */
+    public int getReservasEnEspera() {
+        ColaReservas cola = reservas;
+        return cola == null ? 0 : cola.getEnEspera();
+    }
+
+    /**
+     * True si hay ejemplares apartados para usuarios de la cola (se lee sin cerrojo).
+     */
+    boolean tieneApartados() {
+        ColaReservas cola = reservas;
+        return cola != null && cola.getTotalApartados() > 0;
+    }
+
+    ColaReservas getReservas() { return reservas; }
+
+    /**
+     * Retorna la cola de reservas, creandola si no existe.
+     * Requiere la franja del libro tomada.
+     */
+    ColaReservas abrirReservas() {
+        if (reservas == null) reservas = new ColaReservas();
+        return reservas;
+    }
+
+    /**
+     * Asocia el libro a la biblioteca que lo registro y a su posicion en el catalogo.
+     */
+    void registrarEn(Biblioteca biblioteca, int ordinal) {
+        this.biblioteca = biblioteca;
+        this.ordinal = ordinal;
+    }
+
+    private void quitarDelIndice() {
+        if (biblioteca != null) biblioteca.quitarDeIndices(this);
+    }
+
+    private void agregarAlIndice() {
+        if (biblioteca != null) biblioteca.agregarAIndices(this);
+    }
 }
\ No newline at end of file
@@ -1,18 +1,54 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * Clase Main
  * Punto de entrada del sistema de gestion de biblioteca.
- * Controla la interaccion con el usuario mediante un menu en consola.
+ * Controla la interaccion con el usuario mediante un menu en consola,
+ * o ejecuta un lote de comandos con: java Main --lote archivo (ver ejecutarLote).
+ * Con java Main --servidor [puerto] ademas atiende la API HTTP (ver ServidorBiblioteca).
  */
 public class Main {
 
     // Objeto Scanner para capturar datos desde teclado
     static Scanner scanner = new Scanner(System.in);
 
+    // Archivos donde se guardan el diario de operaciones y la instantanea de la biblioteca
+    static final String ARCHIVO_DIARIO = "biblioteca.diario";
+    static final String ARCHIVO_INSTANTANEA = "biblioteca.instantanea";
+
+    // Minutos entre instantaneas automaticas
+    static final long MINUTOS_ENTRE_INSTANTANEAS = 10;
+
+    // En modo lote el diario se fuerza a disco cada tantos registros (o cada segundo)
+    // y al terminar, en lugar de cada pocos comandos como en el modo interactivo
+    static final int LOTE_FSYNC_MODO_LOTE = 8192;
+    static final long INTERVALO_FSYNC_MODO_LOTE_MS = 1000;
+
+    // Elementos que se muestran por pagina en los listados
+    static final int TAMANO_PAGINA = 10;
+
+    // Formato de la hora limite en los avisos de ejemplares apartados
+    static final DateTimeFormatter FORMATO_LIMITE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Salida con buffer para los listados; se vacia al terminar cada pagina
+    static RenderizadorRegistros consola = RenderizadorRegistros.consola(FormatoSalida.CAJA);
+
     // Instancia unica de la biblioteca
-    static Biblioteca biblioteca = new Biblioteca();
+    static Biblioteca biblioteca;
 
     /**
      * Metodo principal del programa.
@@ -20,15 +56,45 @@ public class Main {
      */
     public static void main(String[] args) {
 
+        if (args.length > 0 && args[0].equals("--lote")) {
+            System.exit(ejecutarLote(args.length > 1 ? args[1] : "-"));
+        }
+
         System.out.println("=========================================");
         System.out.println("  SISTEMA DE GESTION DE BIBLIOTECA");
         System.out.println("=========================================\n");
 
+        // Recupera el estado guardado (instantanea mas diario), si existe
+        try {
+            biblioteca = Biblioteca.abrir(Paths.get(ARCHIVO_DIARIO), Paths.get(ARCHIVO_INSTANTANEA));
+        } catch (IOException e) {
+            System.out.println("  [Error] No se pudo abrir el diario: " + e.getMessage());
+            return;
+        }
+
+        biblioteca.programarInstantaneas(MINUTOS_ENTRE_INSTANTANEAS, TimeUnit.MINUTES);
+        biblioteca.programarRevisionDiaria();
+        biblioteca.agregarOyenteApartados(Main::avisarApartado);
+
+        // Con --servidor [puerto], la API HTTP atiende sobre la misma biblioteca que el menu
+        ServidorBiblioteca servidor = null;
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            try {
+                int puerto = args.length > 1 ? Integer.parseInt(args[1]) : ServidorBiblioteca.PUERTO_PREDETERMINADO;
+                servidor = new ServidorBiblioteca(biblioteca, puerto);
+                servidor.iniciar();
+                System.out.println("  API HTTP en http://localhost:" + servidor.getPuerto() + "/api/");
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("  [Error] No se pudo iniciar la API HTTP: " + e.getMessage());
+            }
+        }
+
         int opcion = -1;
 
-        // Ciclo principal del sistema
+        // Ciclo principal del sistema; si se cierra la entrada, se sale como con la opcion 0
         while (opcion != 0) {
             mostrarMenu();
+            if (!scanner.hasNextLine()) break;
             try {
                 opcion = Integer.parseInt(scanner.nextLine().trim());
             } catch (NumberFormatException e) {
@@ -37,10 +103,64 @@ public class Main {
             procesarOpcion(opcion);
         }
 
+        if (servidor != null) servidor.close();
+        cerrarBiblioteca();
+
         System.out.println("\nSistema cerrado. Hasta pronto!");
         scanner.close();
     }
 
+    /**
+     * Modo lote: ejecuta los comandos del archivo indicado ("-" para la entrada
+     * estandar) sin mostrar menus, guarda el estado y muestra un resumen.
+     * Retorna el codigo de salida: 0 si todo se aplico, 1 si hubo rechazos
+     * o lineas invalidas y 2 si no se pudo leer el lote o guardar el estado.
+     * El formato de los comandos esta en ProcesadorLotes.
+     */
+    static int ejecutarLote(String origen) {
+
+        try {
+            biblioteca = Biblioteca.abrir(Paths.get(ARCHIVO_DIARIO), Paths.get(ARCHIVO_INSTANTANEA),
+                    LOTE_FSYNC_MODO_LOTE, INTERVALO_FSYNC_MODO_LOTE_MS);
+        } catch (IOException e) {
+            System.out.println("  [Error] No se pudo abrir el diario: " + e.getMessage());
+            return 2;
+        }
+
+        ReporteLote reporte;
+        RenderizadorRegistros salida = RenderizadorRegistros.consola(FormatoSalida.TABLA);
+
+        try (BufferedReader entrada = origen.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(origen), StandardCharsets.UTF_8)) {
+
+            reporte = new ProcesadorLotes(biblioteca, salida).procesar(entrada);
+
+        } catch (IOException | InvalidPathException e) {
+            salida.flush();
+            System.out.println("  [Error] No se pudo leer el lote: " + e.getMessage());
+            cerrarBiblioteca();
+            return 2;
+        }
+
+        reporte.mostrarResumen();
+        if (!cerrarBiblioteca()) return 2;
+
+        return reporte.sinErrores() ? 0 : 1;
+    }
+
+    // Guarda la instantanea y cierra el diario; retorna false si fallo
+    static boolean cerrarBiblioteca() {
+        try {
+            biblioteca.guardarInstantanea();
+            biblioteca.cerrar();
+            return true;
+        } catch (IOException e) {
+            System.out.println("  [Error] No se pudo guardar el estado: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Muestra el menu principal en consola.
      */
@@ -50,6 +170,7 @@ public class Main {
         System.out.println("  1. Registrar libro");
         System.out.println("  2. Buscar libro");
         System.out.println("  3. Listar todos los libros");
+        System.out.println("  12. Importar libros desde archivo (CSV/TSV)");
         System.out.println("  USUARIOS");
         System.out.println("  4. Registrar usuario");
         System.out.println("  5. Buscar usuario");
@@ -59,8 +180,11 @@ public class Main {
         System.out.println("  8. Registrar devolucion");
         System.out.println("  9. Ver prestamos activos");
         System.out.println("  10. Ver prestamos vencidos");
+        System.out.println("  15. Cancelar reserva");
         System.out.println("  REPORTES");
         System.out.println("  11. Reporte general");
+        System.out.println("  13. Exportar datos (tabla, CSV o JSON)");
+        System.out.println("  14. Metricas de operaciones");
         System.out.println("  0. Salir");
         System.out.println("=====================================");
         System.out.print("  Seleccione una opcion: ");
@@ -73,18 +197,22 @@ public class Main {
         switch (opcion) {
             case 1:  menuRegistrarLibro(); break;
             case 2:  menuBuscarLibro(); break;
-            case 3:  biblioteca.listarLibros(); break;
+            case 3:  menuListarLibros(); break;
             case 4:  menuRegistrarUsuario(); break;
             case 5:  menuBuscarUsuario(); break;
-            case 6:  biblioteca.listarUsuarios(); break;
+            case 6:  menuListarUsuarios(); break;
             case 7:  menuRealizarPrestamo(); break;
             case 8:  menuRegistrarDevolucion(); break;
             case 9:  menuPrestamosActivos(); break;
             case 10: menuPrestamosVencidos(); break;
             case 11: biblioteca.generarReporteGeneral(); break;
+            case 12: menuImportarLibros(); break;
+            case 13: menuExportar(); break;
+            case 14: menuMetricas(); break;
+            case 15: menuCancelarReserva(); break;
             case 0:  break;
             default:
-                System.out.println("  [Error] Opcion invalida. Ingrese un numero del 0 al 11.");
+                System.out.println("  [Error] Opcion invalida. Ingrese un numero del 0 al 15.");
         }
     }
 
@@ -138,6 +266,124 @@ public class Main {
         );
     }
 
+    /**
+     * Importa libros en bloque desde un archivo CSV o TSV.
+     */
+    static void menuImportarLibros() {
+
+        System.out.println("\n--- IMPORTAR LIBROS ---");
+        System.out.println("  Columnas: isbn, titulo, autor, editorial, anio, categoria, ejemplares");
+
+        System.out.print("  Ruta del archivo: ");
+        String ruta = scanner.nextLine().trim();
+
+        try {
+            biblioteca.importarCatalogo(Paths.get(ruta)).mostrarResumen();
+        } catch (IOException e) {
+            System.out.println("  [Error] No se pudo leer el archivo: " + e.getMessage());
+        } catch (InvalidPathException e) {
+            System.out.println("  [Error] Ruta invalida: " + ruta);
+        }
+    }
+
+    /**
+     * Exporta libros, usuarios o prestamos a un archivo en el formato elegido.
+     */
+    static void menuExportar() {
+
+        System.out.println("\n--- EXPORTAR DATOS ---");
+        System.out.println("  1. Libros   2. Usuarios   3. Prestamos");
+        System.out.print("  Que desea exportar: ");
+        String tipo = scanner.nextLine().trim();
+
+        if (!tipo.equals("1") && !tipo.equals("2") && !tipo.equals("3")) {
+            System.out.println("  [Error] Opcion invalida.");
+            return;
+        }
+
+        System.out.print("  Formato (CAJA, TABLA, CSV, JSON): ");
+        FormatoSalida formato;
+        try {
+            formato = FormatoSalida.valueOf(scanner.nextLine().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.out.println("  [Error] Formato invalido.");
+            return;
+        }
+
+        System.out.print("  Ruta del archivo: ");
+        String ruta = scanner.nextLine().trim();
+
+        try {
+            Path archivo = Paths.get(ruta);
+            int exportados;
+
+            switch (tipo) {
+                case "1":  exportados = biblioteca.exportarLibros(archivo, formato); break;
+                case "2":  exportados = biblioteca.exportarUsuarios(archivo, formato); break;
+                default:   exportados = biblioteca.exportarPrestamos(archivo, formato); break;
+            }
+
+            System.out.println("  [OK] Registros exportados: " + exportados);
+        } catch (IOException e) {
+            System.out.println("  [Error] No se pudo escribir el archivo: " + e.getMessage());
+        } catch (InvalidPathException e) {
+            System.out.println("  [Error] Ruta invalida: " + ruta);
+        }
+    }
+
+    /**
+     * Muestra las latencias y resultados de las operaciones, y permite
+     * encender o apagar la medicion, reiniciarla o guardarla en un archivo CSV.
+     */
+    static void menuMetricas() {
+
+        MetricasBiblioteca metricas = biblioteca.getMetricas();
+        System.out.print(metricas.textoMetricas());
+
+        System.out.println("  1. " + (metricas.estanActivas() ? "Desactivar" : "Activar") + " medicion"
+                + "   2. Reiniciar   3. Guardar en archivo (CSV)   [Enter] volver");
+        System.out.print("  Seleccione una opcion: ");
+        String opcion = scanner.nextLine().trim();
+
+        switch (opcion) {
+            case "1":
+                if (metricas.estanActivas()) {
+                    metricas.desactivar();
+                    System.out.println("  [OK] Medicion desactivada.");
+                } else {
+                    metricas.activar();
+                    System.out.println("  [OK] Medicion activada.");
+                }
+                break;
+
+            case "2":
+                metricas.reiniciar();
+                System.out.println("  [OK] Metricas reiniciadas.");
+                break;
+
+            case "3": {
+                System.out.print("  Ruta del archivo: ");
+                String ruta = scanner.nextLine().trim();
+
+                try {
+                    metricas.volcar(Paths.get(ruta));
+                    System.out.println("  [OK] Metricas guardadas en: " + ruta);
+                } catch (IOException e) {
+                    System.out.println("  [Error] No se pudo escribir el archivo: " + e.getMessage());
+                } catch (InvalidPathException e) {
+                    System.out.println("  [Error] Ruta invalida: " + ruta);
+                }
+                break;
+            }
+
+            case "":
+                break;
+
+            default:
+                System.out.println("  [Error] Opcion invalida.");
+        }
+    }
+
     /**
      * Permite buscar libros por titulo, autor o categoria.
      */
@@ -152,11 +398,22 @@ public class Main {
 
         if (resultados.isEmpty()) {
             System.out.println("  No se encontraron libros con: " + criterio);
+
+            // Quiza el criterio tiene un error de tipeo: se muestran los parecidos
+            resultados = biblioteca.buscarLibroAproximado(criterio);
+            if (!resultados.isEmpty()) {
+                System.out.println("  Resultados parecidos: " + resultados.size());
+                for (Libro l : resultados) {
+                    consola.escribir(l);
+                }
+                consola.flush();
+            }
         } else {
             System.out.println("  Resultados encontrados: " + resultados.size());
             for (Libro l : resultados) {
-                l.mostrarInformacion();
+                consola.escribir(l);
             }
+            consola.flush();
         }
     }
 
@@ -224,7 +481,43 @@ public class Main {
         System.out.print("  ID del usuario: ");
         String idUsuario = scanner.nextLine().trim();
 
-        biblioteca.realizarPrestamo(isbn, idUsuario);
+        if (biblioteca.realizarPrestamo(isbn, idUsuario)) return;
+
+        // Sin ejemplares, en lugar de volver a intentar se ofrece la cola de reservas
+        Libro libro = biblioteca.buscarLibroPorISBN(isbn);
+        if (libro == null || libro.estaDisponible()) return;
+
+        System.out.print("  Desea reservarlo? (s/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            biblioteca.realizarReserva(isbn, idUsuario);
+        }
+    }
+
+    /**
+     * Saca al usuario de la cola de reservas de un libro.
+     */
+    static void menuCancelarReserva() {
+
+        System.out.println("\n--- CANCELAR RESERVA ---");
+
+        System.out.print("  ISBN del libro: ");
+        String isbn = scanner.nextLine().trim();
+
+        System.out.print("  ID del usuario: ");
+        String idUsuario = scanner.nextLine().trim();
+
+        biblioteca.cancelarReserva(isbn, idUsuario);
+    }
+
+    /**
+     * Avisa en consola que un ejemplar quedo apartado para un usuario.
+     * Lo llama el temporizador de apartados de la biblioteca.
+     */
+    static void avisarApartado(Apartado apartado) {
+        System.out.println("\n  [Aviso] Ejemplar apartado para " + apartado.getUsuario().getNombreCompleto()
+                + " (" + apartado.getUsuario().getNumeroIdentificacion() + "): "
+                + apartado.getLibro().getTitulo()
+                + " | Retirar antes de: " + apartado.getLimite().format(FORMATO_LIMITE));
     }
 
     /**
@@ -244,38 +537,77 @@ public class Main {
     }
 
     /**
-     * Muestra todos los prestamos activos.
+     * Muestra el catalogo por paginas.
      */
-    static void menuPrestamosActivos() {
+    static void menuListarLibros() {
 
-        ArrayList<Prestamo> activos = biblioteca.listarPrestamosActivos();
+        System.out.println("\n===== LIBROS =====");
+        mostrarPorPaginas(cursor -> biblioteca.paginarLibros(cursor, TAMANO_PAGINA, null),
+                consola::escribir, "  No hay libros registrados.");
+    }
 
-        System.out.println("\n===== PRESTAMOS ACTIVOS (" + activos.size() + ") =====");
+    /**
+     * Muestra los usuarios registrados por paginas.
+     */
+    static void menuListarUsuarios() {
 
-        if (activos.isEmpty()) {
-            System.out.println("  No hay prestamos activos.");
-        } else {
-            for (Prestamo p : activos) {
-                p.mostrarInformacion();
-            }
-        }
+        System.out.println("\n===== USUARIOS =====");
+        mostrarPorPaginas(cursor -> biblioteca.paginarUsuarios(cursor, TAMANO_PAGINA, null),
+                consola::escribir, "  No hay usuarios registrados.");
+    }
+
+    /**
+     * Muestra los prestamos activos por paginas.
+     */
+    static void menuPrestamosActivos() {
+
+        Pagina<Prestamo> primera = biblioteca.paginarPrestamosActivos(Pagina.INICIO, TAMANO_PAGINA, null);
+
+        System.out.println("\n===== PRESTAMOS ACTIVOS (" + biblioteca.getContadores().getPrestamosActivos() + ") =====");
+        mostrarPorPaginas(primera, cursor -> biblioteca.paginarPrestamosActivos(cursor, TAMANO_PAGINA, null),
+                consola::escribir, "  No hay prestamos activos.");
     }
 
     /**
-     * Muestra todos los prestamos vencidos.
+     * Muestra los prestamos vencidos por paginas.
      */
     static void menuPrestamosVencidos() {
 
-        ArrayList<Prestamo> vencidos = biblioteca.listarPrestamosVencidos();
+        Pagina<Prestamo> primera = biblioteca.paginarPrestamosVencidos(Pagina.INICIO, TAMANO_PAGINA, null);
 
-        System.out.println("\n===== PRESTAMOS VENCIDOS (" + vencidos.size() + ") =====");
+        System.out.println("\n===== PRESTAMOS VENCIDOS (" + biblioteca.getContadores().getPrestamosVencidos() + ") =====");
+        mostrarPorPaginas(primera, cursor -> biblioteca.paginarPrestamosVencidos(cursor, TAMANO_PAGINA, null),
+                consola::escribir, "  No hay prestamos vencidos.");
+    }
 
-        if (vencidos.isEmpty()) {
-            System.out.println("  No hay prestamos vencidos.");
-        } else {
-            for (Prestamo p : vencidos) {
-                p.mostrarInformacion();
-            }
+    /**
+     * Pide la primera pagina y la muestra junto con las siguientes.
+     */
+    static <T> void mostrarPorPaginas(IntFunction<Pagina<T>> paginas, Consumer<T> mostrar, String mensajeVacio) {
+        mostrarPorPaginas(paginas.apply(Pagina.INICIO), paginas, mostrar, mensajeVacio);
+    }
+
+    /**
+     * Muestra una pagina a la vez y pide confirmacion antes de cargar la siguiente.
+     */
+    static <T> void mostrarPorPaginas(Pagina<T> pagina, IntFunction<Pagina<T>> paginas,
+                                      Consumer<T> mostrar, String mensajeVacio) {
+
+        if (pagina.estaVacia() && !pagina.hayMas()) {
+            System.out.println(mensajeVacio);
+            return;
+        }
+
+        while (true) {
+            pagina.getElementos().forEach(mostrar);
+            consola.flush();
+
+            if (!pagina.hayMas()) return;
+
+            System.out.print("  [Enter] siguiente pagina, [q] volver al menu: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) return;
+
+            pagina = paginas.apply(pagina.getSiguienteCursor());
         }
     }
 }
\ No newline at end of file
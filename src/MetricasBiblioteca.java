@@ -0,0 +1,184 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase MetricasBiblioteca
+ * Latencias y resultados de las operaciones de mostrador de la biblioteca:
+ * por cada operacion, un histograma de latencias (ver HistogramaLatencia)
+ * y cuantas veces termino con cada CodigoResultado.
+ *
+ * La medicion arranca apagada. Apagada, cada operacion solo paga una
+ * lectura volatil y la consulta de si JFR quiere el evento; encendida,
+ * suma dos lecturas del reloj y unos pocos incrementos atomicos.
+ * Los eventos de JFR (ver EventoOperacionBiblioteca) se emiten siempre
+ * que haya una grabacion que los pida, este o no encendida la medicion.
+ */
+public class MetricasBiblioteca {
+
+    // Operaciones medidas, con el nombre del metodo de Biblioteca que las expone
+    enum Operacion {
+
+        REGISTRO_LIBRO("registrarLibro"),
+        BUSQUEDA_LIBRO("buscarLibro"),
+        BUSQUEDA_APROXIMADA("buscarLibroAproximado"),
+        BUSQUEDA_USUARIO("buscarUsuario"),
+        PRESTAMO("realizarPrestamo"),
+        DEVOLUCION("registrarDevolucion"),
+        PRESTAMO_LOTE("prestarLote"),
+        DEVOLUCION_LOTE("devolverLote"),
+        RESERVA("realizarReserva"),
+        SUGERENCIA("sugerirLibros");
+
+        private final String nombre;
+
+        Operacion(String nombre) {
+            this.nombre = nombre;
+        }
+
+        String getNombre() { return nombre; }
+    }
+
+    private static final Operacion[] OPERACIONES = Operacion.values();
+    private static final CodigoResultado[] CODIGOS = CodigoResultado.values();
+
+    // Inicio que retorna iniciar cuando no hay nada que medir
+    static final long SIN_MEDIR = Long.MIN_VALUE;
+
+    // Solo se usa para preguntar si hay una grabacion de JFR que quiera el evento
+    private static final EventoOperacionBiblioteca SONDA_JFR = new EventoOperacionBiblioteca();
+
+    private volatile boolean activas;
+
+    private final HistogramaLatencia[] latencias = new HistogramaLatencia[OPERACIONES.length];
+
+    // Veces que cada operacion termino con cada codigo: [operacion][codigo]
+    private final LongAdder[][] resultados = new LongAdder[OPERACIONES.length][CODIGOS.length];
+
+    public MetricasBiblioteca() {
+        for (int i = 0; i < OPERACIONES.length; i++) {
+            latencias[i] = new HistogramaLatencia();
+            for (int j = 0; j < CODIGOS.length; j++) resultados[i][j] = new LongAdder();
+        }
+    }
+
+    public void activar() { activas = true; }
+    public void desactivar() { activas = false; }
+    public boolean estanActivas() { return activas; }
+
+    /**
+     * Descarta todo lo medido hasta ahora.
+     */
+    public void reiniciar() {
+        for (int i = 0; i < OPERACIONES.length; i++) {
+            latencias[i].reiniciar();
+            for (LongAdder contador : resultados[i]) contador.reset();
+        }
+    }
+
+    // ===================== MEDICION =====================
+
+    /**
+     * Marca el comienzo de una operacion: retorna el instante en nanosegundos,
+     * o SIN_MEDIR si ni las metricas ni JFR la necesitan.
+     */
+    long iniciar() {
+        return activas || SONDA_JFR.isEnabled() ? System.nanoTime() : SIN_MEDIR;
+    }
+
+    /**
+     * Registra el final de una operacion que empezo en inicio (ver iniciar).
+     */
+    void registrar(Operacion operacion, CodigoResultado codigo, long inicio) {
+
+        if (inicio == SIN_MEDIR) return;
+
+        long nanos = System.nanoTime() - inicio;
+
+        if (activas) {
+            latencias[operacion.ordinal()].registrar(nanos);
+            resultados[operacion.ordinal()][codigo.ordinal()].increment();
+        }
+
+        EventoOperacionBiblioteca evento = new EventoOperacionBiblioteca();
+        if (evento.shouldCommit()) {
+            evento.operacion = operacion.getNombre();
+            evento.resultado = codigo.name();
+            evento.latencia = nanos;
+            evento.commit();
+        }
+    }
+
+    // ===================== REPORTE =====================
+
+    /**
+     * Retorna el reporte de metricas como texto: por operacion, el total,
+     * los percentiles en microsegundos y el desglose por resultado.
+     */
+    public String textoMetricas() {
+
+        StringBuilder reporte = new StringBuilder(1024);
+
+        reporte.append("\n=============================== METRICAS ===============================\n");
+        reporte.append("  Medicion: ").append(activas ? "activa" : "inactiva").append('\n');
+        reporte.append(String.format("  %-20s %9s %9s %9s %9s %9s %9s%n",
+                "Operacion", "Total", "prom us", "p50 us", "p99 us", "p999 us", "max us"));
+
+        for (Operacion operacion : OPERACIONES) {
+            HistogramaLatencia h = latencias[operacion.ordinal()];
+
+            reporte.append(String.format("  %-20s %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    operacion.getNombre(), h.getTotal(), h.getPromedio() / 1e3,
+                    h.percentil(0.50) / 1e3, h.percentil(0.99) / 1e3,
+                    h.percentil(0.999) / 1e3, h.getMaximo() / 1e3));
+
+            for (CodigoResultado codigo : CODIGOS) {
+                long veces = resultados[operacion.ordinal()][codigo.ordinal()].sum();
+                if (veces > 0) reporte.append(String.format("      %-26s %9d%n", codigo.name(), veces));
+            }
+        }
+
+        reporte.append("=========================================================================\n\n");
+        return reporte.toString();
+    }
+
+    /**
+     * Escribe las metricas en un archivo CSV: una fila por operacion con
+     * el total, las latencias en nanosegundos y una columna por resultado.
+     */
+    public void volcar(Path archivo) throws IOException {
+
+        try (BufferedWriter salida = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+
+            salida.write("operacion,total,promedio_ns,p50_ns,p90_ns,p99_ns,p999_ns,max_ns");
+            for (CodigoResultado codigo : CODIGOS) salida.write("," + codigo.name().toLowerCase(Locale.ROOT));
+            salida.newLine();
+
+            for (Operacion operacion : OPERACIONES) {
+                HistogramaLatencia h = latencias[operacion.ordinal()];
+
+                salida.write(operacion.getNombre() + "," + h.getTotal() + "," + h.getPromedio()
+                        + "," + h.percentil(0.50) + "," + h.percentil(0.90) + "," + h.percentil(0.99)
+                        + "," + h.percentil(0.999) + "," + h.getMaximo());
+                for (CodigoResultado codigo : CODIGOS) {
+                    salida.write("," + resultados[operacion.ordinal()][codigo.ordinal()].sum());
+                }
+                salida.newLine();
+            }
+        }
+    }
+
+    // ===================== GETTERS =====================
+
+    HistogramaLatencia getLatencias(Operacion operacion) {
+        return latencias[operacion.ordinal()];
+    }
+
+    long getResultados(Operacion operacion, CodigoResultado codigo) {
+        return resultados[operacion.ordinal()][codigo.ordinal()].sum();
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Clase Pagina
+ * Resultado de una consulta paginada: los elementos de la pagina y el cursor
+ * desde el que se pide la siguiente. El orden es estable (orden de registro
+ * o de ID), asi que los elementos agregados despues aparecen al final
+ * y el cursor nunca repite ni salta elementos.
+ */
+public class Pagina<T> {
+
+    // Cursor para pedir la primera pagina
+    public static final int INICIO = 0;
+
+    // Cursor que indica que no hay mas paginas
+    public static final int FIN = -1;
+
+    private final List<T> elementos;
+    private final int siguienteCursor;
+
+    public Pagina(List<T> elementos, int siguienteCursor) {
+        this.elementos = elementos;
+        this.siguienteCursor = siguienteCursor;
+    }
+
+    public List<T> getElementos() { return Collections.unmodifiableList(elementos); }
+    public int getSiguienteCursor() { return siguienteCursor; }
+
+    public boolean hayMas() { return siguienteCursor != FIN; }
+    public boolean estaVacia() { return elementos.isEmpty(); }
+}
@@ -1,77 +1,72 @@
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 
 /**
  * Clase Prestamo
  * Representa la relacion entre un libro y un usuario cuando se realiza un prestamo.
  * Controla fechas, estado y posibles retrasos.
+ * Es una vista liviana sobre una fila de TablaPrestamos: no guarda datos propios,
+ * salvo si el prestamo esta archivado (ver ArchivoPrestamos); entonces guarda
+ * la fila leida del archivo, que ya no cambia.
  */
 public class Prestamo {
 
     // Cantidad de dias permitidos para devolver el libro
-    private static final int DIAS_PRESTAMO = 14;
+    static final int DIAS_PRESTAMO = 14;
 
-    // Identificador unico del prestamo
-    private int idPrestamo;
+    // Tabla donde estan guardados los datos del prestamo
+    private final TablaPrestamos tabla;
 
-    // Asociaciones con Libro y Usuario
-    private Libro libro;
-    private Usuario usuario;
+    // Identificador unico del prestamo (fila de la tabla)
+    private final int idPrestamo;
 
-    // Fechas relacionadas con el prestamo
-    private LocalDate fechaPrestamo;
-    private LocalDate fechaDevolucionEstimada;
-    private LocalDate fechaDevolucionReal;
-
-    // Estado actual del prestamo: ACTIVO, DEVUELTO o VENCIDO
-    private String estadoPrestamo;
+    // Fila leida del archivo, o null si el prestamo esta en la tabla
+    private final TablaPrestamos.Fila archivada;
 
     /**
-     * Constructor que inicializa el prestamo.
-     * Calcula automaticamente la fecha estimada de devolucion.
+     * Constructor de la vista sobre un prestamo ya guardado en la tabla.
+     * Los prestamos se crean desde la biblioteca (ver realizarPrestamo).
      */
-    public Prestamo(int idPrestamo, Libro libro, Usuario usuario) {
+    Prestamo(TablaPrestamos tabla, int idPrestamo) {
+        this(tabla, idPrestamo, null);
+    }
 
+    /**
+     * Constructor de la vista sobre un prestamo archivado.
+     */
+    Prestamo(TablaPrestamos tabla, int idPrestamo, TablaPrestamos.Fila archivada) {
+        this.tabla = tabla;
         this.idPrestamo = idPrestamo;
-        this.libro = libro;
-        this.usuario = usuario;
-
-        this.fechaPrestamo = LocalDate.now();
-        this.fechaDevolucionEstimada = fechaPrestamo.plusDays(DIAS_PRESTAMO);
-
-        this.fechaDevolucionReal = null;
-        this.estadoPrestamo = "ACTIVO";
+        this.archivada = archivada;
     }
 
     /**
-     * Registra la devolucion del libro.
+     * Registra la devolucion en la fecha indicada.
      * Actualiza el estado y notifica al libro y usuario.
+     * Retorna false si el prestamo ya estaba devuelto.
+     * Las devoluciones se hacen desde la biblioteca (ver Biblioteca.devolver).
      */
-    public boolean registrarDevolucion() {
-
-        if (estadoPrestamo.equals("DEVUELTO")) {
-            System.out.println("  [Error] Este prestamo ya fue devuelto.");
-            return false;
-        }
+    boolean registrarDevolucion(LocalDate fecha) {
 
-        this.fechaDevolucionReal = LocalDate.now();
-        this.estadoPrestamo = "DEVUELTO";
+        if (!tabla.cerrar(idPrestamo, (int) fecha.toEpochDay())) return false;
 
         // Actualiza inventario y contador del usuario
-        libro.devolver();
-        usuario.devolverPrestamo();
+        getLibro().devolver();
+        getUsuario().devolverPrestamo(this);
 
         return true;
     }
 
     /**
      * Verifica si el prestamo esta vencido.
+     * Usa el estado y, si la revision diaria aun no lo marco,
+     * el dia en cache del reloj de la biblioteca.
      */
     public boolean estaVencido() {
 
-        if (estadoPrestamo.equals("DEVUELTO")) return false;
+        EstadoPrestamo estado = getEstado();
+        if (estado == EstadoPrestamo.VENCIDO) return true;
 
-        return LocalDate.now().isAfter(fechaDevolucionEstimada);
+        return estado == EstadoPrestamo.ACTIVO && tabla.diaActual() > getDiaVencimiento();
     }
 
     /**
@@ -81,53 +76,80 @@ public class Prestamo {
 
         if (!estaVencido()) return 0;
 
-        return ChronoUnit.DAYS.between(fechaDevolucionEstimada, LocalDate.now());
+        return tabla.diaActual() - getDiaVencimiento();
     }
 
     /**
      * Actualiza el estado a VENCIDO si corresponde.
+     * Quien la llama debe tener tomadas las franjas del libro y del usuario;
+     * desde afuera se usa Biblioteca.actualizarVencimientos.
      */
-    public void actualizarEstado() {
+    void actualizarEstado() {
 
-        if (estadoPrestamo.equals("ACTIVO") && estaVencido()) {
-            estadoPrestamo = "VENCIDO";
+        if (getEstado() == EstadoPrestamo.ACTIVO && estaVencido()) {
+            tabla.marcarVencido(idPrestamo);
         }
     }
 
+    /**
+     * Marca el prestamo como VENCIDO sin volver a consultar la fecha.
+     * Lo usa la biblioteca al procesar en bloque los prestamos cuya fecha ya paso.
+     */
+    void marcarVencido() {
+        tabla.marcarVencido(idPrestamo);
+    }
+
     /**
      * Muestra la informacion completa del prestamo.
      */
     public void mostrarInformacion() {
+        RenderizadorRegistros.mostrar(this);
+    }
+
+    // ===================== GETTERS =====================
 
-        actualizarEstado();
+    public int getIdPrestamo() { return idPrestamo; }
 
-        System.out.println("--------------------------------------------");
-        System.out.println("  ID Prestamo:      " + idPrestamo);
-        System.out.println("  Libro:            " + libro.getTitulo() + " [ISBN: " + libro.getIsbn() + "]");
-        System.out.println("  Usuario:          " + usuario.getNombreCompleto() + " [ID: " + usuario.getNumeroIdentificacion() + "]");
-        System.out.println("  Fecha prestamo:   " + fechaPrestamo);
-        System.out.println("  Fecha estimada:   " + fechaDevolucionEstimada);
-        System.out.println("  Fecha devolucion: " + (fechaDevolucionReal != null ? fechaDevolucionReal : "Pendiente"));
-        System.out.println("  Estado:           " + estadoPrestamo);
+    public Libro getLibro() {
+        return archivada == null ? tabla.getLibro(idPrestamo) : tabla.libroPorOrdinal(archivada.libro);
+    }
 
-        if (estaVencido()) {
-            System.out.println("  Dias de retraso:  " + calcularDiasRetraso());
-        }
+    public Usuario getUsuario() {
+        return archivada == null ? tabla.getUsuario(idPrestamo) : tabla.usuarioPorOrdinal(archivada.usuario);
+    }
 
-        System.out.println("--------------------------------------------");
+    public LocalDate getFechaPrestamo() {
+        return LocalDate.ofEpochDay(archivada == null ? tabla.getDiaPrestamo(idPrestamo) : archivada.diaPrestamo);
     }
 
-    // ===================== GETTERS =====================
+    public LocalDate getFechaDevolucionEstimada() { return LocalDate.ofEpochDay(getDiaVencimiento()); }
 
-    public int getIdPrestamo() { return idPrestamo; }
-    public Libro getLibro() { return libro; }
-    public Usuario getUsuario() { return usuario; }
-    public LocalDate getFechaPrestamo() { return fechaPrestamo; }
-    public LocalDate getFechaDevolucionEstimada() { return fechaDevolucionEstimada; }
-    public LocalDate getFechaDevolucionReal() { return fechaDevolucionReal; }
-
-    public String getEstadoPrestamo() {
-        actualizarEstado();
-        return estadoPrestamo;
+    public LocalDate getFechaDevolucionReal() {
+        int dia = archivada == null ? tabla.getDiaDevolucion(idPrestamo) : archivada.diaDevolucion;
+        return dia == TablaPrestamos.SIN_FECHA ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    public EstadoPrestamo getEstado() {
+        return archivada == null ? tabla.getEstado(idPrestamo) : EstadoPrestamo.DEVUELTO;
     }
-}
\ No newline at end of file
+
+    public String getEstadoPrestamo() { return getEstado().name(); }
+
+    // Fecha estimada de devolucion en dias epoch, sin crear un LocalDate
+    int getDiaVencimiento() {
+        return archivada == null ? tabla.getDiaEstimado(idPrestamo) : archivada.diaEstimado;
+    }
+
+    // Dos vistas son iguales si apuntan a la misma fila de la misma tabla
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) return true;
+        if (!(otro instanceof Prestamo)) return false;
+
+        Prestamo p = (Prestamo) otro;
+        return tabla == p.tabla && idPrestamo == p.idPrestamo;
+    }
+
+    @Override
+    public int hashCode() { return idPrestamo; }
+}
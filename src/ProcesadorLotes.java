@@ -0,0 +1,210 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Clase ProcesadorLotes
+ * Ejecuta contra la biblioteca un archivo de comandos, uno por linea,
+ * sin menus ni preguntas (por ejemplo, los lotes nocturnos de prestamos
+ * y devoluciones). Los campos se separan con '|':
+ *
+ *   libro|isbn|titulo|autor|editorial|anio|categoria|ejemplares
+ *   usuario|id|nombre|correo|telefono|direccion
+ *   prestamo|isbn|idUsuario
+ *   devolucion|idPrestamo
+ *   buscar|texto
+ *   reporte
+ *
+ * Las lineas en blanco y las que empiezan con '#' se ignoran.
+ * Los comandos se aplican en orden con las variantes silenciosas de la
+ * biblioteca; en la salida solo se escriben los rechazos, los resultados
+ * de busquedas y reportes, y al final un resumen (ver ReporteLote).
+ */
+public class ProcesadorLotes {
+
+    static final char SEPARADOR = '|';
+
+    // Comandos reconocidos, con la cantidad de campos que llevan (sin contar el nombre)
+    enum Comando {
+
+        LIBRO("libro", 7),
+        USUARIO("usuario", 5),
+        PRESTAMO("prestamo", 2),
+        DEVOLUCION("devolucion", 1),
+        BUSCAR("buscar", 1),
+        REPORTE("reporte", 0);
+
+        private final String nombre;
+        private final int campos;
+
+        Comando(String nombre, int campos) {
+            this.nombre = nombre;
+            this.campos = campos;
+        }
+
+        String getNombre() { return nombre; }
+
+        static Comando desdeNombre(String nombre) {
+            for (Comando comando : values()) {
+                if (comando.nombre.equalsIgnoreCase(nombre)) return comando;
+            }
+            return null;
+        }
+    }
+
+    private final Biblioteca biblioteca;
+    private final RenderizadorRegistros salida;
+
+    // Campos de la linea actual; se reutiliza en todo el lote
+    private final ArrayList<String> campos = new ArrayList<>(9);
+
+    // Texto de la linea que se esta escribiendo en la salida
+    private final StringBuilder mensaje = new StringBuilder(128);
+
+    public ProcesadorLotes(Biblioteca biblioteca, RenderizadorRegistros salida) {
+        this.biblioteca = biblioteca;
+        this.salida = salida;
+    }
+
+    /**
+     * Ejecuta todos los comandos de la entrada y retorna el resumen.
+     * La salida se vacia al terminar, pero no se cierra.
+     */
+    public ReporteLote procesar(BufferedReader entrada) throws IOException {
+
+        ReporteLote reporte = new ReporteLote();
+        long inicio = System.nanoTime();
+
+        String linea;
+        int numeroLinea = 0;
+
+        while ((linea = entrada.readLine()) != null) {
+            numeroLinea++;
+
+            if (linea.isBlank() || linea.charAt(0) == '#') continue;
+
+            separar(linea);
+            Comando comando = Comando.desdeNombre(campos.get(0));
+
+            if (comando == null) {
+                reporte.lineaInvalida();
+                rechazo(numeroLinea, "Comando desconocido: " + campos.get(0));
+                continue;
+            }
+
+            if (campos.size() - 1 != comando.campos) {
+                reporte.lineaInvalida();
+                rechazo(numeroLinea, "El comando " + comando.getNombre() + " lleva "
+                        + comando.campos + " campos y hay " + (campos.size() - 1));
+                continue;
+            }
+
+            String faltante = camposObligatoriosVacios(comando);
+            if (faltante != null) {
+                reporte.lineaInvalida();
+                rechazo(numeroLinea, faltante);
+                continue;
+            }
+
+            CodigoResultado codigo;
+            try {
+                codigo = ejecutar(comando, numeroLinea);
+            } catch (NumberFormatException e) {
+                reporte.lineaInvalida();
+                rechazo(numeroLinea, "Numero invalido en el comando " + comando.getNombre());
+                continue;
+            }
+
+            reporte.comandoEjecutado(comando, codigo.esExito());
+            if (!codigo.esExito()) rechazo(numeroLinea, codigo.getMensaje(datoDelRechazo(codigo)));
+        }
+
+        reporte.setDuracionNanos(System.nanoTime() - inicio);
+        salida.flush();
+        return reporte;
+    }
+
+    private CodigoResultado ejecutar(Comando comando, int numeroLinea) {
+
+        switch (comando) {
+            case LIBRO:
+                return biblioteca.agregarLibro(new Libro(campos.get(1), campos.get(2), campos.get(3),
+                        campos.get(4), Integer.parseInt(campos.get(5)), campos.get(6),
+                        Integer.parseInt(campos.get(7))));
+
+            case USUARIO:
+                return biblioteca.agregarUsuario(new Usuario(campos.get(1), campos.get(2), campos.get(3),
+                        campos.get(4), campos.get(5)));
+
+            case PRESTAMO:
+                return biblioteca.prestar(campos.get(1), campos.get(2)).getCodigo();
+
+            case DEVOLUCION:
+                return biblioteca.devolver(Integer.parseInt(campos.get(1)));
+
+            case BUSCAR: {
+                ArrayList<Libro> encontrados = biblioteca.buscarLibro(campos.get(1));
+
+                mensaje.setLength(0);
+                mensaje.append("Linea ").append(numeroLinea).append(": buscar \"").append(campos.get(1))
+                        .append("\" -> ").append(encontrados.size()).append(" libro(s)");
+                salida.linea(mensaje);
+                for (Libro libro : encontrados) salida.escribir(libro);
+                return CodigoResultado.OK;
+            }
+
+            case REPORTE:
+                salida.linea(biblioteca.textoReporteGeneral());
+                return CodigoResultado.OK;
+
+            default:
+                throw new IllegalArgumentException("Comando sin implementar: " + comando);
+        }
+    }
+
+    // Las mismas reglas que los menus de registro
+    private String camposObligatoriosVacios(Comando comando) {
+
+        if (comando == Comando.LIBRO && (campos.get(2).isEmpty() || campos.get(3).isEmpty())) {
+            return "Titulo y autor son obligatorios.";
+        }
+        if (comando == Comando.USUARIO && (campos.get(1).isEmpty() || campos.get(2).isEmpty())) {
+            return "ID y nombre son obligatorios.";
+        }
+        return null;
+    }
+
+    // Dato con el que se completa el mensaje de rechazo (ver CodigoResultado)
+    private String datoDelRechazo(CodigoResultado codigo) {
+
+        switch (codigo) {
+            case EMAIL_INVALIDO:        return campos.get(3);
+            case USUARIO_NO_ENCONTRADO: return campos.get(2);
+            default:                    return campos.get(1);
+        }
+    }
+
+    private void rechazo(int numeroLinea, String motivo) {
+
+        mensaje.setLength(0);
+        mensaje.append("Linea ").append(numeroLinea).append(": [Error] ").append(motivo);
+        salida.linea(mensaje);
+    }
+
+    // Separa la linea por SEPARADOR, quitando espacios alrededor de cada campo
+    private void separar(String linea) {
+
+        campos.clear();
+        int inicio = 0;
+
+        while (true) {
+            int fin = linea.indexOf(SEPARADOR, inicio);
+            if (fin < 0) {
+                campos.add(linea.substring(inicio).trim());
+                return;
+            }
+            campos.add(linea.substring(inicio, fin).trim());
+            inicio = fin + 1;
+        }
+    }
+}
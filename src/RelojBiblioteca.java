@@ -0,0 +1,94 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+
+/**
+ * Clase RelojBiblioteca
+ * Fuente de la fecha de trabajo de la biblioteca.
+ * Guarda en cache el dia actual (en dias epoch) para que prestamos,
+ * devoluciones y verificaciones de vencimiento no consulten el reloj
+ * del sistema en cada llamada. El dia solo cambia al llamar a actualizar(),
+ * lo que hace la revision diaria de vencimientos.
+ *
+ * Recibe un java.time.Clock, asi que se puede fijar o adelantar la fecha
+ * para reproducir escenarios de tiempo de forma determinista.
+ */
+public class RelojBiblioteca {
+
+    // Reloj del que se lee la fecha al actualizar
+    private volatile Clock fuente;
+
+    // Dia de trabajo actual en dias epoch y su fecha
+    private volatile LocalDate hoy;
+
+    /**
+     * Constructor que usa el reloj del sistema en la zona horaria por defecto.
+     */
+    public RelojBiblioteca() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor que usa el reloj indicado.
+     */
+    public RelojBiblioteca(Clock fuente) {
+        this.fuente = fuente;
+        this.hoy = LocalDate.now(fuente);
+    }
+
+    /**
+     * Retorna el dia de trabajo actual, sin consultar el reloj.
+     */
+    public LocalDate hoy() {
+        return hoy;
+    }
+
+    /**
+     * Retorna el dia de trabajo actual en dias epoch, sin consultar el reloj.
+     */
+    public long diaActual() {
+        return hoy.toEpochDay();
+    }
+
+    /**
+     * Retorna la fecha y hora actuales segun el reloj. A diferencia de hoy(),
+     * consulta la fuente en cada llamada; con ella se miden los apartados.
+     */
+    public LocalDateTime ahora() {
+        return LocalDateTime.now(fuente);
+    }
+
+    /**
+     * Vuelve a leer la fecha del reloj. Retorna true si cambio el dia.
+     * La fecha nunca retrocede, aunque el reloj del sistema lo haga.
+     */
+    public synchronized boolean actualizar() {
+
+        LocalDate leida = LocalDate.now(fuente);
+        if (!leida.isAfter(hoy)) return false;
+
+        hoy = leida;
+        return true;
+    }
+
+    /**
+     * Reemplaza el reloj del que se lee la fecha y actualiza el dia.
+     * Permite fijar o adelantar el tiempo en pruebas y simulaciones.
+     */
+    public synchronized void setFuente(Clock fuente) {
+        this.fuente = fuente;
+        this.hoy = LocalDate.now(fuente);
+    }
+
+    /**
+     * Tiempo que falta, segun el reloj, para que empiece el dia siguiente.
+     */
+    public Duration hastaProximoDia() {
+
+        ZonedDateTime ahora = ZonedDateTime.now(fuente);
+        ZonedDateTime manana = ahora.toLocalDate().plusDays(1).atStartOfDay(ahora.getZone());
+        return Duration.between(ahora, manana);
+    }
+}
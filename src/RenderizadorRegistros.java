@@ -0,0 +1,470 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Clase RenderizadorRegistros
+ * Escribe libros, usuarios y prestamos en el formato elegido (ver FormatoSalida).
+ *
+ * Cada registro se arma en un StringBuilder reutilizado y se pasa al destino
+ * por bloques grandes, en lugar de hacer un println por campo. Con TABLA y CSV
+ * se escribe un encabezado cada vez que cambia el tipo de registro.
+ * Los errores de escritura se lanzan como UncheckedIOException.
+ */
+public class RenderizadorRegistros implements Closeable, Flushable {
+
+    // Caracteres acumulados antes de pasarlos al destino
+    private static final int LIMITE_BUFFER = 1 << 15;
+
+    // Tamano del buffer del escritor de destino
+    private static final int BUFFER_ESCRITOR = 1 << 16;
+
+    private static final String LINEA_DOBLE = "============================================\n";
+    private static final String LINEA_SIMPLE = "--------------------------------------------\n";
+
+    // Buffer por hilo para mostrarInformacion, que escribe un registro suelto
+    private static final ThreadLocal<StringBuilder> BUFFER_CONSOLA =
+            ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    // Tipos de registro, para saber cuando escribir un encabezado
+    private static final int LIBRO = 1;
+    private static final int USUARIO = 2;
+    private static final int PRESTAMO = 3;
+
+    private final Writer destino;
+    private final FormatoSalida formato;
+    private final boolean cerrarDestino;
+    private final StringBuilder buffer;
+
+    // Tipo del ultimo registro escrito (0 si aun no hay)
+    private int tipoActual;
+
+    /**
+     * Constructor que escribe sobre el destino indicado.
+     * Al cerrar el renderizador tambien se cierra el destino.
+     */
+    public RenderizadorRegistros(Writer destino, FormatoSalida formato) {
+        this(destino, formato, true);
+    }
+
+    private RenderizadorRegistros(Writer destino, FormatoSalida formato, boolean cerrarDestino) {
+        this.destino = destino;
+        this.formato = formato;
+        this.cerrarDestino = cerrarDestino;
+        this.buffer = new StringBuilder(LIMITE_BUFFER + 1024);
+    }
+
+    /**
+     * Renderizador sobre la salida estandar actual. Cerrarlo solo vacia el buffer.
+     */
+    public static RenderizadorRegistros consola(FormatoSalida formato) {
+        Writer escritor = new BufferedWriter(
+                new OutputStreamWriter(System.out, Charset.defaultCharset()), BUFFER_ESCRITOR);
+        return new RenderizadorRegistros(escritor, formato, false);
+    }
+
+    /**
+     * Renderizador sobre un archivo en UTF-8, que se crea o reemplaza.
+     */
+    public static RenderizadorRegistros archivo(Path ruta, FormatoSalida formato) throws IOException {
+        Writer escritor = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(ruta), StandardCharsets.UTF_8), BUFFER_ESCRITOR);
+        return new RenderizadorRegistros(escritor, formato, true);
+    }
+
+    // ===================== REGISTROS =====================
+
+    public void escribir(Libro libro) {
+
+        iniciarRegistro(LIBRO);
+
+        switch (formato) {
+            case CAJA:
+                agregarCaja(buffer, libro);
+                break;
+            case TABLA:
+                columna(libro.getIsbn(), 14);
+                columna(libro.getTitulo(), 32);
+                columna(libro.getAutor(), 22);
+                columna(libro.getCategoria(), 16);
+                buffer.append(libro.getEjemplaresDisponibles()).append('/').append(libro.getEjemplaresTotales());
+                buffer.append('\n');
+                break;
+            case CSV:
+                campoCsv(libro.getIsbn()).append(',');
+                campoCsv(libro.getTitulo()).append(',');
+                campoCsv(libro.getAutor()).append(',');
+                campoCsv(libro.getEditorial()).append(',');
+                buffer.append(libro.getAnioPublicacion()).append(',');
+                campoCsv(libro.getCategoria()).append(',');
+                buffer.append(libro.getEjemplaresDisponibles()).append(',');
+                buffer.append(libro.getEjemplaresTotales()).append('\n');
+                break;
+            case JSON:
+                buffer.append("{\"tipo\":\"libro\"");
+                campoJson("isbn", libro.getIsbn());
+                campoJson("titulo", libro.getTitulo());
+                campoJson("autor", libro.getAutor());
+                campoJson("editorial", libro.getEditorial());
+                campoJson("anioPublicacion", libro.getAnioPublicacion());
+                campoJson("categoria", libro.getCategoria());
+                campoJson("ejemplaresDisponibles", libro.getEjemplaresDisponibles());
+                campoJson("ejemplaresTotales", libro.getEjemplaresTotales());
+                buffer.append("}\n");
+                break;
+        }
+
+        terminarRegistro();
+    }
+
+    public void escribir(Usuario usuario) {
+
+        iniciarRegistro(USUARIO);
+
+        switch (formato) {
+            case CAJA:
+                agregarCaja(buffer, usuario);
+                break;
+            case TABLA:
+                columna(usuario.getNumeroIdentificacion(), 14);
+                columna(usuario.getNombreCompleto(), 30);
+                columna(usuario.getCorreoElectronico(), 30);
+                columna(usuario.getTelefono(), 14);
+                buffer.append(usuario.getPrestamosActivos()).append('\n');
+                break;
+            case CSV:
+                campoCsv(usuario.getNumeroIdentificacion()).append(',');
+                campoCsv(usuario.getNombreCompleto()).append(',');
+                campoCsv(usuario.getCorreoElectronico()).append(',');
+                campoCsv(usuario.getTelefono()).append(',');
+                campoCsv(usuario.getDireccion()).append(',');
+                buffer.append(usuario.getPrestamosActivos()).append('\n');
+                break;
+            case JSON:
+                buffer.append("{\"tipo\":\"usuario\"");
+                campoJson("id", usuario.getNumeroIdentificacion());
+                campoJson("nombre", usuario.getNombreCompleto());
+                campoJson("correo", usuario.getCorreoElectronico());
+                campoJson("telefono", usuario.getTelefono());
+                campoJson("direccion", usuario.getDireccion());
+                campoJson("prestamosActivos", usuario.getPrestamosActivos());
+                buffer.append("}\n");
+                break;
+        }
+
+        terminarRegistro();
+    }
+
+    public void escribir(Prestamo prestamo) {
+
+        iniciarRegistro(PRESTAMO);
+
+        if (formato == FormatoSalida.CAJA) {
+            agregarCaja(buffer, prestamo);
+            terminarRegistro();
+            return;
+        }
+
+        Libro libro = prestamo.getLibro();
+        Usuario usuario = prestamo.getUsuario();
+        LocalDate devolucion = prestamo.getFechaDevolucionReal();
+
+        switch (formato) {
+            case TABLA:
+                columna(String.valueOf(prestamo.getIdPrestamo()), 8);
+                columna(libro.getIsbn(), 14);
+                columna(libro.getTitulo(), 28);
+                columna(usuario.getNumeroIdentificacion(), 14);
+                columna(prestamo.getFechaPrestamo().toString(), 12);
+                columna(prestamo.getFechaDevolucionEstimada().toString(), 12);
+                columna(devolucion != null ? devolucion.toString() : "-", 12);
+                buffer.append(prestamo.getEstado()).append('\n');
+                break;
+            case CSV:
+                buffer.append(prestamo.getIdPrestamo()).append(',');
+                campoCsv(libro.getIsbn()).append(',');
+                campoCsv(usuario.getNumeroIdentificacion()).append(',');
+                buffer.append(prestamo.getFechaPrestamo()).append(',');
+                buffer.append(prestamo.getFechaDevolucionEstimada()).append(',');
+                if (devolucion != null) buffer.append(devolucion);
+                buffer.append(',').append(prestamo.getEstado()).append(',');
+                buffer.append(prestamo.calcularDiasRetraso()).append('\n');
+                break;
+            case JSON:
+                buffer.append("{\"tipo\":\"prestamo\"");
+                campoJson("id", prestamo.getIdPrestamo());
+                campoJson("isbn", libro.getIsbn());
+                campoJson("idUsuario", usuario.getNumeroIdentificacion());
+                campoJson("fechaPrestamo", prestamo.getFechaPrestamo().toString());
+                campoJson("fechaEstimada", prestamo.getFechaDevolucionEstimada().toString());
+                campoJson("fechaDevolucion", devolucion != null ? devolucion.toString() : null);
+                campoJson("estado", prestamo.getEstado().name());
+                campoJson("diasRetraso", prestamo.calcularDiasRetraso());
+                buffer.append("}\n");
+                break;
+            default:
+                break;
+        }
+
+        terminarRegistro();
+    }
+
+    /**
+     * Escribe una linea de texto libre (mensajes, resumenes). El siguiente
+     * registro vuelve a llevar encabezado en los formatos TABLA y CSV.
+     */
+    public void linea(CharSequence texto) {
+
+        tipoActual = 0;
+        buffer.append(texto).append('\n');
+        terminarRegistro();
+    }
+
+    /**
+     * Pasa al destino lo acumulado y lo vacia.
+     */
+    @Override
+    public void flush() {
+        try {
+            volcar();
+            destino.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir la salida", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        if (!cerrarDestino) return;
+
+        try {
+            destino.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo cerrar la salida", e);
+        }
+    }
+
+    // ===================== REGISTROS SUELTOS EN CONSOLA =====================
+
+    /**
+     * Muestra un libro en consola con el formato de caja, en una sola escritura.
+     */
+    public static void mostrar(Libro libro) {
+        StringBuilder sb = bufferConsola();
+        agregarCaja(sb, libro);
+        System.out.print(sb);
+    }
+
+    public static void mostrar(Usuario usuario) {
+        StringBuilder sb = bufferConsola();
+        agregarCaja(sb, usuario);
+        System.out.print(sb);
+    }
+
+    public static void mostrar(Prestamo prestamo) {
+        StringBuilder sb = bufferConsola();
+        agregarCaja(sb, prestamo);
+        System.out.print(sb);
+    }
+
+    private static StringBuilder bufferConsola() {
+        StringBuilder sb = BUFFER_CONSOLA.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    // ===================== FORMATO DE CAJA =====================
+
+    private static void agregarCaja(StringBuilder sb, Libro libro) {
+        sb.append(LINEA_DOBLE);
+        sb.append("  ISBN:             ").append(libro.getIsbn()).append('\n');
+        sb.append("  Titulo:           ").append(libro.getTitulo()).append('\n');
+        sb.append("  Autor:            ").append(libro.getAutor()).append('\n');
+        sb.append("  Editorial:        ").append(libro.getEditorial()).append('\n');
+        sb.append("  Anio publicacion: ").append(libro.getAnioPublicacion()).append('\n');
+        sb.append("  Categoria:        ").append(libro.getCategoria()).append('\n');
+        sb.append("  Ejemplares:       ").append(libro.getEjemplaresDisponibles())
+                .append(" / ").append(libro.getEjemplaresTotales()).append('\n');
+        sb.append("  Disponibilidad:   ").append(libro.estaDisponible() ? "DISPONIBLE" : "NO DISPONIBLE").append('\n');
+        sb.append(LINEA_DOBLE);
+    }
+
+    private static void agregarCaja(StringBuilder sb, Usuario usuario) {
+        sb.append(LINEA_DOBLE);
+        sb.append("  ID:               ").append(usuario.getNumeroIdentificacion()).append('\n');
+        sb.append("  Nombre:           ").append(usuario.getNombreCompleto()).append('\n');
+        sb.append("  Correo:           ").append(usuario.getCorreoElectronico()).append('\n');
+        sb.append("  Telefono:         ").append(usuario.getTelefono()).append('\n');
+        sb.append("  Direccion:        ").append(usuario.getDireccion()).append('\n');
+        sb.append("  Prestamos activos:").append(usuario.getPrestamosActivos())
+                .append(" / ").append(Usuario.LIMITE_PRESTAMOS).append('\n');
+        sb.append("  Puede prestar:    ").append(usuario.puedePrestar() ? "SI" : "NO (limite alcanzado)").append('\n');
+        sb.append(LINEA_DOBLE);
+    }
+
+    private static void agregarCaja(StringBuilder sb, Prestamo prestamo) {
+
+        Libro libro = prestamo.getLibro();
+        Usuario usuario = prestamo.getUsuario();
+        LocalDate devolucion = prestamo.getFechaDevolucionReal();
+
+        sb.append(LINEA_SIMPLE);
+        sb.append("  ID Prestamo:      ").append(prestamo.getIdPrestamo()).append('\n');
+        sb.append("  Libro:            ").append(libro.getTitulo()).append(" [ISBN: ").append(libro.getIsbn()).append("]\n");
+        sb.append("  Usuario:          ").append(usuario.getNombreCompleto())
+                .append(" [ID: ").append(usuario.getNumeroIdentificacion()).append("]\n");
+        sb.append("  Fecha prestamo:   ").append(prestamo.getFechaPrestamo()).append('\n');
+        sb.append("  Fecha estimada:   ").append(prestamo.getFechaDevolucionEstimada()).append('\n');
+        sb.append("  Fecha devolucion: ").append(devolucion != null ? devolucion.toString() : "Pendiente").append('\n');
+        sb.append("  Estado:           ").append(prestamo.getEstado()).append('\n');
+
+        if (prestamo.estaVencido()) {
+            sb.append("  Dias de retraso:  ").append(prestamo.calcularDiasRetraso()).append('\n');
+        }
+
+        sb.append(LINEA_SIMPLE);
+    }
+
+    // ===================== AUXILIARES =====================
+
+    private void iniciarRegistro(int tipo) {
+
+        if (tipo == tipoActual) return;
+        tipoActual = tipo;
+
+        if (formato == FormatoSalida.TABLA) {
+            int inicio = buffer.length();
+            switch (tipo) {
+                case LIBRO:
+                    columna("ISBN", 14); columna("TITULO", 32); columna("AUTOR", 22);
+                    columna("CATEGORIA", 16); buffer.append("DISP\n");
+                    break;
+                case USUARIO:
+                    columna("ID", 14); columna("NOMBRE", 30); columna("CORREO", 30);
+                    columna("TELEFONO", 14); buffer.append("PREST\n");
+                    break;
+                default:
+                    columna("ID", 8); columna("ISBN", 14); columna("TITULO", 28); columna("USUARIO", 14);
+                    columna("PRESTAMO", 12); columna("ESTIMADA", 12); columna("DEVOLUCION", 12);
+                    buffer.append("ESTADO\n");
+                    break;
+            }
+            int ancho = buffer.length() - inicio - 1;
+            for (int i = 0; i < ancho; i++) buffer.append('-');
+            buffer.append('\n');
+        } else if (formato == FormatoSalida.CSV) {
+            switch (tipo) {
+                case LIBRO:
+                    buffer.append("isbn,titulo,autor,editorial,anio,categoria,disponibles,totales\n");
+                    break;
+                case USUARIO:
+                    buffer.append("id,nombre,correo,telefono,direccion,prestamos_activos\n");
+                    break;
+                default:
+                    buffer.append("id,isbn,id_usuario,fecha_prestamo,fecha_estimada,fecha_devolucion,estado,dias_retraso\n");
+                    break;
+            }
+        }
+    }
+
+    private void terminarRegistro() {
+        if (buffer.length() < LIMITE_BUFFER) return;
+
+        try {
+            volcar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir la salida", e);
+        }
+    }
+
+    private void volcar() throws IOException {
+        destino.append(buffer);
+        buffer.setLength(0);
+    }
+
+    // Texto alineado a la izquierda en un ancho fijo; si no cabe se recorta
+    private void columna(String texto, int ancho) {
+
+        String valor = texto == null ? "" : texto;
+
+        if (valor.length() >= ancho) {
+            buffer.append(valor, 0, ancho - 2).append("~ ");
+            return;
+        }
+
+        buffer.append(valor);
+        for (int i = valor.length(); i < ancho; i++) buffer.append(' ');
+    }
+
+    // Campo CSV, entre comillas solo si contiene separadores, comillas o saltos de linea
+    private StringBuilder campoCsv(String texto) {
+
+        if (texto == null) return buffer;
+
+        boolean requiereComillas = false;
+        for (int i = 0; i < texto.length() && !requiereComillas; i++) {
+            char c = texto.charAt(i);
+            requiereComillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!requiereComillas) return buffer.append(texto);
+
+        buffer.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"') buffer.append('"');
+            buffer.append(c);
+        }
+        return buffer.append('"');
+    }
+
+    private void campoJson(String nombre, long valor) {
+        buffer.append(",\"").append(nombre).append("\":").append(valor);
+    }
+
+    private void campoJson(String nombre, String valor) {
+
+        buffer.append(",\"").append(nombre).append("\":");
+        agregarTextoJson(buffer, valor);
+    }
+
+    /**
+     * Agrega el texto como cadena JSON entre comillas y escapada, o null.
+     */
+    static void agregarTextoJson(StringBuilder destino, String valor) {
+
+        if (valor == null) {
+            destino.append("null");
+            return;
+        }
+
+        destino.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"':  destino.append("\\\""); break;
+                case '\\': destino.append("\\\\"); break;
+                case '\n': destino.append("\\n"); break;
+                case '\r': destino.append("\\r"); break;
+                case '\t': destino.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        destino.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        destino.append(c);
+                    }
+            }
+        }
+        destino.append('"');
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Clase ReporteCarga
+ * Resultado de una corrida del conductor de carga: por cada tipo de
+ * operacion, cuantas se ejecutaron, cuantas rechazo la biblioteca
+ * (sin ejemplares, limite de prestamos, nada que devolver...) y la
+ * distribucion de sus latencias.
+ *
+ * Cada hilo llena su propio reporte y al final se combinan, asi que
+ * registrar no comparte memoria entre hilos.
+ */
+public class ReporteCarga {
+
+    private static final TipoOperacion[] TIPOS = TipoOperacion.values();
+
+    private final HistogramaLatencia[] latencias = new HistogramaLatencia[TIPOS.length];
+    private final long[] rechazadas = new long[TIPOS.length];
+
+    // Duracion real de la corrida en nanosegundos
+    private long duracionNanos;
+
+    public ReporteCarga() {
+        for (int i = 0; i < TIPOS.length; i++) latencias[i] = new HistogramaLatencia();
+    }
+
+    void registrar(TipoOperacion tipo, long nanos, boolean exito) {
+        latencias[tipo.ordinal()].registrar(nanos);
+        if (!exito) rechazadas[tipo.ordinal()]++;
+    }
+
+    void combinar(ReporteCarga otro) {
+        for (int i = 0; i < TIPOS.length; i++) {
+            latencias[i].combinar(otro.latencias[i]);
+            rechazadas[i] += otro.rechazadas[i];
+        }
+    }
+
+    void setDuracionNanos(long duracionNanos) {
+        this.duracionNanos = duracionNanos;
+    }
+
+    /**
+     * Muestra en consola, por operacion y en total, el rendimiento
+     * y los percentiles p50, p99 y p999 en microsegundos.
+     */
+    public void mostrarResumen() {
+
+        StringBuilder resumen = new StringBuilder();
+        double segundos = duracionNanos / 1e9;
+
+        resumen.append("\n=================================== RESUMEN DE CARGA ===================================\n");
+        resumen.append(String.format("  Duracion: %.1f s%n", segundos));
+        resumen.append(String.format("  %-11s %10s %10s %10s %10s %10s %10s %10s%n",
+                "Operacion", "Total", "Ops/s", "Rechazos", "p50 us", "p99 us", "p999 us", "max us"));
+
+        HistogramaLatencia global = new HistogramaLatencia();
+        long rechazosTotales = 0;
+
+        for (TipoOperacion tipo : TIPOS) {
+            HistogramaLatencia h = latencias[tipo.ordinal()];
+            if (h.getTotal() == 0) continue;
+
+            agregarFila(resumen, tipo.getEtiqueta(), h, rechazadas[tipo.ordinal()], segundos);
+            global.combinar(h);
+            rechazosTotales += rechazadas[tipo.ordinal()];
+        }
+
+        agregarFila(resumen, "TOTAL", global, rechazosTotales, segundos);
+        resumen.append("=========================================================================================\n");
+        System.out.print(resumen);
+    }
+
+    private static void agregarFila(StringBuilder resumen, String nombre, HistogramaLatencia h,
+                                    long rechazos, double segundos) {
+
+        resumen.append(String.format("  %-11s %10d %10.0f %10d %10.1f %10.1f %10.1f %10.1f%n",
+                nombre, h.getTotal(), segundos > 0 ? h.getTotal() / segundos : 0, rechazos,
+                h.percentil(0.50) / 1e3, h.percentil(0.99) / 1e3,
+                h.percentil(0.999) / 1e3, h.getMaximo() / 1e3));
+    }
+
+    // ===================== GETTERS =====================
+
+    public long getTotal(TipoOperacion tipo) { return latencias[tipo.ordinal()].getTotal(); }
+    public long getRechazadas(TipoOperacion tipo) { return rechazadas[tipo.ordinal()]; }
+    public HistogramaLatencia getLatencias(TipoOperacion tipo) { return latencias[tipo.ordinal()]; }
+    public long getDuracionNanos() { return duracionNanos; }
+
+    /**
+     * Operaciones por segundo, de todos los tipos.
+     */
+    public double getRendimiento() {
+
+        long total = 0;
+        for (HistogramaLatencia h : latencias) total += h.getTotal();
+        return duracionNanos == 0 ? 0 : total * 1e9 / duracionNanos;
+    }
+}
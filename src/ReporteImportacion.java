@@ -0,0 +1,65 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Clase ReporteImportacion
+ * Resumen de una importacion masiva de libros:
+ * filas leidas, aceptadas y rechazadas con el motivo de cada rechazo.
+ */
+public class ReporteImportacion {
+
+    // Rechazos que se muestran en consola; el resto queda disponible en getRechazos()
+    private static final int RECHAZOS_EN_RESUMEN = 20;
+
+    private int filasLeidas;
+    private int filasAceptadas;
+    private ArrayList<String> rechazos;
+
+    public ReporteImportacion() {
+        this.rechazos = new ArrayList<>();
+    }
+
+    void filaLeida() {
+        filasLeidas++;
+    }
+
+    void filaAceptada() {
+        filasAceptadas++;
+    }
+
+    void filaRechazada(int numeroLinea, String motivo) {
+        rechazos.add("Linea " + numeroLinea + ": " + motivo);
+    }
+
+    /**
+     * Muestra el resumen de la importacion en consola.
+     */
+    public void mostrarResumen() {
+
+        StringBuilder resumen = new StringBuilder();
+
+        resumen.append("\n========== RESUMEN DE IMPORTACION ==========\n");
+        resumen.append("  Filas leidas:     ").append(filasLeidas).append('\n');
+        resumen.append("  Libros aceptados: ").append(filasAceptadas).append('\n');
+        resumen.append("  Filas rechazadas: ").append(rechazos.size()).append('\n');
+
+        int mostrar = Math.min(rechazos.size(), RECHAZOS_EN_RESUMEN);
+        for (int i = 0; i < mostrar; i++) {
+            resumen.append("    ").append(rechazos.get(i)).append('\n');
+        }
+        if (rechazos.size() > mostrar) {
+            resumen.append("    ... y ").append(rechazos.size() - mostrar).append(" rechazos mas\n");
+        }
+
+        resumen.append("=============================================\n");
+        System.out.print(resumen);
+    }
+
+    // ===================== GETTERS =====================
+
+    public int getFilasLeidas() { return filasLeidas; }
+    public int getFilasAceptadas() { return filasAceptadas; }
+    public int getFilasRechazadas() { return rechazos.size(); }
+    public List<String> getRechazos() { return Collections.unmodifiableList(rechazos); }
+}
@@ -0,0 +1,79 @@
+/**
+ * Clase ReporteLote
+ * Resumen de un lote de comandos: cuantos se aplicaron y cuantos rechazo
+ * la biblioteca por cada comando, las lineas invalidas y la velocidad.
+ */
+public class ReporteLote {
+
+    private static final ProcesadorLotes.Comando[] COMANDOS = ProcesadorLotes.Comando.values();
+
+    private final long[] aceptados = new long[COMANDOS.length];
+    private final long[] rechazados = new long[COMANDOS.length];
+    private long lineasInvalidas;
+    private long duracionNanos;
+
+    void comandoEjecutado(ProcesadorLotes.Comando comando, boolean exito) {
+        if (exito) aceptados[comando.ordinal()]++;
+        else rechazados[comando.ordinal()]++;
+    }
+
+    void lineaInvalida() {
+        lineasInvalidas++;
+    }
+
+    void setDuracionNanos(long duracionNanos) {
+        this.duracionNanos = duracionNanos;
+    }
+
+    /**
+     * Muestra el resumen del lote en consola.
+     */
+    public void mostrarResumen() {
+
+        StringBuilder resumen = new StringBuilder();
+
+        resumen.append("\n============ RESUMEN DEL LOTE ============\n");
+        resumen.append(String.format("  %-12s %12s %12s%n", "Comando", "Aplicados", "Rechazados"));
+
+        for (ProcesadorLotes.Comando comando : COMANDOS) {
+            int i = comando.ordinal();
+            if (aceptados[i] + rechazados[i] == 0) continue;
+            resumen.append(String.format("  %-12s %12d %12d%n", comando.getNombre(), aceptados[i], rechazados[i]));
+        }
+
+        resumen.append("  Lineas invalidas: ").append(lineasInvalidas).append('\n');
+        resumen.append(String.format("  Tiempo: %.3f s (%.0f comandos/s)%n",
+                duracionNanos / 1e9, getComandosPorSegundo()));
+        resumen.append("===========================================\n");
+        System.out.print(resumen);
+    }
+
+    // ===================== GETTERS =====================
+
+    public long getAceptados() {
+        long total = 0;
+        for (long n : aceptados) total += n;
+        return total;
+    }
+
+    public long getRechazados() {
+        long total = 0;
+        for (long n : rechazados) total += n;
+        return total;
+    }
+
+    public long getLineasInvalidas() { return lineasInvalidas; }
+    public long getDuracionNanos() { return duracionNanos; }
+
+    public double getComandosPorSegundo() {
+        long total = getAceptados() + getRechazados();
+        return duracionNanos == 0 ? 0 : total * 1e9 / duracionNanos;
+    }
+
+    /**
+     * True si todos los comandos se aplicaron y no hubo lineas invalidas.
+     */
+    public boolean sinErrores() {
+        return getRechazados() == 0 && lineasInvalidas == 0;
+    }
+}
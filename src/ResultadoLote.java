@@ -0,0 +1,73 @@
+import java.util.Arrays;
+
+/**
+ * Clase ResultadoLote
+ * Resultado de Biblioteca.prestarLote y devolverLote: un codigo por elemento,
+ * en el orden del lote, y si el lote se aplico, el prestamo de cada elemento
+ * (el creado o el devuelto). Un lote se aplica entero o no se aplica: si
+ * algun elemento se rechaza, los que estaban bien quedan con LOTE_RECHAZADO.
+ */
+public final class ResultadoLote {
+
+    private final CodigoResultado[] codigos;
+    private final Prestamo[] prestamos;
+
+    // OK si se aplico; si no, el codigo del primer elemento rechazado
+    private final CodigoResultado codigo;
+
+    private ResultadoLote(CodigoResultado[] codigos, Prestamo[] prestamos, CodigoResultado codigo) {
+        this.codigos = codigos;
+        this.prestamos = prestamos;
+        this.codigo = codigo;
+    }
+
+    static ResultadoLote aplicado(Prestamo[] prestamos) {
+
+        CodigoResultado[] codigos = new CodigoResultado[prestamos.length];
+        Arrays.fill(codigos, CodigoResultado.OK);
+        return new ResultadoLote(codigos, prestamos, CodigoResultado.OK);
+    }
+
+    /**
+     * Lote rechazado con los codigos de cada elemento, de los que al menos
+     * uno no es OK. Los que eran OK pasan a LOTE_RECHAZADO.
+     */
+    static ResultadoLote rechazado(CodigoResultado[] codigos) {
+
+        CodigoResultado primero = null;
+
+        for (int i = 0; i < codigos.length; i++) {
+            if (codigos[i].esExito()) codigos[i] = CodigoResultado.LOTE_RECHAZADO;
+            else if (primero == null) primero = codigos[i];
+        }
+        return new ResultadoLote(codigos, null, primero);
+    }
+
+    /**
+     * Lote rechazado entero por un mismo motivo (por ejemplo, el usuario no existe).
+     */
+    static ResultadoLote rechazado(CodigoResultado codigo, int cantidad) {
+
+        CodigoResultado[] codigos = new CodigoResultado[cantidad];
+        Arrays.fill(codigos, codigo);
+        return new ResultadoLote(codigos, null, codigo);
+    }
+
+    // ===================== GETTERS =====================
+
+    public int getCantidad() { return codigos.length; }
+
+    public CodigoResultado getCodigo(int elemento) { return codigos[elemento]; }
+
+    /**
+     * Prestamo del elemento, o null si el lote fue rechazado.
+     */
+    public Prestamo getPrestamo(int elemento) { return prestamos == null ? null : prestamos[elemento]; }
+
+    /**
+     * OK si el lote se aplico; si no, el motivo del primer elemento rechazado.
+     */
+    public CodigoResultado getCodigo() { return codigo; }
+
+    public boolean esExito() { return codigo.esExito(); }
+}
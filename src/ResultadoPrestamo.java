@@ -0,0 +1,40 @@
+/**
+ * Clase ResultadoPrestamo
+ * Resultado de Biblioteca.prestar: el codigo y, si se aprobo, el prestamo creado.
+ */
+public final class ResultadoPrestamo {
+
+    // Los rechazos no llevan prestamo: se comparte una instancia por codigo
+    private static final ResultadoPrestamo[] RECHAZOS = new ResultadoPrestamo[CodigoResultado.values().length];
+
+    static {
+        for (CodigoResultado codigo : CodigoResultado.values()) {
+            RECHAZOS[codigo.ordinal()] = new ResultadoPrestamo(codigo, null);
+        }
+    }
+
+    private final CodigoResultado codigo;
+    private final Prestamo prestamo;
+
+    private ResultadoPrestamo(CodigoResultado codigo, Prestamo prestamo) {
+        this.codigo = codigo;
+        this.prestamo = prestamo;
+    }
+
+    static ResultadoPrestamo aprobado(Prestamo prestamo) {
+        return new ResultadoPrestamo(CodigoResultado.OK, prestamo);
+    }
+
+    static ResultadoPrestamo rechazado(CodigoResultado codigo) {
+        return RECHAZOS[codigo.ordinal()];
+    }
+
+    public CodigoResultado getCodigo() { return codigo; }
+
+    /**
+     * Prestamo creado, o null si fue rechazado.
+     */
+    public Prestamo getPrestamo() { return prestamo; }
+
+    public boolean esExito() { return codigo.esExito(); }
+}
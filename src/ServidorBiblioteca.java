@@ -0,0 +1,686 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Clase ServidorBiblioteca
+ * API HTTP/JSON sobre una Biblioteca, con el servidor embebido del JDK
+ * (com.sun.net.httpserver). Permite que el mostrador (Main) y el catalogo
+ * web trabajen sobre la misma instancia.
+ *
+ * Las solicitudes se atienden en un pool acotado de hilos con una cola
+ * acotada: con miles de clientes las que no tienen hilo esperan en la cola,
+ * y si tambien la cola esta llena se responden 503 de inmediato, sin tocar
+ * la biblioteca, en lugar de crear hilos sin limite.
+ *
+ * Rutas (todas responden JSON):
+ *   GET  /api/libros?q=texto&limite=N          busqueda por titulo, autor o categoria
+ *        (con &aproximada=true tolera errores de tipeo y ordena por parecido)
+ *   GET  /api/libros/{isbn}                     libro por ISBN
+ *   GET  /api/sugerencias?q=prefijo&limite=N    titulos y autores que empiezan con el prefijo
+ *   GET  /api/usuarios/{id}                     usuario por ID o nombre
+ *   POST /api/prestamos                         cuerpo {"isbn": "...", "usuario": "..."}
+ *   POST /api/prestamos/{id}/devolucion         registra la devolucion
+ *   POST /api/prestamos/lote                    cuerpo {"usuario": "...", "isbns": ["...", ...]}
+ *   POST /api/prestamos/lote/devolucion         cuerpo {"prestamos": [id, ...]}
+ *   POST /api/reservas                          cuerpo {"isbn": "...", "usuario": "..."}
+ *   GET  /api/prestamos/activos?cursor=C&limite=N
+ *   GET  /api/prestamos/vencidos?cursor=C&limite=N
+ *
+ * Los rechazos responden {"error": CODIGO, "mensaje": "..."} con 404 si
+ * falta el libro, el usuario o el prestamo, 400 si los datos son invalidos
+ * y 409 si la operacion no se puede hacer en el estado actual. Con el
+ * servidor saturado responden 503 con {"error": "SERVIDOR_OCUPADO", ...}.
+ * Los lotes se aplican enteros o no se aplican, y responden el resultado
+ * de cada elemento; si se rechazan, con el estado del primer rechazo.
+ */
+public class ServidorBiblioteca implements Closeable {
+
+    public static final int PUERTO_PREDETERMINADO = 8080;
+
+    // Hilos que atienden solicitudes y solicitudes que pueden esperar uno libre
+    public static final int HILOS_SOLICITUDES = 32;
+    public static final int COLA_SOLICITUDES = 4096;
+
+    // Conexiones pendientes de aceptar; el sistema puede limitarlo (somaxconn)
+    private static final int COLA_CONEXIONES = 8192;
+
+    // Resultados por defecto y maximos de busquedas y listados
+    private static final int LIMITE_PREDETERMINADO = 50;
+    private static final int LIMITE_MAXIMO = 1000;
+
+    // Tamano maximo aceptado para el cuerpo de una solicitud
+    private static final int MAXIMO_CUERPO = 8192;
+
+    // Sugerencias por defecto y maximas del autocompletado
+    private static final int SUGERENCIAS_PREDETERMINADAS = 10;
+    private static final int SUGERENCIAS_MAXIMAS = 50;
+
+    // Elementos maximos de un lote de prestamos o devoluciones
+    private static final int MAXIMO_LOTE = 100;
+
+    private static final Pattern RUTA_LIBRO = Pattern.compile("/api/libros/([^/]+)");
+    private static final Pattern RUTA_USUARIO = Pattern.compile("/api/usuarios/([^/]+)");
+    private static final Pattern RUTA_DEVOLUCION = Pattern.compile("/api/prestamos/(\\d+)/devolucion");
+
+    // Campo de texto de un objeto JSON plano: "nombre" : "valor"
+    private static final Pattern CAMPO_JSON = Pattern.compile("\"(\\w+)\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    // Campo arreglo de un objeto JSON plano: "nombre" : [ ... ], y sus elementos
+    private static final Pattern ARREGLO_JSON = Pattern.compile("\"(\\w+)\"\\s*:\\s*\\[([^\\]]*)\\]");
+    private static final Pattern ELEMENTO_JSON = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"|(-?\\d+)");
+
+    static {
+        // Sin esto el servidor del JDK deja activo el algoritmo de Nagle y, junto con el ACK
+        // diferido del cliente, cada respuesta puede tardar ~40 ms extra. Se lee al crear
+        // el primer servidor, asi que se respeta si ya viene definido con -D.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Biblioteca biblioteca;
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor;
+
+    // Hilos que solo responden 503 a las solicitudes que no entran al pool
+    private final ExecutorService ocupado;
+
+    // Lugares en el pool (en curso o en cola); se toma sin esperar al recibir cada solicitud
+    private final Semaphore admision = new Semaphore(HILOS_SOLICITUDES + COLA_SOLICITUDES);
+
+    // Marca la solicitud rechazada mientras se le responde 503
+    private static final ThreadLocal<Boolean> RECHAZADA = new ThreadLocal<>();
+
+    /**
+     * Crea el servidor en el puerto indicado (0 para uno libre), sin iniciarlo.
+     */
+    public ServidorBiblioteca(Biblioteca biblioteca, int puerto) throws IOException {
+
+        this.biblioteca = biblioteca;
+        this.servidor = HttpServer.create(new InetSocketAddress(puerto), COLA_CONEXIONES);
+        this.ejecutor = pool("http-", HILOS_SOLICITUDES);
+        this.ocupado = pool("http-ocupado-", 2);
+
+        servidor.createContext("/api/", this::atender);
+        servidor.setExecutor(this::despachar);
+    }
+
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * Deja de aceptar solicitudes y espera hasta un segundo a que terminen las que estan en curso.
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        ejecutor.shutdown();
+        ocupado.shutdown();
+        try {
+            ejecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    // ===================== HILOS =====================
+
+    // Lo llama el hilo despachador del servidor del JDK, que atiende todas las
+    // conexiones: no puede bloquearse ni escribir en un socket. Si quedan lugares
+    // la solicitud va al pool; si no, a los hilos que solo le responden 503
+    private void despachar(Runnable tarea) {
+
+        if (admision.tryAcquire()) {
+            ejecutor.execute(() -> {
+                try {
+                    tarea.run();
+                } finally {
+                    admision.release();
+                }
+            });
+            return;
+        }
+
+        ocupado.execute(() -> {
+            RECHAZADA.set(Boolean.TRUE);
+            try {
+                tarea.run();
+            } finally {
+                RECHAZADA.remove();
+            }
+        });
+    }
+
+    // Pool fijo de hilos que se cierran tras un minuto sin trabajo. La cola no
+    // tiene limite propio: lo que entra al pool principal ya lo acota admision
+    private static ThreadPoolExecutor pool(String prefijo, int hilos) {
+
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory fabrica = tarea -> {
+            Thread hilo = new Thread(tarea, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(hilos, hilos,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), fabrica);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // ===================== RUTAS =====================
+
+    private void atender(HttpExchange intercambio) throws IOException {
+
+        if (RECHAZADA.get() != null) {
+            try {
+                intercambio.getResponseHeaders().set("Retry-After", "1");
+                responder(intercambio, 503, errorJson("SERVIDOR_OCUPADO",
+                        "El servidor esta ocupado, intente de nuevo en unos segundos"));
+            } finally {
+                intercambio.close();
+            }
+            return;
+        }
+
+        try {
+            String metodo = intercambio.getRequestMethod();
+            String ruta = intercambio.getRequestURI().getPath();
+            HashMap<String, String> parametros = leerParametros(intercambio.getRequestURI().getRawQuery());
+            Matcher m;
+
+            if (ruta.equals("/api/libros")) {
+                if (!exigirMetodo(intercambio, metodo, "GET")) return;
+                buscarLibros(intercambio, parametros);
+
+            } else if ((m = RUTA_LIBRO.matcher(ruta)).matches()) {
+                if (!exigirMetodo(intercambio, metodo, "GET")) return;
+                Libro libro = biblioteca.buscarLibroPorISBN(m.group(1));
+                if (libro == null) error(intercambio, CodigoResultado.LIBRO_NO_ENCONTRADO, m.group(1));
+                else responder(intercambio, 200, registroJson(libro, RenderizadorRegistros::escribir));
+
+            } else if (ruta.equals("/api/sugerencias")) {
+                if (!exigirMetodo(intercambio, metodo, "GET")) return;
+                sugerir(intercambio, parametros);
+
+            } else if ((m = RUTA_USUARIO.matcher(ruta)).matches()) {
+                if (!exigirMetodo(intercambio, metodo, "GET")) return;
+                Usuario usuario = biblioteca.buscarUsuario(m.group(1));
+                if (usuario == null) error(intercambio, CodigoResultado.USUARIO_NO_ENCONTRADO, m.group(1));
+                else responder(intercambio, 200, registroJson(usuario, RenderizadorRegistros::escribir));
+
+            } else if (ruta.equals("/api/prestamos")) {
+                if (!exigirMetodo(intercambio, metodo, "POST")) return;
+                prestar(intercambio);
+
+            } else if (ruta.equals("/api/prestamos/lote")) {
+                if (!exigirMetodo(intercambio, metodo, "POST")) return;
+                prestarLote(intercambio);
+
+            } else if (ruta.equals("/api/prestamos/lote/devolucion")) {
+                if (!exigirMetodo(intercambio, metodo, "POST")) return;
+                devolverLote(intercambio);
+
+            } else if (ruta.equals("/api/reservas")) {
+                if (!exigirMetodo(intercambio, metodo, "POST")) return;
+                reservar(intercambio);
+
+            } else if ((m = RUTA_DEVOLUCION.matcher(ruta)).matches()) {
+                if (!exigirMetodo(intercambio, metodo, "POST")) return;
+                devolver(intercambio, m.group(1));
+
+            } else if (ruta.equals("/api/prestamos/activos") || ruta.equals("/api/prestamos/vencidos")) {
+                if (!exigirMetodo(intercambio, metodo, "GET")) return;
+                listarPrestamos(intercambio, parametros, ruta.endsWith("vencidos"));
+
+            } else {
+                responder(intercambio, 404, errorJson("RUTA_NO_ENCONTRADA", "No existe la ruta " + ruta));
+            }
+        } catch (SolicitudInvalida e) {
+            responder(intercambio, 400, errorJson("SOLICITUD_INVALIDA", e.getMessage()));
+        } catch (RuntimeException e) {
+            responder(intercambio, 500, errorJson("ERROR_INTERNO", String.valueOf(e.getMessage())));
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    private void buscarLibros(HttpExchange intercambio, HashMap<String, String> parametros) throws IOException {
+
+        String criterio = parametros.get("q");
+        if (criterio == null || criterio.isBlank()) throw new SolicitudInvalida("Falta el parametro q");
+
+        List<Libro> encontrados = "true".equals(parametros.get("aproximada"))
+                ? biblioteca.buscarLibroAproximado(criterio)
+                : biblioteca.buscarLibro(criterio);
+        int limite = leerLimite(parametros);
+        if (encontrados.size() > limite) encontrados = encontrados.subList(0, limite);
+
+        responder(intercambio, 200, arregloJson(encontrados, RenderizadorRegistros::escribir));
+    }
+
+    private void sugerir(HttpExchange intercambio, HashMap<String, String> parametros) throws IOException {
+
+        String prefijo = parametros.get("q");
+        if (prefijo == null || prefijo.isBlank()) throw new SolicitudInvalida("Falta el parametro q");
+
+        int limite = leerEntero(parametros, "limite", SUGERENCIAS_PREDETERMINADAS);
+        if (limite <= 0) throw new SolicitudInvalida("El limite debe ser positivo");
+
+        List<Sugerencia> sugerencias = biblioteca.sugerirLibros(prefijo, Math.min(limite, SUGERENCIAS_MAXIMAS));
+
+        StringBuilder json = new StringBuilder(64 * sugerencias.size() + 2);
+        json.append('[');
+        for (int i = 0; i < sugerencias.size(); i++) {
+            Sugerencia sugerencia = sugerencias.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"texto\":");
+            RenderizadorRegistros.agregarTextoJson(json, sugerencia.getTexto());
+            json.append(",\"campo\":\"").append(sugerencia.getCampo())
+                    .append("\",\"popularidad\":").append(sugerencia.getPopularidad())
+                    .append(",\"libros\":").append(sugerencia.getLibros()).append('}');
+        }
+        json.append(']');
+
+        responder(intercambio, 200, json.toString());
+    }
+
+    private void prestar(HttpExchange intercambio) throws IOException {
+
+        HashMap<String, String> campos = leerCuerpoJson(intercambio);
+        String isbn = campos.get("isbn");
+        String idUsuario = campos.get("usuario");
+
+        if (isbn == null || idUsuario == null) {
+            throw new SolicitudInvalida("El cuerpo debe tener los campos isbn y usuario");
+        }
+
+        ResultadoPrestamo resultado = biblioteca.prestar(isbn, idUsuario);
+
+        if (!resultado.esExito()) {
+            error(intercambio, resultado.getCodigo(),
+                    resultado.getCodigo() == CodigoResultado.USUARIO_NO_ENCONTRADO ? idUsuario : isbn);
+            return;
+        }
+
+        responder(intercambio, 201, registroJson(resultado.getPrestamo(), RenderizadorRegistros::escribir));
+    }
+
+    private void prestarLote(HttpExchange intercambio) throws IOException {
+
+        String cuerpo = leerCuerpo(intercambio);
+        String idUsuario = camposJson(cuerpo).get("usuario");
+        ArrayList<String> isbns = elementosJson(cuerpo, "isbns");
+
+        if (idUsuario == null || isbns == null) {
+            throw new SolicitudInvalida("El cuerpo debe tener los campos usuario e isbns");
+        }
+        if (isbns.size() > MAXIMO_LOTE) throw new SolicitudInvalida("El lote supera " + MAXIMO_LOTE + " elementos");
+
+        ResultadoLote resultado = biblioteca.prestarLote(idUsuario, isbns);
+        responderLote(intercambio, resultado, 201, isbns, "isbn");
+    }
+
+    private void devolverLote(HttpExchange intercambio) throws IOException {
+
+        ArrayList<String> textos = elementosJson(leerCuerpo(intercambio), "prestamos");
+
+        if (textos == null) throw new SolicitudInvalida("El cuerpo debe tener el campo prestamos");
+        if (textos.size() > MAXIMO_LOTE) throw new SolicitudInvalida("El lote supera " + MAXIMO_LOTE + " elementos");
+
+        ArrayList<Integer> ids = new ArrayList<>(textos.size());
+        for (String texto : textos) {
+            try {
+                ids.add(Integer.parseInt(texto));
+            } catch (NumberFormatException e) {
+                throw new SolicitudInvalida("ID de prestamo invalido: " + texto);
+            }
+        }
+
+        ResultadoLote resultado = biblioteca.devolverLote(ids);
+        responderLote(intercambio, resultado, 200, textos, "id");
+    }
+
+    // {"aplicado": bool, "elementos": [{clave: dato, "resultado": CODIGO, "mensaje" o "prestamo"}, ...]}
+    private static void responderLote(HttpExchange intercambio, ResultadoLote resultado, int estadoExito,
+                                      List<String> datos, String clave) throws IOException {
+
+        StringBuilder json = new StringBuilder(128 + 320 * resultado.getCantidad());
+        json.append("{\"aplicado\":").append(resultado.esExito()).append(",\"elementos\":[");
+
+        for (int i = 0; i < resultado.getCantidad(); i++) {
+            CodigoResultado codigo = resultado.getCodigo(i);
+
+            if (i > 0) json.append(',');
+            json.append("{\"").append(clave).append("\":");
+            RenderizadorRegistros.agregarTextoJson(json, datos.get(i));
+            json.append(",\"resultado\":");
+            RenderizadorRegistros.agregarTextoJson(json, codigo.name());
+
+            if (resultado.esExito()) {
+                json.append(",\"prestamo\":").append(registroJson(resultado.getPrestamo(i), RenderizadorRegistros::escribir));
+            } else {
+                json.append(",\"mensaje\":");
+                RenderizadorRegistros.agregarTextoJson(json, codigo.getMensaje(datos.get(i)));
+            }
+            json.append('}');
+        }
+        json.append("]}");
+
+        responder(intercambio, resultado.esExito() ? estadoExito : estadoHttp(resultado.getCodigo()), json.toString());
+    }
+
+    // Un cliente que recibe SIN_EJEMPLARES se pone en la cola en lugar de reintentar
+    private void reservar(HttpExchange intercambio) throws IOException {
+
+        HashMap<String, String> campos = leerCuerpoJson(intercambio);
+        String isbn = campos.get("isbn");
+        String idUsuario = campos.get("usuario");
+
+        if (isbn == null || idUsuario == null) {
+            throw new SolicitudInvalida("El cuerpo debe tener los campos isbn y usuario");
+        }
+
+        CodigoResultado codigo = biblioteca.reservar(isbn, idUsuario);
+
+        if (!codigo.esExito()) {
+            error(intercambio, codigo, codigo == CodigoResultado.USUARIO_NO_ENCONTRADO ? idUsuario : isbn);
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"isbn\":");
+        RenderizadorRegistros.agregarTextoJson(json, isbn);
+        json.append(",\"usuario\":");
+        RenderizadorRegistros.agregarTextoJson(json, idUsuario);
+        json.append(",\"enEspera\":").append(biblioteca.buscarLibroPorISBN(isbn).getReservasEnEspera()).append('}');
+
+        responder(intercambio, 201, json.toString());
+    }
+
+    private void devolver(HttpExchange intercambio, String textoId) throws IOException {
+
+        int idPrestamo;
+        try {
+            idPrestamo = Integer.parseInt(textoId);
+        } catch (NumberFormatException e) {
+            throw new SolicitudInvalida("ID de prestamo invalido: " + textoId);
+        }
+
+        CodigoResultado codigo = biblioteca.devolver(idPrestamo);
+
+        if (!codigo.esExito()) {
+            error(intercambio, codigo, idPrestamo);
+            return;
+        }
+
+        responder(intercambio, 200, registroJson(biblioteca.buscarPrestamoPorId(idPrestamo), RenderizadorRegistros::escribir));
+    }
+
+    private void listarPrestamos(HttpExchange intercambio, HashMap<String, String> parametros,
+                                 boolean soloVencidos) throws IOException {
+
+        int cursor = leerEntero(parametros, "cursor", Pagina.INICIO);
+        int limite = leerLimite(parametros);
+
+        Pagina<Prestamo> pagina = soloVencidos
+                ? biblioteca.paginarPrestamosVencidos(cursor, limite, null)
+                : biblioteca.paginarPrestamosActivos(cursor, limite, null);
+
+        StringBuilder json = new StringBuilder(256 * pagina.getElementos().size() + 64);
+        json.append("{\"elementos\":").append(arregloJson(pagina.getElementos(), RenderizadorRegistros::escribir));
+        json.append(",\"siguienteCursor\":");
+        if (pagina.hayMas()) json.append(pagina.getSiguienteCursor());
+        else json.append("null");
+        json.append('}');
+
+        responder(intercambio, 200, json.toString());
+    }
+
+    // ===================== SOLICITUD =====================
+
+    private static boolean exigirMetodo(HttpExchange intercambio, String metodo, String esperado) throws IOException {
+
+        if (esperado.equals(metodo)) return true;
+
+        intercambio.getResponseHeaders().set("Allow", esperado);
+        responder(intercambio, 405, errorJson("METODO_NO_PERMITIDO", "Use " + esperado));
+        return false;
+    }
+
+    private static HashMap<String, String> leerParametros(String consulta) {
+
+        HashMap<String, String> parametros = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) return parametros;
+
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            String clave = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            parametros.put(URLDecoder.decode(clave, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+
+    private static int leerLimite(HashMap<String, String> parametros) {
+
+        int limite = leerEntero(parametros, "limite", LIMITE_PREDETERMINADO);
+        if (limite <= 0) throw new SolicitudInvalida("El limite debe ser positivo");
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+
+    private static int leerEntero(HashMap<String, String> parametros, String nombre, int porDefecto) {
+
+        String valor = parametros.get(nombre);
+        if (valor == null) return porDefecto;
+
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new SolicitudInvalida("El parametro " + nombre + " debe ser un numero");
+        }
+    }
+
+    // Lee un objeto JSON plano con campos de texto; los demas campos se ignoran
+    private static HashMap<String, String> leerCuerpoJson(HttpExchange intercambio) throws IOException {
+        return camposJson(leerCuerpo(intercambio));
+    }
+
+    private static String leerCuerpo(HttpExchange intercambio) throws IOException {
+
+        byte[] datos;
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            datos = entrada.readNBytes(MAXIMO_CUERPO + 1);
+        }
+        if (datos.length > MAXIMO_CUERPO) throw new SolicitudInvalida("El cuerpo supera " + MAXIMO_CUERPO + " bytes");
+
+        return new String(datos, StandardCharsets.UTF_8);
+    }
+
+    private static HashMap<String, String> camposJson(String cuerpo) {
+
+        HashMap<String, String> campos = new HashMap<>();
+        Matcher m = CAMPO_JSON.matcher(cuerpo);
+        while (m.find()) {
+            campos.put(m.group(1), desescaparJson(m.group(2)));
+        }
+        return campos;
+    }
+
+    // Elementos (textos o enteros) del campo arreglo indicado, o null si no esta
+    private static ArrayList<String> elementosJson(String cuerpo, String nombre) {
+
+        Matcher m = ARREGLO_JSON.matcher(cuerpo);
+        while (m.find()) {
+            if (!m.group(1).equals(nombre)) continue;
+
+            ArrayList<String> elementos = new ArrayList<>();
+            Matcher e = ELEMENTO_JSON.matcher(m.group(2));
+            while (e.find()) {
+                elementos.add(e.group(1) != null ? desescaparJson(e.group(1)) : e.group(2));
+            }
+            return elementos;
+        }
+        return null;
+    }
+
+    /**
+     * Decodifica los escapes de una cadena JSON: \" \\ \/ \b \f \n \r \t y la
+     * barra con u y cuatro digitos hexadecimales (un par sustituto queda como
+     * sus dos char). Un escape mal formado es una solicitud invalida.
+     */
+    private static String desescaparJson(String texto) {
+
+        if (texto.indexOf('\\') < 0) return texto;
+
+        StringBuilder resultado = new StringBuilder(texto.length());
+
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+
+            if (c != '\\') {
+                resultado.append(c);
+                continue;
+            }
+
+            if (++i == texto.length()) throw new SolicitudInvalida("Escape JSON incompleto");
+
+            char escape = texto.charAt(i);
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    resultado.append(escape);
+                    break;
+                case 'b': resultado.append('\b'); break;
+                case 'f': resultado.append('\f'); break;
+                case 'n': resultado.append('\n'); break;
+                case 'r': resultado.append('\r'); break;
+                case 't': resultado.append('\t'); break;
+                case 'u': {
+                    if (i + 4 >= texto.length()) {
+                        throw new SolicitudInvalida("Escape JSON incompleto: \\" + texto.substring(i));
+                    }
+                    int codigo = 0;
+                    for (int k = i + 1; k <= i + 4; k++) {
+                        char hexa = texto.charAt(k);
+                        int digito = hexa < 128 ? Character.digit(hexa, 16) : -1;
+                        if (digito < 0) throw new SolicitudInvalida("Escape JSON invalido: \\" + texto.substring(i, i + 5));
+                        codigo = codigo * 16 + digito;
+                    }
+                    resultado.append((char) codigo);
+                    i += 4;
+                    break;
+                }
+                default:
+                    throw new SolicitudInvalida("Escape JSON invalido: \\" + escape);
+            }
+        }
+
+        return resultado.toString();
+    }
+
+    // ===================== RESPUESTA =====================
+
+    private static void responder(HttpExchange intercambio, int estado, String json) throws IOException {
+
+        byte[] cuerpo = json.getBytes(StandardCharsets.UTF_8);
+
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(estado, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private static void error(HttpExchange intercambio, CodigoResultado codigo, Object dato) throws IOException {
+        responder(intercambio, estadoHttp(codigo), errorJson(codigo.name(), codigo.getMensaje(dato)));
+    }
+
+    private static int estadoHttp(CodigoResultado codigo) {
+
+        switch (codigo) {
+            case LIBRO_NO_ENCONTRADO:
+            case USUARIO_NO_ENCONTRADO:
+            case PRESTAMO_NO_ENCONTRADO:
+            case RESERVA_NO_ENCONTRADA:
+                return 404;
+            case ISBN_INVALIDO:
+            case EMAIL_INVALIDO:
+                return 400;
+            default:
+                return 409;
+        }
+    }
+
+    private static String errorJson(String codigo, String mensaje) {
+
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"error\":");
+        RenderizadorRegistros.agregarTextoJson(json, codigo);
+        json.append(",\"mensaje\":");
+        RenderizadorRegistros.agregarTextoJson(json, mensaje);
+        return json.append('}').toString();
+    }
+
+    // Usa el formato JSON del renderizador, que escribe un objeto por linea
+    private static <T> String registroJson(T registro, BiConsumer<RenderizadorRegistros, T> escribir) {
+
+        StringWriter texto = new StringWriter(256);
+        RenderizadorRegistros salida = new RenderizadorRegistros(texto, FormatoSalida.JSON);
+        escribir.accept(salida, registro);
+        salida.close();
+
+        return texto.toString().strip();
+    }
+
+    // Los saltos de linea solo separan objetos (dentro de las cadenas van escapados)
+    private static <T> String arregloJson(List<T> registros, BiConsumer<RenderizadorRegistros, T> escribir) {
+
+        StringWriter texto = new StringWriter(256 * registros.size() + 2);
+        RenderizadorRegistros salida = new RenderizadorRegistros(texto, FormatoSalida.JSON);
+        for (T registro : registros) escribir.accept(salida, registro);
+        salida.close();
+
+        return "[" + texto.toString().strip().replace('\n', ',') + "]";
+    }
+
+    /**
+     * Solicitud mal formada: se responde 400 con el mensaje.
+     */
+    private static final class SolicitudInvalida extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        SolicitudInvalida(String mensaje) {
+            super(mensaje);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Clase Sugerencia
+ * Completacion que retorna Biblioteca.sugerirLibros: un titulo o un autor
+ * del catalogo, tal como esta escrito, con su popularidad (los prestamos
+ * de todos los libros con ese titulo o de ese autor) y cuantos libros son.
+ */
+public final class Sugerencia {
+
+    /**
+     * Campo del libro del que sale la sugerencia.
+     */
+    public enum Campo { TITULO, AUTOR }
+
+    private final String texto;
+    private final Campo campo;
+    private final int popularidad;
+    private final int libros;
+
+    Sugerencia(String texto, Campo campo, int popularidad, int libros) {
+        this.texto = texto;
+        this.campo = campo;
+        this.popularidad = popularidad;
+        this.libros = libros;
+    }
+
+    // ===================== GETTERS =====================
+
+    public String getTexto() { return texto; }
+    public Campo getCampo() { return campo; }
+    public int getPopularidad() { return popularidad; }
+    public int getLibros() { return libros; }
+}
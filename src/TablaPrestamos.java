@@ -0,0 +1,622 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Clase TablaPrestamos
+ * Historial de prestamos guardado por columnas de tipos primitivos.
+ * Los IDs se asignan en orden creciente y cada prestamo ocupa la fila
+ * (id - primerId). Por fila se guardan los ordinales del libro y del usuario,
+ * las fechas de prestamo, estimada y real en dias epoch, y el estado
+ * codificado en un byte. Prestamo es solo una vista sobre una fila.
+ *
+ * Las columnas crecen por bloques que nunca se copian ni se mueven.
+ * Las filas se escriben con las franjas del libro y del usuario tomadas;
+ * el estado se publica al final con semantica release, de modo que una
+ * lectura sin bloqueo que ve el estado ve tambien el resto de la fila.
+ *
+ * Con un ArchivoPrestamos, la tabla es solo el nivel caliente: los bloques
+ * completos con pocos prestamos abiertos pasan al archivo (ver archivar)
+ * y su lugar en el directorio queda en null. Sus prestamos abiertos siguen
+ * en memoria como filas sueltas hasta que se devuelven y se archivan.
+ * Cada bloque cuenta sus prestamos abiertos, asi que los recorridos de
+ * abiertos y vencidos saltan los bloques que no tienen ninguno.
+ */
+public class TablaPrestamos {
+
+    // Marca de "sin devolucion" en la columna de fecha real
+    static final int SIN_FECHA = Integer.MIN_VALUE;
+
+    // Cantidad de filas por bloque (potencia de dos)
+    private static final int BITS_BLOQUE = 12;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+
+    // Mascara de estados de los prestamos aun no devueltos
+    private static final int MASCARA_ABIERTOS =
+            1 << EstadoPrestamo.ACTIVO.getCodigo() | 1 << EstadoPrestamo.VENCIDO.getCodigo();
+
+    // Mascara de todos los estados (cualquier fila con prestamo)
+    private static final int MASCARA_TODOS = MASCARA_ABIERTOS | 1 << EstadoPrestamo.DEVUELTO.getCodigo();
+
+    // Un bloque completo se archiva si tiene a lo sumo tantos prestamos abiertos
+    private static final int MAXIMO_ABIERTOS_PARA_ARCHIVAR = TAMANO_BLOQUE / 16;
+
+    // Acceso con orden de memoria a la columna de estado
+    private static final VarHandle ESTADO = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    // ID que corresponde a la fila 0
+    private final int primerId;
+
+    // Siguiente ID a asignar
+    private final AtomicInteger siguienteId;
+
+    // Biblioteca duena, para resolver ordinales, y sus contadores
+    private final Biblioteca biblioteca;
+    private final ContadoresBiblioteca contadores;
+
+    // Directorio de bloques; se reemplaza al crecer y al archivar (los archivados quedan en null)
+    private volatile Bloque[] bloques;
+
+    // Prestamos de bloques archivados que seguian abiertos al archivar, por ID
+    private final ConcurrentSkipListMap<Integer, Fila> sueltas = new ConcurrentSkipListMap<>();
+
+    // Nivel frio con los prestamos devueltos de los bloques archivados (opcional)
+    private volatile ArchivoPrestamos archivo;
+
+    /**
+     * Constructor que recibe el primer ID que se va a asignar.
+     */
+    public TablaPrestamos(int primerId, Biblioteca biblioteca, ContadoresBiblioteca contadores) {
+        this.primerId = primerId;
+        this.siguienteId = new AtomicInteger(primerId);
+        this.biblioteca = biblioteca;
+        this.contadores = contadores;
+        this.bloques = new Bloque[0];
+    }
+
+    /**
+     * Reserva el siguiente ID de prestamo.
+     */
+    public int generarId() {
+        return siguienteId.getAndIncrement();
+    }
+
+    /**
+     * Asegura que los IDs futuros sean mayores al indicado
+     * (se usa al reconstruir el historial desde disco).
+     */
+    public void reservarHasta(int idPrestamo) {
+        siguienteId.accumulateAndGet(idPrestamo + 1, Math::max);
+    }
+
+    // ===================== ESCRITURA =====================
+
+    /**
+     * Guarda un prestamo ACTIVO en la fila de su ID y retorna su vista.
+     */
+    Prestamo agregar(int idPrestamo, Libro libro, Usuario usuario, int diaPrestamo) {
+
+        escribirFila(idPrestamo, libro.getOrdinal(), usuario.getOrdinal(), diaPrestamo,
+                SIN_FECHA, EstadoPrestamo.ACTIVO);
+        contadores.prestamoRegistrado();
+
+        return new Prestamo(this, idPrestamo);
+    }
+
+    /**
+     * Guarda un prestamo que ya fue devuelto, sin pasar por ACTIVO
+     * (se usa al cargar el historial desde una instantanea).
+     */
+    void agregarDevuelto(int idPrestamo, int ordinalLibro, int ordinalUsuario, int diaPrestamo, int diaDevolucion) {
+
+        escribirFila(idPrestamo, ordinalLibro, ordinalUsuario, diaPrestamo,
+                diaDevolucion, EstadoPrestamo.DEVUELTO);
+        contadores.prestamoRegistrado();
+        contadores.prestamoDevuelto(false);
+    }
+
+    private void escribirFila(int idPrestamo, int ordinalLibro, int ordinalUsuario,
+                              int diaPrestamo, int diaDevolucion, EstadoPrestamo estado) {
+
+        int fila = idPrestamo - primerId;
+
+        if (fila < 0) {
+            throw new IllegalArgumentException("ID de prestamo fuera de rango: " + idPrestamo);
+        }
+
+        Bloque b = bloqueDe(fila, true);
+
+        // Al restaurar, los abiertos de un bloque ya archivado vuelven como filas sueltas
+        if (b == null) {
+            sueltas.put(idPrestamo, new Fila(idPrestamo, ordinalLibro, ordinalUsuario,
+                    diaPrestamo, diaDevolucion, estado));
+            return;
+        }
+
+        int i = fila & (TAMANO_BLOQUE - 1);
+
+        b.libro[i] = ordinalLibro;
+        b.usuario[i] = ordinalUsuario;
+        b.fechaPrestamo[i] = diaPrestamo;
+        b.fechaEstimada[i] = diaPrestamo + Prestamo.DIAS_PRESTAMO;
+        b.fechaReal[i] = diaDevolucion;
+        if (estado != EstadoPrestamo.DEVUELTO) b.abiertos.incrementAndGet();
+        ESTADO.setRelease(b.estado, i, estado.getCodigo());
+    }
+
+    /**
+     * Pasa el prestamo de ACTIVO a VENCIDO. Retorna false si no estaba ACTIVO.
+     */
+    boolean marcarVencido(int idPrestamo) {
+
+        if (getEstado(idPrestamo) != EstadoPrestamo.ACTIVO) return false;
+
+        Bloque b = bloqueDeId(idPrestamo);
+        if (b != null) {
+            ESTADO.setRelease(b.estado, posicion(idPrestamo), EstadoPrestamo.VENCIDO.getCodigo());
+        } else {
+            sueltas.get(idPrestamo).estado = EstadoPrestamo.VENCIDO.getCodigo();
+        }
+        contadores.prestamoVencido();
+        return true;
+    }
+
+    /**
+     * Registra la devolucion en el dia indicado. Retorna false si ya estaba devuelto.
+     */
+    boolean cerrar(int idPrestamo, int diaDevolucion) {
+
+        EstadoPrestamo estado = getEstado(idPrestamo);
+        if (estado == null || estado == EstadoPrestamo.DEVUELTO) return false;
+
+        Bloque b = bloqueDeId(idPrestamo);
+
+        if (b != null) {
+            int i = posicion(idPrestamo);
+            b.fechaReal[i] = diaDevolucion;
+            ESTADO.setRelease(b.estado, i, EstadoPrestamo.DEVUELTO.getCodigo());
+            b.abiertos.decrementAndGet();
+        } else {
+            Fila suelta = sueltas.get(idPrestamo);
+            suelta.diaDevolucion = diaDevolucion;
+            suelta.estado = EstadoPrestamo.DEVUELTO.getCodigo();
+        }
+        contadores.prestamoDevuelto(estado == EstadoPrestamo.VENCIDO);
+        return true;
+    }
+
+    // ===================== LECTURA =====================
+
+    /**
+     * Retorna la vista del prestamo con el ID indicado, o null si no existe.
+     * Los prestamos archivados se leen del archivo y la vista guarda su fila.
+     */
+    public Prestamo buscar(int idPrestamo) {
+
+        Bloque b = bloqueDeId(idPrestamo);
+        if (b != null || sueltas.containsKey(idPrestamo)) {
+            return getEstado(idPrestamo) == null ? null : new Prestamo(this, idPrestamo);
+        }
+
+        Fila archivada = leerArchivada(idPrestamo);
+        return archivada == null ? null : new Prestamo(this, idPrestamo, archivada);
+    }
+
+    /**
+     * Recorre en orden de ID los prestamos en memoria con el estado indicado.
+     * Solo lee la columna de estado; no crea objetos por fila.
+     */
+    public void paraCada(EstadoPrestamo estado, IntConsumer accion) {
+        recorrer(1 << estado.getCodigo(), accion);
+    }
+
+    /**
+     * Recorre en orden de ID los prestamos aun no devueltos (ACTIVO o VENCIDO).
+     */
+    public void paraCadaAbierto(IntConsumer accion) {
+        recorrer(MASCARA_ABIERTOS, accion);
+    }
+
+    /**
+     * Recorre en orden de ID los prestamos que estan en memoria (nivel
+     * caliente y filas sueltas), es decir, todos los que no estan archivados.
+     */
+    void paraCadaEnMemoria(IntConsumer accion) {
+        recorrer(MASCARA_TODOS, accion);
+    }
+
+    /**
+     * Retorna el primer ID, desde desdeId inclusive, cuyo prestamo tiene
+     * el estado indicado, o -1 si no hay ninguno. Permite recorrer el
+     * historial por partes sin armar listas intermedias.
+     * No considera los prestamos archivados.
+     */
+    public int siguiente(int desdeId, EstadoPrestamo estado) {
+        return siguiente(desdeId, 1 << estado.getCodigo());
+    }
+
+    /**
+     * Igual que siguiente, para prestamos aun no devueltos (ACTIVO o VENCIDO).
+     */
+    public int siguienteAbierto(int desdeId) {
+        return siguiente(desdeId, MASCARA_ABIERTOS);
+    }
+
+    private int siguiente(int desdeId, int mascara) {
+
+        int total = getTotal();
+        Bloque[] actuales = bloques;
+        boolean soloAbiertos = (mascara & ~MASCARA_ABIERTOS) == 0;
+
+        int fila = Math.max(0, desdeId - primerId);
+
+        while (fila < total) {
+            int numeroBloque = fila >>> BITS_BLOQUE;
+            if (numeroBloque >= actuales.length) break;
+
+            Bloque b = actuales[numeroBloque];
+            int finBloque = (numeroBloque + 1) << BITS_BLOQUE;
+
+            if (b == null) {
+                int id = siguienteSuelta(primerId + fila, primerId + finBloque, mascara);
+                if (id != -1) return id;
+            } else if (!soloAbiertos || b.abiertos.get() > 0) {
+                for (int limite = Math.min(finBloque, total); fila < limite; fila++) {
+                    byte codigo = (byte) ESTADO.getAcquire(b.estado, fila & (TAMANO_BLOQUE - 1));
+                    if ((mascara >>> codigo & 1) != 0) return primerId + fila;
+                }
+            }
+
+            fila = finBloque;
+        }
+
+        return -1;
+    }
+
+    // Primera fila suelta con ID en [desdeId, hastaId) cuyo estado esta en la mascara
+    private int siguienteSuelta(int desdeId, int hastaId, int mascara) {
+
+        for (Map.Entry<Integer, Fila> e : sueltas.subMap(desdeId, hastaId).entrySet()) {
+            if ((mascara >>> e.getValue().estado & 1) != 0) return e.getKey();
+        }
+        return -1;
+    }
+
+    // Recorre las filas cuyo codigo de estado esta en la mascara de bits
+    private void recorrer(int mascara, IntConsumer accion) {
+
+        int total = getTotal();
+        Bloque[] actuales = bloques;
+        boolean soloAbiertos = (mascara & ~MASCARA_ABIERTOS) == 0;
+
+        for (int nb = 0; nb < actuales.length && (nb << BITS_BLOQUE) < total; nb++) {
+            Bloque b = actuales[nb];
+            int inicioBloque = primerId + (nb << BITS_BLOQUE);
+
+            if (b == null) {
+                for (Map.Entry<Integer, Fila> e
+                        : sueltas.subMap(inicioBloque, inicioBloque + TAMANO_BLOQUE).entrySet()) {
+                    if ((mascara >>> e.getValue().estado & 1) != 0) accion.accept(e.getKey());
+                }
+                continue;
+            }
+
+            if (soloAbiertos && b.abiertos.get() == 0) continue;
+
+            byte[] columna = b.estado;
+            int limite = Math.min(TAMANO_BLOQUE, total - (nb << BITS_BLOQUE));
+
+            for (int i = 0; i < limite; i++) {
+                if ((mascara >>> (byte) ESTADO.getAcquire(columna, i) & 1) != 0) {
+                    accion.accept(inicioBloque + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retorna todos los prestamos del usuario (porUsuario) o del libro con el
+     * ordinal indicado, en memoria o archivados, en orden de ID.
+     */
+    ArrayList<Prestamo> historialDe(boolean porUsuario, int ordinal) {
+
+        ArrayList<Prestamo> encontrados = new ArrayList<>();
+
+        ArchivoPrestamos a = archivo;
+        if (a != null) {
+            for (Fila f : a.buscar(porUsuario, ordinal)) encontrados.add(new Prestamo(this, f.id, f));
+        }
+
+        recorrer(MASCARA_TODOS, id -> {
+            int dueno = porUsuario ? getOrdinalUsuario(id) : getOrdinalLibro(id);
+            if (dueno == ordinal) encontrados.add(new Prestamo(this, id));
+        });
+
+        // Una fila que se archiva mientras tanto puede aparecer en los dos niveles
+        encontrados.sort(Comparator.comparingInt(Prestamo::getIdPrestamo));
+        int unicos = 0;
+        for (int i = 0; i < encontrados.size(); i++) {
+            if (unicos == 0 || encontrados.get(unicos - 1).getIdPrestamo() != encontrados.get(i).getIdPrestamo()) {
+                encontrados.set(unicos++, encontrados.get(i));
+            }
+        }
+        encontrados.subList(unicos, encontrados.size()).clear();
+
+        return encontrados;
+    }
+
+    /**
+     * Retorna el estado del prestamo, o null si el ID no tiene prestamo.
+     */
+    EstadoPrestamo getEstado(int idPrestamo) {
+
+        int fila = idPrestamo - primerId;
+        if (fila < 0) return null;
+
+        Bloque[] actuales = bloques;
+        int numeroBloque = fila >>> BITS_BLOQUE;
+        if (numeroBloque >= actuales.length) return null;
+
+        Bloque b = actuales[numeroBloque];
+        if (b != null) {
+            return EstadoPrestamo.desdeCodigo((byte) ESTADO.getAcquire(b.estado, fila & (TAMANO_BLOQUE - 1)));
+        }
+
+        Fila f = filaFueraDeBloques(idPrestamo);
+        return f == null ? null : EstadoPrestamo.desdeCodigo(f.estado);
+    }
+
+    int getOrdinalLibro(int idPrestamo) {
+        Bloque b = bloqueDeId(idPrestamo);
+        return b != null ? b.libro[posicion(idPrestamo)] : filaFueraDeBloques(idPrestamo).libro;
+    }
+
+    int getOrdinalUsuario(int idPrestamo) {
+        Bloque b = bloqueDeId(idPrestamo);
+        return b != null ? b.usuario[posicion(idPrestamo)] : filaFueraDeBloques(idPrestamo).usuario;
+    }
+
+    int getDiaPrestamo(int idPrestamo) {
+        Bloque b = bloqueDeId(idPrestamo);
+        return b != null ? b.fechaPrestamo[posicion(idPrestamo)] : filaFueraDeBloques(idPrestamo).diaPrestamo;
+    }
+
+    int getDiaEstimado(int idPrestamo) {
+        Bloque b = bloqueDeId(idPrestamo);
+        return b != null ? b.fechaEstimada[posicion(idPrestamo)] : filaFueraDeBloques(idPrestamo).diaEstimado;
+    }
+
+    int getDiaDevolucion(int idPrestamo) {
+        Bloque b = bloqueDeId(idPrestamo);
+        return b != null ? b.fechaReal[posicion(idPrestamo)] : filaFueraDeBloques(idPrestamo).diaDevolucion;
+    }
+
+    // Fila de un bloque archivado: suelta si seguia abierta, o leida del archivo
+    private Fila filaFueraDeBloques(int idPrestamo) {
+
+        Fila suelta = sueltas.get(idPrestamo);
+        return suelta != null ? suelta : leerArchivada(idPrestamo);
+    }
+
+    private Fila leerArchivada(int idPrestamo) {
+
+        ArchivoPrestamos a = archivo;
+        return a == null ? null : a.leer(idPrestamo);
+    }
+
+    // Dia de trabajo de la biblioteca, en dias epoch
+    long diaActual() { return biblioteca.getReloj().diaActual(); }
+
+    Libro getLibro(int idPrestamo) { return biblioteca.getLibro(getOrdinalLibro(idPrestamo)); }
+    Usuario getUsuario(int idPrestamo) { return biblioteca.getUsuario(getOrdinalUsuario(idPrestamo)); }
+
+    // Para las vistas de prestamos archivados, que guardan los ordinales
+    Libro libroPorOrdinal(int ordinal) { return biblioteca.getLibro(ordinal); }
+    Usuario usuarioPorOrdinal(int ordinal) { return biblioteca.getUsuario(ordinal); }
+
+    public int getPrimerId() { return primerId; }
+
+    /**
+     * Retorna el ultimo ID asignado hasta ahora.
+     */
+    public int getUltimoId() { return siguienteId.get() - 1; }
+
+    /**
+     * Cantidad de IDs asignados hasta ahora.
+     */
+    public int getTotal() { return siguienteId.get() - primerId; }
+
+    // ===================== BLOQUES =====================
+
+    // Bloque de la fila de un ID, o null si el bloque esta archivado o no existe
+    private Bloque bloqueDeId(int idPrestamo) {
+        Bloque[] actuales = bloques;
+        int numeroBloque = (idPrestamo - primerId) >>> BITS_BLOQUE;
+        return numeroBloque < actuales.length ? actuales[numeroBloque] : null;
+    }
+
+    private int posicion(int idPrestamo) {
+        return (idPrestamo - primerId) & (TAMANO_BLOQUE - 1);
+    }
+
+    private Bloque bloqueDe(int fila, boolean crear) {
+
+        int numeroBloque = fila >>> BITS_BLOQUE;
+        Bloque[] actuales = bloques;
+
+        if (numeroBloque < actuales.length) return actuales[numeroBloque];
+        if (!crear) return null;
+
+        return crecer(numeroBloque);
+    }
+
+    private synchronized Bloque crecer(int numeroBloque) {
+
+        Bloque[] actuales = bloques;
+        if (numeroBloque < actuales.length) return actuales[numeroBloque];
+
+        int nuevaCantidad = Math.max(actuales.length * 2, numeroBloque + 1);
+        Bloque[] nuevos = Arrays.copyOf(actuales, nuevaCantidad);
+
+        for (int i = actuales.length; i < nuevaCantidad; i++) {
+            nuevos[i] = new Bloque();
+        }
+
+        bloques = nuevos;
+        return nuevos[numeroBloque];
+    }
+
+    // Deja en null el lugar de un bloque archivado; excluye a crecer
+    private synchronized void quitarBloque(int numeroBloque) {
+
+        Bloque[] nuevos = bloques.clone();
+        nuevos[numeroBloque] = null;
+        bloques = nuevos;
+    }
+
+    // ===================== NIVEL FRIO =====================
+
+    /**
+     * Conecta la tabla, todavia vacia, con el archivo de prestamos devueltos:
+     * marca como archivados sus bloques y suma sus filas a los contadores.
+     * Los prestamos que se restauren despues en esos bloques quedan como filas sueltas.
+     */
+    void usarArchivo(ArchivoPrestamos archivo) {
+
+        this.archivo = archivo;
+        marcarArchivados(archivo.getBloquesArchivados());
+        contadores.prestamosArchivados(archivo.getTotalFilas());
+    }
+
+    // Extiende el directorio hasta el ultimo bloque archivado, sin crear los archivados
+    private synchronized void marcarArchivados(int[] archivados) {
+
+        if (archivados.length == 0) return;
+
+        boolean[] esArchivado = new boolean[Arrays.stream(archivados).max().getAsInt() + 1];
+        for (int numeroBloque : archivados) esArchivado[numeroBloque] = true;
+
+        Bloque[] actuales = bloques;
+        Bloque[] nuevos = Arrays.copyOf(actuales, Math.max(actuales.length, esArchivado.length));
+
+        for (int i = 0; i < nuevos.length; i++) {
+            if (i < esArchivado.length && esArchivado[i]) nuevos[i] = null;
+            else if (i >= actuales.length) nuevos[i] = new Bloque();
+        }
+
+        bloques = nuevos;
+    }
+
+    /**
+     * Pasa al archivo lo que ya no cambia: las filas sueltas devueltas y los
+     * bloques completos con a lo sumo MAXIMO_ABIERTOS_PARA_ARCHIVAR prestamos
+     * abiertos (estos pasan a ser filas sueltas). Cada bloque se publica en el
+     * archivo antes de quitarlo de la tabla, asi que una lectura sin bloqueo
+     * siempre lo encuentra en uno de los dos niveles.
+     * Requiere todas las franjas tomadas. Retorna la cantidad de filas archivadas.
+     */
+    int archivar() throws IOException {
+
+        ArchivoPrestamos a = archivo;
+        if (a == null) return 0;
+
+        int archivadas = 0;
+
+        ArchivoPrestamos.Filas devueltas = new ArchivoPrestamos.Filas(16);
+        for (Fila f : sueltas.values()) {
+            if (f.estado == EstadoPrestamo.DEVUELTO.getCodigo()) {
+                devueltas.agregar(f.id, f.libro, f.usuario, f.diaPrestamo, f.diaDevolucion);
+            }
+        }
+
+        if (devueltas.cantidad > 0) {
+            a.anexar(devueltas, -1);
+            for (int i = 0; i < devueltas.cantidad; i++) sueltas.remove(devueltas.ids[i]);
+            archivadas += devueltas.cantidad;
+        }
+
+        Bloque[] actuales = bloques;
+        int completos = getTotal() >>> BITS_BLOQUE;
+
+        for (int nb = 0; nb < Math.min(completos, actuales.length); nb++) {
+            Bloque b = actuales[nb];
+            if (b == null || b.abiertos.get() > MAXIMO_ABIERTOS_PARA_ARCHIVAR) continue;
+
+            int inicioBloque = primerId + (nb << BITS_BLOQUE);
+            ArchivoPrestamos.Filas filas = new ArchivoPrestamos.Filas(TAMANO_BLOQUE);
+
+            for (int i = 0; i < TAMANO_BLOQUE; i++) {
+                byte codigo = b.estado[i];
+                if (codigo == EstadoPrestamo.DEVUELTO.getCodigo()) {
+                    filas.agregar(inicioBloque + i, b.libro[i], b.usuario[i], b.fechaPrestamo[i], b.fechaReal[i]);
+                } else if (codigo != EstadoPrestamo.SIN_PRESTAMO) {
+                    sueltas.put(inicioBloque + i, new Fila(inicioBloque + i, b.libro[i], b.usuario[i],
+                            b.fechaPrestamo[i], b.fechaReal[i], EstadoPrestamo.desdeCodigo(codigo)));
+                }
+            }
+
+            a.anexar(filas, nb);
+            quitarBloque(nb);
+            archivadas += filas.cantidad;
+        }
+
+        return archivadas;
+    }
+
+    /**
+     * Cantidad de prestamos que estan en memoria (ver paraCadaEnMemoria).
+     */
+    int contarEnMemoria() {
+        int[] cantidad = new int[1];
+        recorrer(MASCARA_TODOS, id -> cantidad[0]++);
+        return cantidad[0];
+    }
+
+    /**
+     * Columnas de un bloque de filas consecutivas.
+     */
+    private static final class Bloque {
+        final int[] libro = new int[TAMANO_BLOQUE];
+        final int[] usuario = new int[TAMANO_BLOQUE];
+        final int[] fechaPrestamo = new int[TAMANO_BLOQUE];
+        final int[] fechaEstimada = new int[TAMANO_BLOQUE];
+        final int[] fechaReal = new int[TAMANO_BLOQUE];
+        final byte[] estado = new byte[TAMANO_BLOQUE];
+
+        // Filas ACTIVO o VENCIDO del bloque
+        final AtomicInteger abiertos = new AtomicInteger();
+    }
+
+    /**
+     * Un prestamo fuera de los bloques: una fila suelta (abierta al archivar
+     * su bloque) o una fila leida del archivo. Las sueltas solo cambian de
+     * estado y fecha de devolucion, con las franjas del prestamo tomadas.
+     */
+    static final class Fila {
+
+        final int id;
+        final int libro;
+        final int usuario;
+        final int diaPrestamo;
+        final int diaEstimado;
+        volatile int diaDevolucion;
+        volatile byte estado;
+
+        Fila(int id, int libro, int usuario, int diaPrestamo, int diaDevolucion, EstadoPrestamo estado) {
+            this.id = id;
+            this.libro = libro;
+            this.usuario = usuario;
+            this.diaPrestamo = diaPrestamo;
+            this.diaEstimado = diaPrestamo + Prestamo.DIAS_PRESTAMO;
+            this.diaDevolucion = diaDevolucion;
+            this.estado = estado.getCodigo();
+        }
+    }
+}
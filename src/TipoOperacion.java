@@ -0,0 +1,36 @@
+/**
+ * Enum TipoOperacion
+ * Operaciones de mostrador que mezcla el generador de carga y que se
+ * miden por separado en el reporte del conductor de carga.
+ */
+public enum TipoOperacion {
+
+    PRESTAMO("prestamo"),
+    DEVOLUCION("devolucion"),
+
+    // Busqueda por titulo, autor o categoria
+    BUSQUEDA_TEXTO("texto"),
+
+    BUSQUEDA_ISBN("isbn"),
+    BUSQUEDA_USUARIO("usuario");
+
+    // Nombre corto usado en la linea de comandos y en los reportes
+    private final String etiqueta;
+
+    TipoOperacion(String etiqueta) {
+        this.etiqueta = etiqueta;
+    }
+
+    public String getEtiqueta() { return etiqueta; }
+
+    /**
+     * Retorna la operacion con la etiqueta indicada, o null si no existe.
+     */
+    public static TipoOperacion desdeEtiqueta(String etiqueta) {
+
+        for (TipoOperacion tipo : values()) {
+            if (tipo.etiqueta.equalsIgnoreCase(etiqueta)) return tipo;
+        }
+        return null;
+    }
+}
@@ -1,3 +1,8 @@
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.regex.Pattern;
+
 /**
  * Clase Usuario
  * Representa a una persona registrada en el sistema de biblioteca.
@@ -14,11 +19,22 @@ public class Usuario {
     private String telefono;
     private String direccion;
 
-    // Contador de prestamos actualmente activos
-    private int prestamosActivos;
+    // Prestamos actualmente abiertos (no devueltos) del usuario.
+    // Son pocos (LIMITE_PRESTAMOS), asi que copiar al escribir es barato
+    // y permite leerlos sin bloqueo.
+    private CopyOnWriteArraySet<Prestamo> prestamosEnCurso;
+
+    // Formato valido de correo electronico
+    private static final Pattern FORMATO_EMAIL = Pattern.compile("^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$");
 
     // Limite maximo de prestamos simultaneos permitidos
-    private static final int LIMITE_PRESTAMOS = 2;
+    static final int LIMITE_PRESTAMOS = 2;
+
+    // Biblioteca donde esta registrado, para mantener sus indices al cambiar el nombre
+    private volatile Biblioteca biblioteca;
+
+    // Posicion del usuario en el registro de la biblioteca (-1 si no esta registrado)
+    private int ordinal = -1;
 
     /**
      * Constructor que inicializa los datos del usuario.
@@ -33,30 +49,46 @@ public class Usuario {
         this.direccion = direccion;
 
         // Al registrarse no tiene prestamos activos
-        this.prestamosActivos = 0;
+        this.prestamosEnCurso = new CopyOnWriteArraySet<>();
     }
 
     /**
-     * Incrementa el contador cuando el usuario realiza un prestamo.
+     * Agrega el prestamo a los abiertos del usuario.
      */
-    public void agregarPrestamo() {
-        prestamosActivos++;
+    public void agregarPrestamo(Prestamo prestamo) {
+        prestamosEnCurso.add(prestamo);
     }
 
     /**
-     * Disminuye el contador cuando el usuario devuelve un libro.
+     * Quita el prestamo de los abiertos cuando el usuario devuelve el libro.
      */
-    public void devolverPrestamo() {
-        if (prestamosActivos > 0) {
-            prestamosActivos--;
-        }
+    public void devolverPrestamo(Prestamo prestamo) {
+        prestamosEnCurso.remove(prestamo);
     }
 
     /**
      * Verifica si el usuario puede solicitar otro prestamo.
      */
     public boolean puedePrestar() {
-        return prestamosActivos < LIMITE_PRESTAMOS;
+        return puedePrestar(1);
+    }
+
+    /**
+     * Verifica si el usuario puede llevarse esa cantidad de libros mas a la vez.
+     */
+    public boolean puedePrestar(int cantidad) {
+        return prestamosEnCurso.size() + cantidad <= LIMITE_PRESTAMOS;
+    }
+
+    /**
+     * Verifica si alguno de los prestamos abiertos del usuario esta vencido.
+     * Solo recorre sus prestamos abiertos, como maximo LIMITE_PRESTAMOS.
+     */
+    public boolean tienePrestamosVencidos() {
+        for (Prestamo p : prestamosEnCurso) {
+            if (p.estaVencido()) return true;
+        }
+        return false;
     }
 
     /**
@@ -65,23 +97,14 @@ public class Usuario {
     public static boolean validarEmail(String email) {
         if (email == null || email.isEmpty()) return false;
 
-        return email.matches("^[\\w.-]+@[\\w.-]+\\.[a-zA-Z]{2,}$");
+        return FORMATO_EMAIL.matcher(email).matches();
     }
 
     /**
      * Muestra la informacion completa del usuario.
      */
     public void mostrarInformacion() {
-
-        System.out.println("============================================");
-        System.out.println("  ID:               " + numeroIdentificacion);
-        System.out.println("  Nombre:           " + nombreCompleto);
-        System.out.println("  Correo:           " + correoElectronico);
-        System.out.println("  Telefono:         " + telefono);
-        System.out.println("  Direccion:        " + direccion);
-        System.out.println("  Prestamos activos:" + prestamosActivos + " / " + LIMITE_PRESTAMOS);
-        System.out.println("  Puede prestar:    " + (puedePrestar() ? "SI" : "NO (limite alcanzado)"));
-        System.out.println("============================================");
+        RenderizadorRegistros.mostrar(this);
     }
 
     // ===================== GETTERS Y SETTERS =====================
@@ -89,7 +112,15 @@ public class Usuario {
     public String getNumeroIdentificacion() { return numeroIdentificacion; }
 
     public String getNombreCompleto() { return nombreCompleto; }
-    public void setNombreCompleto(String nombreCompleto) { this.nombreCompleto = nombreCompleto; }
+    public void setNombreCompleto(String nombreCompleto) {
+        if (biblioteca != null) biblioteca.renombrarUsuario(this, nombreCompleto);
+        else this.nombreCompleto = nombreCompleto;
+    }
+
+    // Solo desde Biblioteca.renombrarUsuario, con la franja del usuario tomada
+    void asignarNombreCompleto(String nombreCompleto) {
+        this.nombreCompleto = nombreCompleto;
+    }
 
     public String getCorreoElectronico() { return correoElectronico; }
     public void setCorreoElectronico(String correoElectronico) { this.correoElectronico = correoElectronico; }
@@ -100,5 +131,16 @@ public class Usuario {
     public String getDireccion() { return direccion; }
     public void setDireccion(String direccion) { this.direccion = direccion; }
 
-    public int getPrestamosActivos() { return prestamosActivos; }
+    public int getPrestamosActivos() { return prestamosEnCurso.size(); }
+    public Set<Prestamo> getPrestamosEnCurso() { return Collections.unmodifiableSet(prestamosEnCurso); }
+
+    int getOrdinal() { return ordinal; }
+
+    /**
+     * Asocia el usuario a la biblioteca que lo registro y a su posicion en ella.
+     */
+    void registrarEn(Biblioteca biblioteca, int ordinal) {
+        this.biblioteca = biblioteca;
+        this.ordinal = ordinal;
+    }
 }
\ No newline at end of file